@@ -29,14 +29,22 @@ import org.brickred.socialauth.exception.SocialAuthException;
 import org.brickred.socialauth.oauthstrategy.OAuthStrategyBase;
 import org.brickred.socialauth.plugin.Plugin;
 import org.brickred.socialauth.util.AccessGrant;
+import org.brickred.socialauth.util.AlbumPhotoLoader;
 import org.brickred.socialauth.util.OAuthConfig;
 import org.brickred.socialauth.util.ProviderSupport;
+import org.brickred.socialauth.util.Response;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 /**
  * It implements AuthProvider interface and provides some methods for
@@ -49,18 +57,41 @@ public abstract class AbstractProvider implements AuthProvider, Serializable {
     private static final long serialVersionUID = -7827145708317886744L;
     private final Log LOG = LogFactory.getLog(this.getClass());
     private Map<Class<? extends Plugin>, Class<? extends Plugin>> pluginsMap;
+    private transient volatile PluginCache pluginCache;
+    private String state;
+    private AlbumPhotoLoader photoLoader;
 
     public AbstractProvider() throws Exception {
         pluginsMap = new HashMap<Class<? extends Plugin>, Class<? extends Plugin>>();
     }
 
+    /**
+     * Returns the plugin of given type. Plugins are created once and shared
+     * until the access grant or the authentication strategy of this provider
+     * changes, e.g. through setAccessGrant, verifyResponse or logout.
+     */
     @Override
     public <T> T getPlugin(final Class<T> clazz) throws Exception {
-        Class<? extends Plugin> plugin = pluginsMap.get(clazz);
-        Constructor<? extends Plugin> cons = plugin
-                .getConstructor(ProviderSupport.class);
-        ProviderSupport support = new ProviderSupport(getOauthStrategy());
-        Plugin obj = cons.newInstance(support);
+        OAuthStrategyBase strategy = getOauthStrategy();
+        AccessGrant grant = getAccessGrant();
+        PluginCache cache = pluginCache;
+        if (cache == null || cache.strategy != strategy || cache.grant != grant) {
+            cache = new PluginCache(strategy, grant);
+            pluginCache = cache;
+        }
+        Plugin obj = cache.plugins.get(clazz);
+        if (obj == null) {
+            Class<? extends Plugin> plugin = pluginsMap.get(clazz);
+            Constructor<? extends Plugin> cons = plugin
+                    .getConstructor(ProviderSupport.class);
+            ProviderSupport support = new ProviderSupport(strategy,
+                    getPhotoLoader());
+            obj = cons.newInstance(support);
+            Plugin existing = cache.plugins.putIfAbsent(clazz, obj);
+            if (existing != null) {
+                obj = existing;
+            }
+        }
         return (T) obj;
     }
 
@@ -76,6 +107,8 @@ public abstract class AbstractProvider implements AuthProvider, Serializable {
     @Override
     public final void registerPlugins() throws Exception {
         LOG.info("Loading plugins");
+        Map<Class<? extends Plugin>, Class<? extends Plugin>> map = new HashMap<Class<? extends Plugin>, Class<? extends Plugin>>(
+                pluginsMap);
         List<String> pluginsList = getPluginsList();
         if (pluginsList != null && !pluginsList.isEmpty()) {
             for (String s : pluginsList) {
@@ -88,11 +121,34 @@ public abstract class AbstractProvider implements AuthProvider, Serializable {
                 Class<?> interfaces[] = clazz.getInterfaces();
                 for (Class<?> c : interfaces) {
                     if (Plugin.class.isAssignableFrom(c)) {
-                        pluginsMap.put(c.asSubclass(Plugin.class), clazz);
+                        map.put(c.asSubclass(Plugin.class), clazz);
                     }
                 }
             }
         }
+        pluginsMap = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Returns the plugins resolved by {@link #registerPlugins()}, so they can
+     * be handed to further instances of the same provider.
+     *
+     * @return the unmodifiable map of plugin interfaces to implementations
+     */
+    Map<Class<? extends Plugin>, Class<? extends Plugin>> getPlugins() {
+        return pluginsMap;
+    }
+
+    /**
+     * Sets plugins resolved by another instance of the same provider instead
+     * of registering them again.
+     *
+     * @param plugins the unmodifiable map of plugin interfaces to
+     *                implementations
+     */
+    void setPlugins(
+            final Map<Class<? extends Plugin>, Class<? extends Plugin>> plugins) {
+        pluginsMap = plugins;
     }
 
     @Override
@@ -102,6 +158,57 @@ public abstract class AbstractProvider implements AuthProvider, Serializable {
 
     }
 
+    /**
+     * Updates the image and message on the chosen provider if available. The
+     * file is streamed to the provider without being held in memory. This is
+     * implemented only for Facebook and Twitter. Like
+     * {@link #getContactStream()}, it is not part of {@link AuthProvider}.
+     *
+     * @param message Status Message
+     * @param file    Image file
+     * @return Response object
+     * @throws Exception
+     */
+    public Response uploadImage(final String message, final File file)
+            throws Exception {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return uploadImage(message, file.getName(), in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Gets the contacts of the user as a stream which fetches them page by
+     * page as they are consumed. Providers without paging return the
+     * contacts of {@link #getContactList()} as a single page. It is not part
+     * of {@link AuthProvider}, so that implementations of the interface which
+     * do not extend this class keep compiling.
+     *
+     * @return stream of contacts
+     */
+    public ContactStream getContactStream() {
+        return new ContactStream(new ContactStream.PageSource() {
+            @Override
+            public ContactStream.Page getPage(final String cursor)
+                    throws Exception {
+                return new ContactStream.Page(getContactList(), null);
+            }
+        });
+    }
+
+    /**
+     * Returns an asynchronous facade of this provider whose operations run on
+     * the given executor.
+     *
+     * @param executor the executor on which provider operations run
+     * @return the asynchronous provider
+     */
+    public AsyncAuthProvider async(final Executor executor) {
+        return new AsyncAuthProvider(this, executor);
+    }
+
     /**
      * Returns the scopes of custom plugins of a provider those are configured
      * in properties file
@@ -122,6 +229,53 @@ public abstract class AbstractProvider implements AuthProvider, Serializable {
         return null;
     }
 
+    /**
+     * Retrieves the loader of album photos used by the album plugin of this
+     * provider. Providers created by SocialAuthManager get a loader running
+     * on SocialAuthConfig.getExecutor() with the settings of the
+     * configuration; it can be changed for this provider through the
+     * returned object.
+     *
+     * @return the album photo loader
+     */
+    public synchronized AlbumPhotoLoader getPhotoLoader() {
+        if (photoLoader == null) {
+            photoLoader = new AlbumPhotoLoader();
+        }
+        return photoLoader;
+    }
+
+    /**
+     * Updates the loader of album photos used by the album plugin of this
+     * provider.
+     *
+     * @param photoLoader the album photo loader
+     */
+    public synchronized void setPhotoLoader(final AlbumPhotoLoader photoLoader) {
+        this.photoLoader = photoLoader;
+    }
+
+    /**
+     * Retrieves the value of the OAuth 2.0 state parameter which is sent with
+     * the login redirect and has to come back unchanged with the callback.
+     *
+     * @return the state value, null if the provider does not use one
+     */
+    protected String getState() {
+        return state;
+    }
+
+    /**
+     * Updates the value of the state parameter. Providers which check it set
+     * a value of their own when they are created; the stateless login of
+     * {@link SocialAuthManager} replaces it by its signed state token.
+     *
+     * @param state the state value
+     */
+    protected void setState(final String state) {
+        this.state = state;
+    }
+
     /**
      * Returns the list of plugins of a provider.
      *
@@ -135,4 +289,15 @@ public abstract class AbstractProvider implements AuthProvider, Serializable {
      * @return OAuthStrategyBase of a provider.
      */
     protected abstract OAuthStrategyBase getOauthStrategy();
+
+    private static class PluginCache {
+        private final OAuthStrategyBase strategy;
+        private final AccessGrant grant;
+        private final ConcurrentMap<Class<?>, Plugin> plugins = new ConcurrentHashMap<Class<?>, Plugin>();
+
+        PluginCache(final OAuthStrategyBase strategy, final AccessGrant grant) {
+            this.strategy = strategy;
+            this.grant = grant;
+        }
+    }
 }
@@ -26,6 +26,7 @@ package org.brickred.socialauth;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Contains the Album info
@@ -41,6 +42,7 @@ public class Album implements Serializable {
     private String link;
     private String coverPhoto;
     private int photosCount;
+    private transient volatile Callable<List<Photo>> photosLoader;
 
     /**
      * Retrieves the album id
@@ -133,11 +135,27 @@ public class Album implements Serializable {
     }
 
     /**
-     * Retrieves the list of albmun photos
+     * Retrieves the list of albmun photos. If a photos loader has been set,
+     * the photos are fetched on the first call.
      *
      * @return
+     * @throws IllegalStateException if the photos could not be fetched
      */
     public List<Photo> getPhotos() {
+        if (photosLoader != null) {
+            synchronized (this) {
+                Callable<List<Photo>> loader = photosLoader;
+                if (loader != null) {
+                    try {
+                        photos = loader.call();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(
+                                "Unable to fetch photos of album " + id, e);
+                    }
+                    photosLoader = null;
+                }
+            }
+        }
         return photos;
     }
 
@@ -148,6 +166,18 @@ public class Album implements Serializable {
      */
     public void setPhotos(final List<Photo> photos) {
         this.photos = photos;
+        photosLoader = null;
+    }
+
+    /**
+     * Updates the loader which fetches the album photos on the first call of
+     * {@link #getPhotos()}. It is not serialized, so photos which have not
+     * been fetched are not available after deserialization.
+     *
+     * @param photosLoader the photos loader
+     */
+    public void setPhotosLoader(final Callable<List<Photo>> photosLoader) {
+        this.photosLoader = photosLoader;
     }
 
     /**
@@ -0,0 +1,297 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.brickred.socialauth.util.Response;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Asynchronous facade of an {@link AuthProvider}. The blocking provider
+ * operations are run on the given executor and a Future is returned
+ * immediately, so the calling thread is not held for the round trip to the
+ * provider. An optional {@link AsyncCallback} is notified on completion.
+ * <p>
+ * Obtain an instance through {@link AbstractProvider#async(Executor)} or
+ * {@link SocialAuthManager#getAsyncProvider(String)}.
+ *
+ * @author tarunn@brickred.com
+ */
+public class AsyncAuthProvider {
+
+    private static final Log LOG = LogFactory.getLog(AsyncAuthProvider.class);
+    private final AuthProvider provider;
+    private final Executor executor;
+
+    /**
+     * @param provider the provider whose operations need to run asynchronously
+     * @param executor the executor on which operations run
+     */
+    public AsyncAuthProvider(final AuthProvider provider,
+                             final Executor executor) {
+        if (provider == null || executor == null) {
+            throw new IllegalArgumentException(
+                    "Provider and executor are required");
+        }
+        this.provider = provider;
+        this.executor = executor;
+    }
+
+    /**
+     * Retrieves the underlying provider
+     *
+     * @return the provider
+     */
+    public AuthProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Verifies the user asynchronously. See
+     * {@link AuthProvider#verifyResponse(Map)}
+     *
+     * @param requestParams Request parameters received from the provider
+     * @return future of the user profile
+     */
+    public Future<Profile> verifyResponse(
+            final Map<String, String> requestParams) {
+        return verifyResponse(requestParams, null);
+    }
+
+    /**
+     * Verifies the user asynchronously. See
+     * {@link AuthProvider#verifyResponse(Map)}
+     *
+     * @param requestParams Request parameters received from the provider
+     * @param callback      callback to notify on completion, can be null
+     * @return future of the user profile
+     */
+    public Future<Profile> verifyResponse(
+            final Map<String, String> requestParams,
+            final AsyncCallback<Profile> callback) {
+        return submit(new Callable<Profile>() {
+            @Override
+            public Profile call() throws Exception {
+                return provider.verifyResponse(requestParams);
+            }
+        }, callback);
+    }
+
+    /**
+     * Retrieves the user profile asynchronously.
+     *
+     * @return future of the user profile
+     */
+    public Future<Profile> getUserProfile() {
+        return getUserProfile(null);
+    }
+
+    /**
+     * Retrieves the user profile asynchronously.
+     *
+     * @param callback callback to notify on completion, can be null
+     * @return future of the user profile
+     */
+    public Future<Profile> getUserProfile(final AsyncCallback<Profile> callback) {
+        return submit(new Callable<Profile>() {
+            @Override
+            public Profile call() throws Exception {
+                return provider.getUserProfile();
+            }
+        }, callback);
+    }
+
+    /**
+     * Retrieves the contact list asynchronously.
+     *
+     * @return future of the contact list
+     */
+    public Future<List<Contact>> getContactList() {
+        return getContactList(null);
+    }
+
+    /**
+     * Retrieves the contact list asynchronously.
+     *
+     * @param callback callback to notify on completion, can be null
+     * @return future of the contact list
+     */
+    public Future<List<Contact>> getContactList(
+            final AsyncCallback<List<Contact>> callback) {
+        return submit(new Callable<List<Contact>>() {
+            @Override
+            public List<Contact> call() throws Exception {
+                return provider.getContactList();
+            }
+        }, callback);
+    }
+
+    /**
+     * Updates the status asynchronously.
+     *
+     * @param msg Message to be shown as user's status
+     * @return future of the response
+     */
+    public Future<Response> updateStatus(final String msg) {
+        return updateStatus(msg, null);
+    }
+
+    /**
+     * Updates the status asynchronously.
+     *
+     * @param msg      Message to be shown as user's status
+     * @param callback callback to notify on completion, can be null
+     * @return future of the response
+     */
+    public Future<Response> updateStatus(final String msg,
+                                         final AsyncCallback<Response> callback) {
+        return submit(new Callable<Response>() {
+            @Override
+            public Response call() throws Exception {
+                return provider.updateStatus(msg);
+            }
+        }, callback);
+    }
+
+    /**
+     * Makes OAuth signed HTTP request asynchronously. See
+     * {@link AuthProvider#api(String, String, Map, Map, String)}
+     *
+     * @param url          URL to make HTTP request.
+     * @param methodType   Method type can be GET, POST or PUT
+     * @param params       Any additional parameters whose signature need to compute.
+     * @param headerParams Any additional parameters need to pass as Header Parameters
+     * @param body         Request Body
+     * @return future of the response
+     */
+    public Future<Response> api(final String url, final String methodType,
+                                final Map<String, String> params,
+                                final Map<String, String> headerParams, final String body) {
+        return api(url, methodType, params, headerParams, body, null);
+    }
+
+    /**
+     * Makes OAuth signed HTTP request asynchronously. See
+     * {@link AuthProvider#api(String, String, Map, Map, String)}
+     *
+     * @param url          URL to make HTTP request.
+     * @param methodType   Method type can be GET, POST or PUT
+     * @param params       Any additional parameters whose signature need to compute.
+     * @param headerParams Any additional parameters need to pass as Header Parameters
+     * @param body         Request Body
+     * @param callback     callback to notify on completion, can be null
+     * @return future of the response
+     */
+    public Future<Response> api(final String url, final String methodType,
+                                final Map<String, String> params,
+                                final Map<String, String> headerParams, final String body,
+                                final AsyncCallback<Response> callback) {
+        return submit(new Callable<Response>() {
+            @Override
+            public Response call() throws Exception {
+                return provider.api(url, methodType, params, headerParams,
+                        body);
+            }
+        }, callback);
+    }
+
+    /**
+     * Runs the given task on the executor of this provider.
+     *
+     * @param task     the task to run
+     * @param callback callback to notify on completion, can be null
+     * @return future of the task result
+     */
+    public <T> Future<T> submit(final Callable<T> task,
+                                final AsyncCallback<T> callback) {
+        return submit(executor, task, callback);
+    }
+
+    /**
+     * Runs the given task on the given executor and notifies the callback
+     * when it completes.
+     *
+     * @param executor the executor on which task runs
+     * @param task     the task to run
+     * @param callback callback to notify on completion, can be null
+     * @return future of the task result
+     */
+    static <T> Future<T> submit(final Executor executor,
+                                final Callable<T> task, final AsyncCallback<T> callback) {
+        FutureTask<T> future = new FutureTask<T>(task) {
+            @Override
+            protected void done() {
+                if (callback == null) {
+                    return;
+                }
+                T result;
+                try {
+                    result = get();
+                } catch (ExecutionException e) {
+                    notifyFailure(callback, e.getCause());
+                    return;
+                } catch (CancellationException e) {
+                    notifyFailure(callback, e);
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    notifyFailure(callback, e);
+                    return;
+                }
+                try {
+                    callback.onSuccess(result);
+                } catch (RuntimeException e) {
+                    LOG.warn("Error in async callback", e);
+                }
+            }
+        };
+        executor.execute(future);
+        return future;
+    }
+
+    private static <T> void notifyFailure(final AsyncCallback<T> callback,
+                                          final Throwable cause) {
+        Exception e;
+        if (cause instanceof Exception) {
+            e = (Exception) cause;
+        } else {
+            e = new ExecutionException(cause);
+        }
+        try {
+            callback.onFailure(e);
+        } catch (RuntimeException re) {
+            LOG.warn("Error in async callback", re);
+        }
+    }
+}
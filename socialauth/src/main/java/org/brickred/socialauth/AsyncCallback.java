@@ -0,0 +1,51 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth;
+
+/**
+ * Callback which is notified when an asynchronous provider operation started
+ * through {@link AsyncAuthProvider} or
+ * {@link SocialAuthManager#connectAsync(java.util.Map, AsyncCallback)}
+ * completes.
+ *
+ * @param <T> type of the operation result
+ * @author tarunn@brickred.com
+ */
+public interface AsyncCallback<T> {
+
+    /**
+     * Called when the operation completes successfully.
+     *
+     * @param result the operation result
+     */
+    public void onSuccess(T result);
+
+    /**
+     * Called when the operation fails or is cancelled.
+     *
+     * @param e the exception thrown by the operation
+     */
+    public void onFailure(Exception e);
+}
@@ -0,0 +1,219 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth;
+
+import org.brickred.socialauth.util.Deadline;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Iterates over the contacts of the user, fetching them page by page as they
+ * are consumed, so large address books are neither truncated nor held in
+ * memory at once. Pages are fetched through the native cursor of the
+ * provider. When {@link #prefetch(Executor)} is enabled, the next page is
+ * fetched in the background while the current one is consumed.
+ * <p>
+ * As {@link Iterator} does not allow checked exceptions, a failure to fetch
+ * a page is thrown as an IllegalStateException whose cause is the original
+ * exception. A stream must not be used by more than one thread at a time.
+ *
+ * @author tarunn@brickred.com
+ */
+public class ContactStream implements Iterator<Contact> {
+
+    private final PageSource source;
+    private Executor executor;
+    private Iterator<Contact> current;
+    private String cursor;
+    private boolean started;
+    private boolean closed;
+    private Future<Page> pending;
+
+    /**
+     * Fetches one page of contacts.
+     */
+    public interface PageSource {
+
+        /**
+         * Fetches the page at the given cursor
+         *
+         * @param cursor the cursor returned with the previous page, or null
+         *               for the first page
+         * @return the page of contacts
+         * @throws Exception
+         */
+        public Page getPage(String cursor) throws Exception;
+    }
+
+    /**
+     * A page of contacts and the cursor of the page after it.
+     */
+    public static class Page {
+        private final List<Contact> contacts;
+        private final String next;
+
+        /**
+         * @param contacts the contacts of this page
+         * @param next     the cursor of the next page, or null if this is the
+         *                 last page
+         */
+        public Page(final List<Contact> contacts, final String next) {
+            this.contacts = contacts;
+            this.next = next;
+        }
+
+        /**
+         * Retrieves the contacts of this page
+         *
+         * @return the contacts
+         */
+        public List<Contact> getContacts() {
+            return contacts;
+        }
+
+        /**
+         * Retrieves the cursor of the next page
+         *
+         * @return the cursor, or null if this is the last page
+         */
+        public String getNext() {
+            return next;
+        }
+    }
+
+    /**
+     * @param source fetches the pages of contacts
+     */
+    public ContactStream(final PageSource source) {
+        this.source = source;
+        current = Collections.<Contact>emptyList().iterator();
+    }
+
+    /**
+     * Enables fetching the next page in the background on the given
+     * executor, while the current page is consumed.
+     *
+     * @param executor the executor on which pages are fetched
+     * @return this stream
+     */
+    public ContactStream prefetch(final Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (closed || (started && cursor == null)) {
+                return false;
+            }
+            Page page = fetch();
+            started = true;
+            cursor = page.getNext();
+            List<Contact> contacts = page.getContacts();
+            current = contacts == null ? Collections.<Contact>emptyList()
+                    .iterator() : contacts.iterator();
+            if (cursor != null && executor != null) {
+                submit(cursor);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Contact next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops the stream and cancels a page which is being prefetched.
+     */
+    public void close() {
+        closed = true;
+        current = Collections.<Contact>emptyList().iterator();
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+
+    private Page fetch() {
+        Future<Page> future = pending;
+        pending = null;
+        try {
+            if (future != null) {
+                return future.get();
+            }
+            return source.getPage(cursor);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to fetch contacts",
+                    e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Unable to fetch contacts", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to fetch contacts", e);
+        }
+    }
+
+    private void submit(final String next) {
+        final Deadline deadline = Deadline.current();
+        FutureTask<Page> task = new FutureTask<Page>(new Callable<Page>() {
+            @Override
+            public Page call() throws Exception {
+                Deadline previous = Deadline.attach(deadline);
+                try {
+                    return source.getPage(next);
+                } finally {
+                    Deadline.detach(previous);
+                }
+            }
+        });
+        try {
+            executor.execute(task);
+            pending = task;
+        } catch (RejectedExecutionException e) {
+            // the page is fetched on the calling thread instead
+            pending = null;
+        }
+    }
+}
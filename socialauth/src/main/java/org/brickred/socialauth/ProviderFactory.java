@@ -0,0 +1,109 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.brickred.socialauth.exception.SocialAuthConfigurationException;
+import org.brickred.socialauth.plugin.Plugin;
+import org.brickred.socialauth.util.OAuthConfig;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+
+/**
+ * Creates instances of a provider. The constructor is looked up once when
+ * the factory is created, and the plugins registered by the first instance
+ * are handed to every further instance, so creating a provider per login
+ * does not repeat the reflective lookups and plugin class loading.
+ *
+ * @author tarunn@brickred.com
+ */
+final class ProviderFactory {
+
+    private static final Log LOG = LogFactory.getLog(ProviderFactory.class);
+    private final OAuthConfig config;
+    private final Class<?> implClass;
+    private final Constructor<?> constructor;
+    private volatile Map<Class<? extends Plugin>, Class<? extends Plugin>> plugins;
+
+    /**
+     * @param config the configuration of the provider
+     */
+    ProviderFactory(final OAuthConfig config) {
+        this.config = config;
+        implClass = config.getProviderImplClass();
+        Constructor<?> cons = null;
+        try {
+            cons = implClass.getConstructor(OAuthConfig.class);
+        } catch (NoSuchMethodException me) {
+            LOG.warn(implClass.getName() + " does not implement a constructor "
+                    + implClass.getName() + "(OAuthConfig config)");
+        }
+        constructor = cons;
+    }
+
+    /**
+     * Retrieves the configuration from which this factory was created
+     *
+     * @return the provider configuration
+     */
+    OAuthConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Creates a new provider instance with its plugins registered.
+     *
+     * @return the provider
+     * @throws SocialAuthConfigurationException
+     */
+    AuthProvider newInstance() throws SocialAuthConfigurationException {
+        AuthProvider provider;
+        try {
+            if (constructor != null) {
+                provider = (AuthProvider) constructor.newInstance(config);
+            } else {
+                provider = (AuthProvider) implClass.newInstance();
+            }
+        } catch (Exception e) {
+            throw new SocialAuthConfigurationException(e);
+        }
+        Map<Class<? extends Plugin>, Class<? extends Plugin>> map = plugins;
+        if (map != null && provider instanceof AbstractProvider) {
+            ((AbstractProvider) provider).setPlugins(map);
+            return provider;
+        }
+        try {
+            provider.registerPlugins();
+        } catch (Exception e) {
+            throw new SocialAuthConfigurationException(e);
+        }
+        if (provider instanceof AbstractProvider) {
+            plugins = ((AbstractProvider) provider).getPlugins();
+        }
+        return provider;
+    }
+}
@@ -29,17 +29,43 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.brickred.socialauth.exception.SocialAuthConfigurationException;
 import org.brickred.socialauth.exception.SocialAuthException;
+import org.brickred.socialauth.util.AlbumPhotoLoader;
 import org.brickred.socialauth.util.Constants;
+import org.brickred.socialauth.util.Deadline;
 import org.brickred.socialauth.util.HttpUtil;
 import org.brickred.socialauth.util.OAuthConfig;
-
+import org.brickred.socialauth.util.CachingHttpTransport;
+import org.brickred.socialauth.util.DefaultHttpTransport;
+import org.brickred.socialauth.util.HttpCacheStorage;
+import org.brickred.socialauth.util.HttpClient;
+import org.brickred.socialauth.util.HttpTransport;
+import org.brickred.socialauth.util.HostLimitedHttpTransport;
+import org.brickred.socialauth.util.LruHttpCacheStorage;
+import org.brickred.socialauth.util.RateLimitScheduler;
+import org.brickred.socialauth.util.RateLimitedHttpTransport;
+import org.brickred.socialauth.util.ResilientHttpTransport;
+import org.brickred.socialauth.util.RsaSha1Signer;
+import org.brickred.socialauth.util.StateCodec;
+
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class is used to load the configuration for all providers. Load() method
@@ -62,6 +88,12 @@ public class SocialAuthConfig implements Serializable {
     private boolean configSetup;
     private boolean isConfigLoaded;
     private boolean saveRawResponse;
+    private long connectDeadline;
+    private transient Executor executor;
+    private transient boolean ownExecutor;
+    private transient HttpClient httpClient;
+    private transient StateCodec stateCodec;
+    private transient volatile Map<String, ProviderFactory> providerFactories;
 
     public SocialAuthConfig() {
         providersImplMap = new HashMap<String, Class<?>>();
@@ -228,22 +260,9 @@ public class SocialAuthConfig implements Serializable {
             this.applicationProperties = properties;
             registerProviders();
             loadProvidersConfig();
-            setProxy();
-            String timeout = null;
-            if (applicationProperties
-                    .containsKey(Constants.HTTP_CONNECTION_TIMEOUT)) {
-                timeout = applicationProperties.getProperty(
-                        Constants.HTTP_CONNECTION_TIMEOUT).trim();
-            }
-            if (timeout != null && !timeout.isEmpty()) {
-                int time = 0;
-                try {
-                    time = Integer.parseInt(timeout);
-                } catch (NumberFormatException ne) {
-                    LOG.warn("Http connection timout is not an integer in configuration");
-                }
-                HttpUtil.setConnectionTimeout(time);
-            }
+            configureHttpClient(getHttpClient());
+            HttpUtil.setDefaultHttpClient(getHttpClient());
+            connectDeadline = getLongProperty(Constants.CONNECT_DEADLINE, 0);
             isConfigLoaded = true;
         }
     }
@@ -303,10 +322,11 @@ public class SocialAuthConfig implements Serializable {
         } else if (config.getProviderImplClass() == null) {
             config.setProviderImplClass(providersImplMap.get(providerId));
         }
+        getProviderFactories().put(providerId, new ProviderFactory(config));
         configSetup = true;
     }
 
-    private void loadProvidersConfig() {
+    private void loadProvidersConfig() throws Exception {
         Set<String> appPropertiesKeys = applicationProperties
                 .stringPropertyNames();
         for (Map.Entry<String, String> entry : domainMap.entrySet()) {
@@ -385,6 +405,14 @@ public class SocialAuthConfig implements Serializable {
                         }
                     }
                 }
+                if (Constants.RSASHA1_SIGNATURE.equals(conf
+                        .get_signatureMethod())) {
+                    conf.setSigner(new RsaSha1Signer(loadPrivateKey(value)));
+                }
+                conf.setConnectionTimeout((int) getLongProperty(value
+                        + ".connection_timeout", 0));
+                conf.setReadTimeout((int) getLongProperty(value
+                        + ".read_timeout", 0));
                 for (String propertyKey : appPropertiesKeys) {
                     if (propertyKey.startsWith(value + ".custom.")) {
                         Map<String, String> map = conf.getCustomProperties();
@@ -399,6 +427,7 @@ public class SocialAuthConfig implements Serializable {
                     }
                 }
                 providersConfig.put(key, conf);
+                getProviderFactories().put(key, new ProviderFactory(conf));
             } else {
                 LOG.debug("Configuration for provider " + key
                         + " is not available");
@@ -407,6 +436,31 @@ public class SocialAuthConfig implements Serializable {
         configSetup = true;
     }
 
+    // the key is read from the file system, or the classpath if no such file
+    private PrivateKey loadPrivateKey(final String domain) throws Exception {
+        String location = applicationProperties.getProperty(domain
+                + ".private_key");
+        if (location == null || location.trim().isEmpty()) {
+            throw new SocialAuthConfigurationException(domain
+                    + ".private_key is required for RSA-SHA1 signature");
+        }
+        location = location.trim();
+        InputStream in;
+        File file = new File(location);
+        if (file.isFile()) {
+            in = new FileInputStream(file);
+        } else {
+            in = SocialAuthConfig.class.getClassLoader().getResourceAsStream(
+                    location);
+        }
+        if (in == null) {
+            throw new SocialAuthConfigurationException("Private key "
+                    + location + " of " + domain + " is not found");
+        }
+        LOG.debug("Loading private key of " + domain + " from " + location);
+        return RsaSha1Signer.readPrivateKey(in);
+    }
+
     /**
      * Retrieves the configuration of given provider
      *
@@ -435,7 +489,10 @@ public class SocialAuthConfig implements Serializable {
                     + " provider is not found");
         }
 
-        if (config.get_consumerSecret().length() <= 0) {
+        // RSA-SHA1 signs with the private key, the secret may be empty
+        if (config.get_consumerSecret().length() <= 0
+                && !Constants.RSASHA1_SIGNATURE.equals(config
+                .get_signatureMethod())) {
             throw new SocialAuthConfigurationException(id
                     + " consumer_secret value is null");
         }
@@ -444,14 +501,76 @@ public class SocialAuthConfig implements Serializable {
                     + " consumer_key value is null");
         }
         config.setSaveRawResponse(this.saveRawResponse);
+        config.setHttpClient(getHttpClient());
+        config.setExecutor(getExecutor());
         return config;
     }
 
+    /**
+     * Retrieves the factory creating instances of given provider. Factories
+     * are created when the configuration is loaded, and again when the
+     * configuration of a provider has been replaced.
+     *
+     * @param id the provider id
+     * @return the provider factory
+     * @throws SocialAuthException
+     * @throws SocialAuthConfigurationException
+     */
+    ProviderFactory getProviderFactory(final String id)
+            throws SocialAuthException, SocialAuthConfigurationException {
+        OAuthConfig config = getProviderConfig(id);
+        // OpenId URLs share the configuration of OpenId provider
+        String key = providersConfig.containsKey(id) ? id : Constants.OPENID;
+        Map<String, ProviderFactory> factories = getProviderFactories();
+        ProviderFactory factory = factories.get(key);
+        if (factory == null || factory.getConfig() != config) {
+            factory = new ProviderFactory(config);
+            factories.put(key, factory);
+        }
+        return factory;
+    }
+
+    private Map<String, ProviderFactory> getProviderFactories() {
+        Map<String, ProviderFactory> factories = providerFactories;
+        if (factories == null) {
+            synchronized (this) {
+                if (providerFactories == null) {
+                    providerFactories = new ConcurrentHashMap<String, ProviderFactory>();
+                }
+                factories = providerFactories;
+            }
+        }
+        return factories;
+    }
+
     protected boolean isConfigSetup() {
         return configSetup;
     }
 
-    private void setProxy() {
+    // applies the proxy, timeouts and transport of the loaded properties
+    private void configureHttpClient(final HttpClient client) throws Exception {
+        setProxy(client);
+        String timeout = null;
+        if (applicationProperties
+                .containsKey(Constants.HTTP_CONNECTION_TIMEOUT)) {
+            timeout = applicationProperties.getProperty(
+                    Constants.HTTP_CONNECTION_TIMEOUT).trim();
+        }
+        if (timeout != null && !timeout.isEmpty()) {
+            int time = 0;
+            try {
+                time = Integer.parseInt(timeout);
+            } catch (NumberFormatException ne) {
+                LOG.warn("Http connection timout is not an integer in configuration");
+            }
+            client.setConnectionTimeout(time);
+        }
+        client.setReadTimeout((int) getLongProperty(
+                Constants.HTTP_READ_TIMEOUT, 0));
+        setHttpTransport(client);
+    }
+
+    private void setProxy(final HttpClient client) {
         String proxyHost = null;
         String proxyPort = null;
         if (applicationProperties.containsKey(Constants.PROXY_HOST)) {
@@ -471,8 +590,344 @@ public class SocialAuthConfig implements Serializable {
                     LOG.warn("Proxy port is not an integer in configuration");
                 }
             }
-            HttpUtil.setProxyConfig(proxyHost, port);
+            client.setProxy(proxyHost, port);
+        }
+    }
+
+    private void setHttpTransport(final HttpClient client) throws Exception {
+        String type = applicationProperties
+                .getProperty(Constants.HTTP_TRANSPORT);
+        boolean limited = type != null
+                && Constants.HTTP_TRANSPORT_LIMITED.equalsIgnoreCase(type.trim());
+        boolean resilient = Boolean.parseBoolean(applicationProperties
+                .getProperty(Constants.HTTP_RESILIENCE, "false").trim());
+        boolean rateLimited = Boolean.parseBoolean(applicationProperties
+                .getProperty(Constants.HTTP_RATE_LIMIT, "false").trim());
+        boolean cached = Boolean.parseBoolean(applicationProperties
+                .getProperty(Constants.HTTP_CACHE, "false").trim());
+        if (!limited && !resilient && !rateLimited && !cached) {
+            return;
+        }
+        HttpTransport transport = limited ? createHostLimitedTransport()
+                : new DefaultHttpTransport();
+        if (rateLimited) {
+            long maxWait = getLongProperty(Constants.HTTP_RATE_LIMIT_MAX_WAIT,
+                    RateLimitScheduler.DEFAULT_MAX_WAIT);
+            long cooldown = getLongProperty(Constants.HTTP_RATE_LIMIT_COOLDOWN,
+                    RateLimitScheduler.DEFAULT_COOLDOWN);
+            LOG.info("Scheduling calls by rate limits, max wait : " + maxWait);
+            transport = new RateLimitedHttpTransport(transport,
+                    new RateLimitScheduler(maxWait, cooldown));
+        }
+        if (resilient) {
+            int maxRetries = (int) getLongProperty(
+                    Constants.HTTP_RETRY_MAX_RETRIES,
+                    ResilientHttpTransport.DEFAULT_MAX_RETRIES);
+            long backoff = getLongProperty(Constants.HTTP_RETRY_BACKOFF,
+                    ResilientHttpTransport.DEFAULT_BACKOFF);
+            long maxBackoff = getLongProperty(Constants.HTTP_RETRY_MAX_BACKOFF,
+                    ResilientHttpTransport.DEFAULT_MAX_BACKOFF);
+            int failureRate = (int) getLongProperty(
+                    Constants.HTTP_BREAKER_FAILURE_RATE,
+                    ResilientHttpTransport.DEFAULT_FAILURE_RATE);
+            int window = (int) getLongProperty(Constants.HTTP_BREAKER_WINDOW,
+                    ResilientHttpTransport.DEFAULT_WINDOW_SIZE);
+            long openDuration = getLongProperty(
+                    Constants.HTTP_BREAKER_OPEN_DURATION,
+                    ResilientHttpTransport.DEFAULT_OPEN_DURATION);
+            LOG.info("Using retries and circuit breakers, max retries : "
+                    + maxRetries);
+            transport = new ResilientHttpTransport(transport, maxRetries,
+                    backoff, maxBackoff, failureRate, window, openDuration);
+        }
+        if (cached) {
+            int maxEntrySize = (int) getLongProperty(
+                    Constants.HTTP_CACHE_MAX_ENTRY_SIZE,
+                    CachingHttpTransport.DEFAULT_MAX_ENTRY_SIZE);
+            LOG.info("Caching responses with ETag or Last-Modified");
+            transport = new CachingHttpTransport(transport,
+                    createCacheStorage(), maxEntrySize);
+        }
+        client.setTransport(transport);
+    }
+
+    private HttpCacheStorage createCacheStorage()
+            throws SocialAuthConfigurationException {
+        String storage = applicationProperties
+                .getProperty(Constants.HTTP_CACHE_STORAGE);
+        if (storage == null || storage.trim().isEmpty()) {
+            return new LruHttpCacheStorage(getLongProperty(
+                    Constants.HTTP_CACHE_MAX_SIZE,
+                    LruHttpCacheStorage.DEFAULT_MAX_SIZE));
+        }
+        storage = storage.trim();
+        Class<?> clazz;
+        try {
+            clazz = Class.forName(storage);
+        } catch (ClassNotFoundException e) {
+            throw new SocialAuthConfigurationException("Cache storage "
+                    + storage + " is not found", e);
+        }
+        if (!HttpCacheStorage.class.isAssignableFrom(clazz)) {
+            throw new SocialAuthConfigurationException(storage
+                    + " does not implement HttpCacheStorage");
+        }
+        try {
+            return clazz.asSubclass(HttpCacheStorage.class)
+                    .getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new SocialAuthConfigurationException("Cache storage "
+                    + storage + " could not be created", e);
+        }
+    }
+
+    private HttpTransport createHostLimitedTransport() {
+        int maxPerHost = (int) getLongProperty(
+                Constants.HTTP_LIMIT_MAX_PER_HOST,
+                HostLimitedHttpTransport.DEFAULT_MAX_PER_HOST);
+        long idleTimeout = getLongProperty(Constants.HTTP_LIMIT_IDLE_TIMEOUT,
+                HostLimitedHttpTransport.DEFAULT_IDLE_TIMEOUT);
+        long waitTimeout = getLongProperty(Constants.HTTP_LIMIT_WAIT_TIMEOUT,
+                HostLimitedHttpTransport.DEFAULT_WAIT_TIMEOUT);
+        LOG.info("Limiting HTTP requests to " + maxPerHost
+                + " in flight per host");
+        return new HostLimitedHttpTransport(new HashSet<String>(
+                domainMap.values()), maxPerHost, idleTimeout, waitTimeout);
+    }
+
+    long getLongProperty(final String key, final long defaultValue) {
+        if (applicationProperties == null) {
+            return defaultValue;
+        }
+        String value = applicationProperties.getProperty(key);
+        if (value != null && !value.trim().isEmpty()) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException ne) {
+                LOG.warn(key + " is not an integer in configuration");
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the HTTP client holding the proxy, timeouts and transport of
+     * this configuration. It is passed to the providers through their
+     * {@link OAuthConfig}, so different configurations in the same JVM do
+     * not share these settings. The client is not serialized; after
+     * deserialization it is built again from the loaded properties.
+     *
+     * @return the HTTP client
+     */
+    public synchronized HttpClient getHttpClient() {
+        if (httpClient == null) {
+            HttpClient client = new HttpClient();
+            if (isConfigLoaded) {
+                try {
+                    configureHttpClient(client);
+                } catch (Exception e) {
+                    throw new IllegalStateException(
+                            "Unable to configure HTTP client", e);
+                }
+            }
+            httpClient = client;
+        }
+        return httpClient;
+    }
+
+    // providers serialized with this configuration share its OAuthConfig
+    // instances, so they get the rebuilt client, executor and signers too
+    private void readObject(final ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        if (isConfigLoaded && providersConfig != null) {
+            HttpClient client = getHttpClient();
+            for (Map.Entry<String, OAuthConfig> entry : providersConfig
+                    .entrySet()) {
+                OAuthConfig config = entry.getValue();
+                config.setHttpClient(client);
+                config.setExecutor(getExecutor());
+                if (Constants.RSASHA1_SIGNATURE.equals(config
+                        .get_signatureMethod())) {
+                    restoreSigner(entry.getKey(), config);
+                }
+            }
+        }
+    }
+
+    // the private key is read again from its location, it is not kept in
+    // the serialized form
+    private void restoreSigner(final String id, final OAuthConfig config) {
+        String domain = domainMap.containsKey(id) ? domainMap.get(id) : id;
+        if (!applicationProperties.containsKey(domain + ".private_key")) {
+            LOG.warn("Signer of " + id
+                    + " is not restored, no private key is configured");
+            return;
+        }
+        try {
+            config.setSigner(new RsaSha1Signer(loadPrivateKey(domain)));
+        } catch (Exception e) {
+            LOG.warn("Unable to restore signer of " + id, e);
+        }
+    }
+
+    /**
+     * Returns the codec of the signed state tokens used by the stateless
+     * login flow of {@link SocialAuthManager}. The secret is taken from
+     * "state.secret" property and must be the same on every node completing
+     * logins. If it is not configured, a random secret is generated and the
+     * login can only be completed by this node.
+     *
+     * @return the state codec
+     * @throws SocialAuthConfigurationException
+     */
+    public synchronized StateCodec getStateCodec()
+            throws SocialAuthConfigurationException {
+        if (stateCodec == null) {
+            String secret = applicationProperties == null ? null
+                    : applicationProperties.getProperty(Constants.STATE_SECRET);
+            byte[] key;
+            if (secret != null && secret.trim().length() > 0) {
+                try {
+                    key = secret.trim().getBytes(Constants.ENCODING);
+                } catch (UnsupportedEncodingException e) {
+                    throw new SocialAuthConfigurationException(e);
+                }
+            } else {
+                LOG.warn(Constants.STATE_SECRET
+                        + " is not configured, stateless logins can only be completed by this instance");
+                key = new byte[32];
+                new SecureRandom().nextBytes(key);
+            }
+            stateCodec = new StateCodec(key, getLongProperty(
+                    Constants.STATE_MAX_AGE, StateCodec.DEFAULT_MAX_AGE));
         }
+        return stateCodec;
+    }
+
+    /**
+     * Returns the executor on which asynchronous provider calls run. If no
+     * executor has been set, one is created on first use. When
+     * "async.execution" property is "virtual" and the JVM supports virtual
+     * threads, every call runs on its own virtual thread. Otherwise a fixed
+     * pool of daemon threads is used whose size is taken from "async.threads"
+     * property and defaults to twice the number of processors.
+     *
+     * @return the executor for asynchronous provider calls
+     */
+    public synchronized Executor getExecutor() {
+        if (executor == null) {
+            if (applicationProperties != null
+                    && Constants.EXECUTION_VIRTUAL
+                    .equalsIgnoreCase(applicationProperties.getProperty(
+                            Constants.ASYNC_EXECUTION, "").trim())) {
+                executor = createVirtualThreadExecutor();
+            }
+            if (executor == null) {
+                int threads = Runtime.getRuntime().availableProcessors() * 2;
+                if (applicationProperties != null) {
+                    threads = (int) getLongProperty(Constants.ASYNC_THREADS,
+                            threads);
+                }
+                LOG.debug("Creating executor for async calls with " + threads
+                        + " threads");
+                executor = Executors.newFixedThreadPool(Math.max(1, threads),
+                        new DaemonThreadFactory());
+            }
+            ownExecutor = true;
+        }
+        return executor;
+    }
+
+    /**
+     * Creates the album photo loader of a provider. It fetches photos on
+     * {@link #getExecutor()}, with the parallelism and lazy mode taken from
+     * "album.photos.parallelism" and "album.photos.lazy" properties.
+     *
+     * @return a new album photo loader
+     */
+    AlbumPhotoLoader newPhotoLoader() {
+        AlbumPhotoLoader loader = new AlbumPhotoLoader();
+        int parallelism = (int) getLongProperty(
+                Constants.ALBUM_PHOTOS_PARALLELISM,
+                AlbumPhotoLoader.DEFAULT_PARALLELISM);
+        loader.setParallelism(Math.max(1, parallelism));
+        if (applicationProperties != null) {
+            loader.setLazy(Boolean.parseBoolean(applicationProperties
+                    .getProperty(Constants.ALBUM_PHOTOS_LAZY, "false").trim()));
+        }
+        loader.setExecutor(getExecutor());
+        return loader;
+    }
+
+    private ExecutorService createVirtualThreadExecutor() {
+        // looked up reflectively as the library is compiled for older JVMs
+        try {
+            Object obj = Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor").invoke(null);
+            LOG.info("Using virtual threads for async calls");
+            return (ExecutorService) obj;
+        } catch (NoSuchMethodException e) {
+            LOG.warn("Virtual threads are not supported by this JVM, using platform threads");
+        } catch (Exception e) {
+            LOG.warn("Unable to create virtual thread executor, using platform threads", e);
+        }
+        return null;
+    }
+
+    /**
+     * Sets the executor on which asynchronous provider calls run. The caller
+     * remains responsible for shutting it down.
+     *
+     * @param executor the executor for asynchronous provider calls
+     */
+    public synchronized void setExecutor(final Executor executor) {
+        shutdown();
+        this.executor = executor;
+    }
+
+    /**
+     * Shuts down the executor if it was created by this configuration.
+     */
+    public synchronized void shutdown() {
+        if (ownExecutor && executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+        executor = null;
+        ownExecutor = false;
+    }
+
+    /**
+     * Returns the time budget for connecting a provider, i.e. for verifying
+     * the response and fetching the profile in
+     * {@link SocialAuthManager#connect(Map)}. It is configured through
+     * "connect.deadline" property.
+     *
+     * @return the time budget in milliseconds, 0 if there is no limit
+     */
+    public long getConnectDeadline() {
+        return connectDeadline;
+    }
+
+    /**
+     * Updates the time budget for connecting a provider.
+     *
+     * @param connectDeadline the time budget in milliseconds, 0 for no limit
+     */
+    public void setConnectDeadline(final long connectDeadline) {
+        this.connectDeadline = connectDeadline;
+    }
+
+    /**
+     * Creates a new deadline for connecting a provider
+     *
+     * @return the deadline or null if there is no time budget
+     */
+    public Deadline newConnectDeadline() {
+        if (connectDeadline > 0) {
+            return Deadline.after(connectDeadline);
+        }
+        return null;
     }
 
     /**
@@ -495,4 +950,16 @@ public class SocialAuthConfig implements Serializable {
         this.saveRawResponse = saveRawResponse;
     }
 
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread t = new Thread(r, "socialauth-async-"
+                    + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
 }
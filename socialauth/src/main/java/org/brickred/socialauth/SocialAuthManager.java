@@ -31,15 +31,23 @@ import org.brickred.socialauth.exception.AccessTokenExpireException;
 import org.brickred.socialauth.exception.SocialAuthConfigurationException;
 import org.brickred.socialauth.exception.SocialAuthException;
 import org.brickred.socialauth.exception.SocialAuthManagerStateException;
+import org.brickred.socialauth.oauthstrategy.OAuth2;
 import org.brickred.socialauth.util.AccessGrant;
-import org.brickred.socialauth.util.OAuthConfig;
-
+import org.brickred.socialauth.util.AlbumPhotoLoader;
+import org.brickred.socialauth.util.Constants;
+import org.brickred.socialauth.util.Deadline;
+import org.brickred.socialauth.util.StateCodec;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * This class manages the Map of all the connected providers by using this
@@ -141,9 +149,10 @@ public class SocialAuthManager implements Serializable {
             throw new SocialAuthConfigurationException(
                     "SocialAuth configuration is null.");
         }
-        if (providersMap.get(id) != null) {
+        AuthProvider connected = getProvider(id);
+        if (connected != null) {
             url = successUrl;
-            authProvider = providersMap.get(id);
+            authProvider = connected;
         } else {
             authProvider = getProviderInstance(id);
             if (permissionsMap.get(id) != null) {
@@ -168,19 +177,286 @@ public class SocialAuthManager implements Serializable {
      */
     public AuthProvider connect(final Map<String, String> requestParams)
             throws Exception {
+        Deadline deadline = null;
+        if (socialAuthConfig != null) {
+            deadline = socialAuthConfig.newConnectDeadline();
+        }
+        return connect(requestParams, deadline);
+    }
+
+    /**
+     * Verifies the user when the external provider redirects back to our
+     * application. All calls made to the provider, i.e. the token exchange
+     * and the profile fetch, fail once the given deadline has expired.
+     *
+     * @param requestParams the request parameters
+     * @param deadline      time budget for connecting, can be null
+     * @return object of the required auth provider. You can call various
+     * function of this provider to get the information.
+     * @throws Exception
+     */
+    public AuthProvider connect(final Map<String, String> requestParams,
+                                final Deadline deadline) throws Exception {
         if (providerId == null || authProvider == null) {
             throw new SocialAuthManagerStateException();
         }
         LOG.info("Connecting provider : " + providerId);
-        if (providersMap.get(providerId) == null) {
-            authProvider.verifyResponse(requestParams);
-            providersMap.put(providerId, authProvider);
+        if (getProvider(providerId) == null) {
+            Deadline previous = Deadline.attach(deadline);
+            try {
+                authProvider.verifyResponse(requestParams);
+            } finally {
+                Deadline.detach(previous);
+            }
         }
-        currentProviderId = providerId;
+        addProvider(providerId, authProvider);
         providerId = null;
         return authProvider;
     }
 
+    /**
+     * Verifies the user asynchronously when the external provider redirects
+     * back to our application. The call to the provider runs on the executor
+     * of {@link SocialAuthConfig#getExecutor()}.
+     *
+     * @param requestParams the request parameters
+     * @return future of the connected auth provider
+     * @throws Exception
+     */
+    public Future<AuthProvider> connectAsync(
+            final Map<String, String> requestParams) throws Exception {
+        return connectAsync(requestParams, null);
+    }
+
+    /**
+     * Verifies the user asynchronously when the external provider redirects
+     * back to our application. The call to the provider runs on the executor
+     * of {@link SocialAuthConfig#getExecutor()}.
+     *
+     * @param requestParams the request parameters
+     * @param callback      callback to notify on completion, can be null
+     * @return future of the connected auth provider
+     * @throws Exception
+     */
+    public Future<AuthProvider> connectAsync(
+            final Map<String, String> requestParams,
+            final AsyncCallback<AuthProvider> callback) throws Exception {
+        if (providerId == null || authProvider == null) {
+            throw new SocialAuthManagerStateException();
+        }
+        if (socialAuthConfig == null) {
+            throw new SocialAuthConfigurationException(
+                    "SocialAuth configuration is null.");
+        }
+        final String id = providerId;
+        final AuthProvider provider = authProvider;
+        final Deadline deadline = socialAuthConfig.newConnectDeadline();
+        providerId = null;
+        LOG.info("Connecting provider asynchronously : " + id);
+        return AsyncAuthProvider.submit(socialAuthConfig.getExecutor(),
+                new Callable<AuthProvider>() {
+                    @Override
+                    public AuthProvider call() throws Exception {
+                        if (getProvider(id) == null) {
+                            Deadline previous = Deadline.attach(deadline);
+                            try {
+                                provider.verifyResponse(requestParams);
+                            } finally {
+                                Deadline.detach(previous);
+                            }
+                        }
+                        addProvider(id, provider);
+                        return provider;
+                    }
+                }, callback);
+    }
+
+    /**
+     * Provides the URL for authentication with the provider without keeping
+     * the login in this manager. The provider id, permission and success URL
+     * are carried by a signed <code>state</code> parameter (see
+     * {@link SocialAuthConfig#getStateCodec()}), so the callback can be
+     * completed through {@link #connectStateless(Map)} by any instance
+     * sharing the configuration, and a single manager can serve all users.
+     * <p>
+     * The state is not bound to the browser, so the login is open to login
+     * CSRF. Use
+     * {@link #getStatelessAuthenticationUrl(String, String, Permission, String)}
+     * unless the application guards against it otherwise.
+     *
+     * @param id         the provider id
+     * @param successUrl success page URL on which provider will redirect after
+     *                   authentication
+     * @param permission Permission object which can be Permission.AUHTHENTICATE_ONLY,
+     *                   Permission.ALL, Permission.DEFAULT, can be null
+     * @return the URL string which will be used for authentication with
+     * provider
+     * @throws Exception
+     */
+    public String getStatelessAuthenticationUrl(final String id,
+                                                final String successUrl, final Permission permission)
+            throws Exception {
+        return getStatelessAuthenticationUrl(id, successUrl, permission, null);
+    }
+
+    /**
+     * Provides the URL for authentication with the provider without keeping
+     * the login in this manager, bound to the browser which starts it. The
+     * binding is a value only that browser holds, e.g. a random value stored
+     * in a cookie; the same value has to be given to
+     * {@link #connectStateless(Map, String)} on the callback.
+     * <p>
+     * It is supported by OAuth 2.0 providers, which return the state
+     * parameter to the success URL. Providers which keep a request token or
+     * discovery information between the two steps need
+     * {@link #getAuthenticationUrl(String, String, Permission)}.
+     *
+     * @param id         the provider id
+     * @param successUrl success page URL on which provider will redirect after
+     *                   authentication
+     * @param permission Permission object which can be Permission.AUHTHENTICATE_ONLY,
+     *                   Permission.ALL, Permission.DEFAULT, can be null
+     * @param binding    value only the browser starting the login holds, null
+     *                   for a login which is not bound to the browser
+     * @return the URL string which will be used for authentication with
+     * provider
+     * @throws SocialAuthException if the provider does not use OAuth 2.0
+     * @throws Exception
+     */
+    public String getStatelessAuthenticationUrl(final String id,
+                                                final String successUrl, final Permission permission,
+                                                final String binding) throws Exception {
+        if (socialAuthConfig == null) {
+            throw new SocialAuthConfigurationException(
+                    "SocialAuth configuration is null.");
+        }
+        LOG.debug("Getting stateless Authentication URL for provider " + id
+                + ", with success url : " + successUrl);
+        AuthProvider provider = getProviderInstance(id);
+        checkStateless(id, provider);
+        Permission p = permission != null ? permission : permissionsMap.get(id);
+        if (p != null) {
+            provider.setPermission(p);
+        }
+        String state = socialAuthConfig.getStateCodec().encode(id, p,
+                successUrl, binding);
+        ((AbstractProvider) provider).setState(state);
+        return setStateParameter(provider.getLoginRedirectURL(successUrl),
+                state);
+    }
+
+    /**
+     * Verifies the user when the provider redirects back to the success URL
+     * given to {@link #getStatelessAuthenticationUrl(String, String, Permission)}.
+     * The login is restored from the signed state parameter, so this manager
+     * is neither read nor updated and the returned provider is not added to
+     * the connected providers.
+     *
+     * @param requestParams the request parameters
+     * @return object of the connected auth provider
+     * @throws Exception
+     */
+    public AuthProvider connectStateless(final Map<String, String> requestParams)
+            throws Exception {
+        return connectStateless(requestParams, null, false);
+    }
+
+    /**
+     * Verifies the user when the provider redirects back to the success URL
+     * given to
+     * {@link #getStatelessAuthenticationUrl(String, String, Permission, String)}.
+     * The state parameter must have been issued to the given browser binding,
+     * otherwise the login is rejected.
+     *
+     * @param requestParams the request parameters
+     * @param binding       the value given when the login was started
+     * @return object of the connected auth provider
+     * @throws SocialAuthException if the state was not issued to the binding
+     * @throws Exception
+     */
+    public AuthProvider connectStateless(
+            final Map<String, String> requestParams, final String binding)
+            throws Exception {
+        return connectStateless(requestParams, binding, true);
+    }
+
+    private AuthProvider connectStateless(
+            final Map<String, String> requestParams, final String binding,
+            final boolean bound) throws Exception {
+        if (socialAuthConfig == null) {
+            throw new SocialAuthConfigurationException(
+                    "SocialAuth configuration is null.");
+        }
+        String token = requestParams.get(Constants.STATE);
+        StateCodec codec = socialAuthConfig.getStateCodec();
+        StateCodec.State state = bound ? codec.decode(token, binding) : codec
+                .decode(token);
+        LOG.info("Connecting provider statelessly : " + state.getProviderId());
+        AuthProvider provider = getProviderInstance(state.getProviderId());
+        checkStateless(state.getProviderId(), provider);
+        if (state.getPermission() != null) {
+            provider.setPermission(state.getPermission());
+        }
+        // restores the redirect URI which the token request has to repeat,
+        // and the state which providers compare with the returned one
+        ((AbstractProvider) provider).setState(token);
+        provider.getLoginRedirectURL(state.getSuccessUrl());
+        Deadline previous = Deadline.attach(socialAuthConfig
+                .newConnectDeadline());
+        try {
+            provider.verifyResponse(requestParams);
+        } finally {
+            Deadline.detach(previous);
+        }
+        return provider;
+    }
+
+    // OAuth 1.0 and OpenId keep a request token or discovery information
+    // between the two steps, and fetch it when the URL is built
+    private void checkStateless(final String id, final AuthProvider provider)
+            throws SocialAuthException {
+        boolean oauth2 = provider instanceof AbstractProvider
+                && ((AbstractProvider) provider).getOauthStrategy() instanceof OAuth2;
+        if (!oauth2) {
+            throw new SocialAuthException(id
+                    + " does not support stateless login, only OAuth 2.0 providers do");
+        }
+    }
+
+    private static String setStateParameter(final String url,
+                                            final String state) {
+        int q = url.indexOf('?');
+        if (q < 0) {
+            return url + "?" + Constants.STATE + "=" + state;
+        }
+        String name = Constants.STATE + "=";
+        int i = url.indexOf(name, q);
+        while (i > 0 && url.charAt(i - 1) != '?' && url.charAt(i - 1) != '&') {
+            i = url.indexOf(name, i + 1);
+        }
+        if (i < 0) {
+            return url + "&" + name + state;
+        }
+        int end = url.indexOf('&', i);
+        return url.substring(0, i) + name + state
+                + (end < 0 ? "" : url.substring(end));
+    }
+
+    /**
+     * Returns the asynchronous facade of a connected provider. Its operations
+     * run on the executor of {@link SocialAuthConfig#getExecutor()}.
+     *
+     * @param providerId the provider id
+     * @return the asynchronous provider or null if provider is not connected
+     */
+    public AsyncAuthProvider getAsyncProvider(final String providerId) {
+        AuthProvider provider = getProvider(providerId);
+        if (provider == null || socialAuthConfig == null) {
+            return null;
+        }
+        return new AsyncAuthProvider(provider, socialAuthConfig.getExecutor());
+    }
+
     /**
      * Generates access token and creates a object of AccessGrant
      *
@@ -199,8 +475,9 @@ public class SocialAuthManager implements Serializable {
                     "SocialAuth configuration is null.");
         }
         getAuthenticationUrl(providerId, redirectURL);
-        if (providersMap.get(providerId) != null) {
-            authProvider = providersMap.get(providerId);
+        AuthProvider connected = getProvider(providerId);
+        if (connected != null) {
+            authProvider = connected;
         }
         Map<String, String> map = new HashMap<String, String>();
         map.put("code", authCode);
@@ -218,8 +495,9 @@ public class SocialAuthManager implements Serializable {
                     "SocialAuth configuration is null.");
         }
 
-        if (providersMap.get(providerId) != null) {
-            authProvider = providersMap.get(providerId);
+        AuthProvider connected = getProvider(providerId);
+        if (connected != null) {
+            authProvider = connected;
         } else {
             authProvider = getProviderInstance(providerId);
         }
@@ -236,10 +514,12 @@ public class SocialAuthManager implements Serializable {
      * @return True if provider is disconnected or false if not.
      */
     public boolean disconnectProvider(final String id) {
-        if (providersMap.get(id) != null) {
-            AuthProvider p = providersMap.get(id);
+        AuthProvider p;
+        synchronized (providersMap) {
+            p = providersMap.remove(id);
+        }
+        if (p != null) {
             p.logout();
-            providersMap.remove(id);
             return true;
         }
         return false;
@@ -261,13 +541,12 @@ public class SocialAuthManager implements Serializable {
         }
         LOG.debug("Connecting provider : " + accessGrant.getProviderId()
                 + ", from given access grant");
-        AuthProvider provider = providersMap.get(accessGrant.getProviderId());
+        AuthProvider provider = getProvider(accessGrant.getProviderId());
         if (provider == null) {
             provider = getProviderInstance(accessGrant.getProviderId());
             provider.setAccessGrant(accessGrant);
             authProvider = provider;
-            currentProviderId = accessGrant.getProviderId();
-            providersMap.put(currentProviderId, authProvider);
+            addProvider(accessGrant.getProviderId(), provider);
         }
         return provider;
     }
@@ -291,8 +570,7 @@ public class SocialAuthManager implements Serializable {
         AuthProvider provider = getProviderInstance(accessGrant.getProviderId());
         provider.refreshToken(accessGrant);
         authProvider = provider;
-        currentProviderId = accessGrant.getProviderId();
-        providersMap.put(currentProviderId, authProvider);
+        addProvider(accessGrant.getProviderId(), provider);
         return provider;
     }
 
@@ -303,10 +581,9 @@ public class SocialAuthManager implements Serializable {
      * @return provider connected status
      */
     public boolean isConnected(final String providerId) {
-        if (providersMap.containsKey(providerId)) {
-            return true;
+        synchronized (providersMap) {
+            return providersMap.containsKey(providerId);
         }
-        return false;
     }
 
     /**
@@ -316,34 +593,29 @@ public class SocialAuthManager implements Serializable {
      * @return the instance of given provider
      */
     public AuthProvider getProvider(final String providerId) {
-        return providersMap.get(providerId);
+        synchronized (providersMap) {
+            return providersMap.get(providerId);
+        }
+    }
+
+    // the connected providers and the current provider id are only accessed
+    // while holding the providersMap lock, as connectAsync updates them from
+    // an executor thread
+    private void addProvider(final String id, final AuthProvider provider) {
+        synchronized (providersMap) {
+            providersMap.put(id, provider);
+            currentProviderId = id;
+        }
     }
 
     private AuthProvider getProviderInstance(final String id)
             throws SocialAuthConfigurationException, SocialAuthException {
-        OAuthConfig config = socialAuthConfig.getProviderConfig(id);
-        Class<?> obj = config.getProviderImplClass();
-        AuthProvider provider;
-        try {
-            Constructor<?> cons = obj.getConstructor(OAuthConfig.class);
-            provider = (AuthProvider) cons.newInstance(config);
-        } catch (NoSuchMethodException me) {
-            LOG.warn(obj.getName() + " does not implement a constructor "
-                    + obj.getName() + "(Poperties props)");
-            try {
-                provider = (AuthProvider) obj.newInstance();
-            } catch (Exception e) {
-                throw new SocialAuthConfigurationException(e);
-            }
-        } catch (Exception e) {
-            throw new SocialAuthConfigurationException(e);
-        }
-        try {
-            provider.registerPlugins();
-        } catch (Exception e) {
-            throw new SocialAuthConfigurationException(e);
+        AuthProvider provider = socialAuthConfig.getProviderFactory(id)
+                .newInstance();
+        if (provider instanceof AbstractProvider) {
+            ((AbstractProvider) provider).setPhotoLoader(socialAuthConfig
+                    .newPhotoLoader());
         }
-
         return provider;
     }
 
@@ -353,11 +625,9 @@ public class SocialAuthManager implements Serializable {
      * @return List of connected providers ids string.
      */
     public List<String> getConnectedProvidersIds() {
-        List<String> list = new ArrayList<String>();
-        for (Map.Entry<String, AuthProvider> entry : providersMap.entrySet()) {
-            list.add(entry.getKey());
+        synchronized (providersMap) {
+            return new ArrayList<String>(providersMap.keySet());
         }
-        return list;
     }
 
     /**
@@ -366,8 +636,10 @@ public class SocialAuthManager implements Serializable {
      * @return AuthProvider object
      */
     public AuthProvider getCurrentAuthProvider() {
-        if (currentProviderId != null) {
-            return providersMap.get(currentProviderId);
+        synchronized (providersMap) {
+            if (currentProviderId != null) {
+                return providersMap.get(currentProviderId);
+            }
         }
         return null;
     }
@@ -384,4 +656,28 @@ public class SocialAuthManager implements Serializable {
         permissionsMap.put(providerId, permission);
     }
 
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        synchronized (providersMap) {
+            out.defaultWriteObject();
+        }
+    }
+
+    // the executor of the photo loaders is not serialized
+    private void readObject(final ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        if (socialAuthConfig == null) {
+            return;
+        }
+        for (AuthProvider provider : providersMap.values()) {
+            if (provider instanceof AbstractProvider) {
+                AlbumPhotoLoader loader = ((AbstractProvider) provider)
+                        .getPhotoLoader();
+                if (loader.getExecutor() == null) {
+                    loader.setExecutor(socialAuthConfig.getExecutor());
+                }
+            }
+        }
+    }
+
 }
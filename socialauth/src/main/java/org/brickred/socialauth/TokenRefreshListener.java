@@ -0,0 +1,56 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth;
+
+import org.brickred.socialauth.util.AccessGrant;
+
+/**
+ * Listener which is notified by {@link TokenRefreshManager} when the access
+ * grant of a registered provider is refreshed, so the new grant can be
+ * persisted in place of the old one.
+ *
+ * @author tarunn@brickred.com
+ */
+public interface TokenRefreshListener {
+
+    /**
+     * Called when the access grant of the provider has been refreshed.
+     *
+     * @param provider the provider whose grant was refreshed
+     * @param oldGrant the access grant before the refresh
+     * @param newGrant the refreshed access grant
+     */
+    public void onRefresh(AuthProvider provider, AccessGrant oldGrant,
+                          AccessGrant newGrant);
+
+    /**
+     * Called when refreshing the access grant of the provider fails.
+     *
+     * @param provider the provider whose grant could not be refreshed
+     * @param grant    the access grant which could not be refreshed
+     * @param e        the exception thrown by the refresh
+     */
+    public void onFailure(AuthProvider provider, AccessGrant grant, Exception e);
+}
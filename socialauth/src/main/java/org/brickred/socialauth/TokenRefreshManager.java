@@ -0,0 +1,473 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.brickred.socialauth.util.AccessGrant;
+import org.brickred.socialauth.util.Constants;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes the access grants of registered providers shortly before they
+ * expire. The expiry is taken from the {@link Constants#EXPIRES} attribute
+ * of the grant, which holds the lifetime of the token in seconds, and the
+ * refresh is scheduled on a delay queue served by a single daemon thread.
+ * The refresh itself runs on the given executor through
+ * {@link AuthProvider#refreshToken(AccessGrant)}, so a slow provider does
+ * not hold up the refreshes of others.
+ * <p>
+ * Concurrent refreshes of the same provider are coalesced: while a refresh
+ * is in flight, {@link #refresh(AuthProvider)} returns the pending future
+ * instead of starting another one. The registered
+ * {@link TokenRefreshListener} is notified of every refresh, so the new
+ * grant can be persisted. A failed refresh is retried after the retry delay
+ * until the grant expires. A provider whose new grant has no expiry, or
+ * whose refresh failed too close to the expiry to be retried, is
+ * unregistered. Providers which extend {@link AbstractProvider} without
+ * overriding {@link AuthProvider#refreshToken(AccessGrant)} cannot refresh
+ * their grant and are rejected.
+ * <p>
+ * Threading: a refresh calls {@link AuthProvider#refreshToken(AccessGrant)}
+ * on an executor thread, on the same provider instance the application uses
+ * to make calls. Providers are not thread safe; FacebookImpl, for example,
+ * replaces its access grant without synchronization. The refresh holds the
+ * monitor of the provider while it calls refreshToken and reads the new
+ * grant, so an application which keeps using a registered provider from
+ * other threads must make those calls while synchronized on the provider
+ * too. Listeners are notified on the executor thread.
+ * <p>
+ * Because the refresh needs the monitor of the provider, a thread which
+ * holds that monitor must not wait for the future returned by
+ * {@link #refresh(AuthProvider)}: the refresh cannot start until the monitor
+ * is released, so the wait never ends. Release the monitor before waiting,
+ * or wait with a timeout.
+ *
+ * @author tarunn@brickred.com
+ */
+public class TokenRefreshManager {
+
+    /**
+     * Default time before expiry at which a grant is refreshed, in
+     * milliseconds
+     */
+    public static final long DEFAULT_REFRESH_AHEAD = 5 * 60 * 1000L;
+
+    /**
+     * Default time after which a failed refresh is retried, in milliseconds
+     */
+    public static final long DEFAULT_RETRY_DELAY = 30 * 1000L;
+
+    private static final Log LOG = LogFactory.getLog(TokenRefreshManager.class);
+
+    private final ConcurrentMap<AuthProvider, Entry> entries = new ConcurrentHashMap<AuthProvider, Entry>();
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Executor executor;
+    private final long refreshAhead;
+    private final long retryDelay;
+    private volatile TokenRefreshListener listener;
+
+    /**
+     * Creates a manager which refreshes grants on the executor of the given
+     * configuration. The refresh ahead and retry delay are read from the
+     * {@link Constants#TOKEN_REFRESH_AHEAD} and
+     * {@link Constants#TOKEN_REFRESH_RETRY_DELAY} properties.
+     *
+     * @param config the configuration
+     */
+    public TokenRefreshManager(final SocialAuthConfig config) {
+        this(config.getExecutor(), config.getLongProperty(
+                Constants.TOKEN_REFRESH_AHEAD, DEFAULT_REFRESH_AHEAD), config
+                .getLongProperty(Constants.TOKEN_REFRESH_RETRY_DELAY,
+                        DEFAULT_RETRY_DELAY));
+    }
+
+    /**
+     * @param executor     the executor on which refreshes run
+     * @param refreshAhead time before expiry at which a grant is refreshed,
+     *                     in milliseconds
+     * @param retryDelay   time after which a failed refresh is retried, in
+     *                     milliseconds
+     */
+    public TokenRefreshManager(final Executor executor,
+                               final long refreshAhead, final long retryDelay) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor is required");
+        }
+        this.executor = executor;
+        this.refreshAhead = Math.max(0, refreshAhead);
+        this.retryDelay = Math.max(1, retryDelay);
+        scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread t = new Thread(r, "socialauth-token-refresh");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Sets the listener which is notified of refreshes.
+     *
+     * @param listener the listener, can be null
+     */
+    public void setListener(final TokenRefreshListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Retrieves the listener which is notified of refreshes.
+     *
+     * @return the listener
+     */
+    public TokenRefreshListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Registers the provider for refresh before its access grant expires.
+     * The lifetime given by the {@link Constants#EXPIRES} attribute is
+     * counted from now, so this should be called right after the grant has
+     * been obtained. Registering a provider again reschedules it.
+     *
+     * @param provider the provider whose access grant needs to be refreshed
+     * @return false if the grant does not carry an expiry, in which case the
+     * provider is not registered
+     * @throws IllegalArgumentException if the provider has no access grant or
+     *                                  cannot refresh it
+     */
+    public boolean register(final AuthProvider provider) {
+        AccessGrant grant = provider.getAccessGrant();
+        if (grant == null) {
+            throw new IllegalArgumentException("Provider has no access grant");
+        }
+        long expiresAt = getExpiresAt(grant, System.currentTimeMillis());
+        if (expiresAt < 0) {
+            LOG.debug("Access grant of " + grant.getProviderId()
+                    + " has no expiry, not registering");
+            return false;
+        }
+        register(provider, expiresAt);
+        return true;
+    }
+
+    /**
+     * Registers the provider for refresh before the given expiry.
+     * Registering a provider again reschedules it.
+     *
+     * @param provider  the provider whose access grant needs to be refreshed
+     * @param expiresAt time at which the access grant expires, in
+     *                  milliseconds since the epoch
+     * @throws IllegalArgumentException if the provider cannot refresh its
+     *                                  access grant
+     */
+    public void register(final AuthProvider provider, final long expiresAt) {
+        checkRefreshable(provider);
+        Entry entry = entries.get(provider);
+        if (entry == null) {
+            Entry created = new Entry(provider);
+            entry = entries.putIfAbsent(provider, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        entry.schedule(expiresAt, System.currentTimeMillis());
+    }
+
+    /**
+     * Stops refreshing the access grant of the provider. A refresh which is
+     * already in flight completes, but is not rescheduled.
+     *
+     * @param provider the provider to unregister
+     */
+    public void unregister(final AuthProvider provider) {
+        Entry entry = entries.remove(provider);
+        if (entry != null) {
+            entry.cancel();
+        }
+    }
+
+    /**
+     * Checks whether the provider is registered for refresh.
+     *
+     * @param provider the provider
+     * @return true if the provider is registered
+     */
+    public boolean isRegistered(final AuthProvider provider) {
+        return entries.containsKey(provider);
+    }
+
+    /**
+     * Refreshes the access grant of the provider now, for example when a
+     * call has been rejected because the token expired. If a refresh of the
+     * provider is already in flight, its future is returned instead of
+     * starting another one. An unregistered provider is registered, so it
+     * is refreshed again before the new grant expires.
+     *
+     * @param provider the provider whose access grant needs to be refreshed
+     * @return future of the refreshed access grant
+     * @throws IllegalArgumentException if the provider cannot refresh its
+     *                                  access grant
+     */
+    public Future<AccessGrant> refresh(final AuthProvider provider) {
+        checkRefreshable(provider);
+        while (true) {
+            Entry entry = entries.get(provider);
+            if (entry == null) {
+                Entry created = new Entry(provider);
+                entry = entries.putIfAbsent(provider, created);
+                if (entry == null) {
+                    entry = created;
+                }
+            }
+            Future<AccessGrant> future = entry.refresh();
+            if (future != null) {
+                return future;
+            }
+            // unregistered concurrently, start over with a new entry
+            entries.remove(provider, entry);
+        }
+    }
+
+    /**
+     * Stops the scheduler and unregisters all providers. The executor on
+     * which refreshes run is not shut down.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (Entry entry : entries.values()) {
+            entry.cancel();
+        }
+        entries.clear();
+    }
+
+    // AbstractProvider.refreshToken() only throws "Not implemented", so
+    // scheduling it would fail on every retry until the grant expires
+    private void checkRefreshable(final AuthProvider provider) {
+        if (!(provider instanceof AbstractProvider)) {
+            return;
+        }
+        Class<?> declaring;
+        try {
+            declaring = provider.getClass()
+                    .getMethod("refreshToken", AccessGrant.class)
+                    .getDeclaringClass();
+        } catch (NoSuchMethodException e) {
+            declaring = AbstractProvider.class;
+        }
+        if (declaring == AbstractProvider.class) {
+            throw new IllegalArgumentException(provider.getClass().getName()
+                    + " does not support token refresh");
+        }
+    }
+
+    private long getExpiresAt(final AccessGrant grant, final long now) {
+        Object expires = grant.getAttribute(Constants.EXPIRES);
+        long seconds = -1;
+        if (expires instanceof Number) {
+            seconds = ((Number) expires).longValue();
+        } else if (expires != null) {
+            try {
+                seconds = Long.parseLong(expires.toString().trim());
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid expiry in access grant :: " + expires);
+            }
+        }
+        // a lifetime of zero means the grant does not expire
+        return seconds > 0 ? now + seconds * 1000 : -1;
+    }
+
+    private void notifyRefresh(final AuthProvider provider,
+                               final AccessGrant oldGrant, final AccessGrant newGrant) {
+        TokenRefreshListener l = listener;
+        if (l != null) {
+            try {
+                l.onRefresh(provider, oldGrant, newGrant);
+            } catch (RuntimeException e) {
+                LOG.warn("Token refresh listener failed", e);
+            }
+        }
+    }
+
+    private void notifyFailure(final AuthProvider provider,
+                               final AccessGrant grant, final Exception e) {
+        TokenRefreshListener l = listener;
+        if (l != null) {
+            try {
+                l.onFailure(provider, grant, e);
+            } catch (RuntimeException re) {
+                LOG.warn("Token refresh listener failed", re);
+            }
+        }
+    }
+
+    private final class Entry implements Runnable {
+        private final AuthProvider provider;
+        private long expiresAt = -1;
+        private ScheduledFuture<?> scheduled;
+        private FutureTask<AccessGrant> inFlight;
+        private boolean cancelled;
+
+        Entry(final AuthProvider provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public void run() {
+            try {
+                refresh();
+            } catch (RejectedExecutionException e) {
+                LOG.warn("Unable to schedule token refresh", e);
+            }
+        }
+
+        synchronized void schedule(final long expiresAt, final long now) {
+            if (cancelled) {
+                return;
+            }
+            this.expiresAt = expiresAt;
+            if (inFlight != null) {
+                // rescheduled when the pending refresh completes
+                return;
+            }
+            // never refresh later than half way through a short lifetime
+            long ahead = Math.min(refreshAhead, (expiresAt - now) / 2);
+            scheduleAt(expiresAt - ahead, now);
+        }
+
+        // returns null once the entry has been cancelled
+        synchronized Future<AccessGrant> refresh() {
+            if (cancelled) {
+                return null;
+            }
+            if (inFlight != null) {
+                return inFlight;
+            }
+            clearSchedule();
+            final AccessGrant grant = provider.getAccessGrant();
+            FutureTask<AccessGrant> task = new FutureTask<AccessGrant>(
+                    new Callable<AccessGrant>() {
+                        @Override
+                        public AccessGrant call() throws Exception {
+                            return doRefresh(grant);
+                        }
+                    });
+            inFlight = task;
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                inFlight = null;
+                throw e;
+            }
+            return task;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            clearSchedule();
+        }
+
+        private AccessGrant doRefresh(final AccessGrant grant) throws Exception {
+            LOG.debug("Refreshing access grant of " + grant.getProviderId());
+            AccessGrant newGrant;
+            try {
+                synchronized (provider) {
+                    provider.refreshToken(grant);
+                    newGrant = provider.getAccessGrant();
+                }
+                if (newGrant.getProviderId() == null) {
+                    newGrant.setProviderId(grant.getProviderId());
+                }
+            } catch (Exception e) {
+                LOG.warn("Unable to refresh access grant of "
+                        + grant.getProviderId(), e);
+                synchronized (this) {
+                    inFlight = null;
+                    long now = System.currentTimeMillis();
+                    if (expiresAt > now + retryDelay) {
+                        scheduleAt(now + retryDelay, now);
+                    } else {
+                        remove();
+                    }
+                }
+                notifyFailure(provider, grant, e);
+                throw e;
+            }
+            long now = System.currentTimeMillis();
+            long next = getExpiresAt(newGrant, now);
+            synchronized (this) {
+                inFlight = null;
+                if (next >= 0) {
+                    schedule(next, now);
+                } else {
+                    remove();
+                }
+            }
+            notifyRefresh(provider, grant, newGrant);
+            return newGrant;
+        }
+
+        // nothing left to schedule, so the entry is dropped
+        private void remove() {
+            expiresAt = -1;
+            cancelled = true;
+            clearSchedule();
+            entries.remove(provider, this);
+        }
+
+        private void scheduleAt(final long time, final long now) {
+            clearSchedule();
+            if (cancelled) {
+                return;
+            }
+            try {
+                scheduled = scheduler.schedule(this, Math.max(0, time - now),
+                        TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Token refresh manager is shut down");
+            }
+        }
+
+        private void clearSchedule() {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+                scheduler.remove((Runnable) scheduled);
+                scheduled = null;
+            }
+        }
+    }
+}
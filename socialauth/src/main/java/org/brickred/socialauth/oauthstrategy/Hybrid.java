@@ -64,7 +64,7 @@ public class Hybrid implements OAuthStrategyBase {
         String associationURL = OpenIdConsumer.getAssociationURL(endpoints
                 .get(Constants.OAUTH_REQUEST_TOKEN_URL));
         Response r = HttpUtil.doHttpRequest(associationURL,
-                MethodType.GET.toString(), null, null);
+                MethodType.GET.toString(), null, null, oauth.getConfig());
         StringBuffer sb = new StringBuffer();
         String assocHandle = "";
         try {
@@ -170,12 +170,12 @@ public class OAuth2 implements OAuthStrategyBase {
                 authURL = sb.toString();
                 LOG.debug("URL for Access Token request : " + authURL);
                 response = HttpUtil.doHttpRequest(authURL, methodType, null,
-                        null);
+                        null, oauth.getConfig());
             } else {
                 authURL = endpoints.get(Constants.OAUTH_ACCESS_TOKEN_URL);
                 LOG.debug("URL for Access Token request : " + authURL);
                 response = HttpUtil.doHttpRequest(authURL, methodType,
-                        sb.toString(), null);
+                        sb.toString(), null, oauth.getConfig());
             }
         } catch (Exception e) {
             throw new SocialAuthException("Error in url : " + authURL, e);
@@ -282,7 +282,7 @@ public class OAuth2 implements OAuthStrategyBase {
                 + accessGrant.getKey();
         LOG.debug("Calling URL : " + urlStr);
         return HttpUtil.doHttpRequest(urlStr, MethodType.GET.toString(), null,
-                null);
+                null, oauth.getConfig());
     }
 
     @Override
@@ -342,8 +342,8 @@ public class OAuth2 implements OAuthStrategyBase {
         LOG.debug("Calling URL	:	" + reqURL);
         LOG.debug("Body		:	" + bodyStr);
         LOG.debug("Header Params	:	" + headerParams);
-        return HttpUtil
-                .doHttpRequest(reqURL, methodType, bodyStr, headerParams);
+        return HttpUtil.doHttpRequest(reqURL, methodType, bodyStr,
+                headerParams, oauth.getConfig());
     }
 
     @Override
@@ -370,7 +370,7 @@ public class OAuth2 implements OAuthStrategyBase {
             map.putAll(params);
         }
         return HttpUtil.doHttpRequest(url, methodType, map, headerParams,
-                inputStream, fileName, null);
+                inputStream, fileName, null, oauth.getConfig());
     }
 
     @Override
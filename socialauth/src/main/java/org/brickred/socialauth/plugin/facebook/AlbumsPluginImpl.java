@@ -29,6 +29,7 @@ import org.apache.commons.logging.LogFactory;
 import org.brickred.socialauth.Album;
 import org.brickred.socialauth.Photo;
 import org.brickred.socialauth.plugin.AlbumsPlugin;
+import org.brickred.socialauth.util.AlbumPhotoLoader;
 import org.brickred.socialauth.util.Constants;
 import org.brickred.socialauth.util.MethodType;
 import org.brickred.socialauth.util.ProviderSupport;
@@ -83,10 +84,15 @@ public class AlbumsPluginImpl implements AlbumsPlugin, Serializable {
                 album.setCoverPhoto(String.format(ALBUM_COVER_URL, albumId,
                         providerSupport.getAccessGrant().getKey()));
             }
-            List<Photo> photos = getAlbumPhotos(albumId);
-            album.setPhotos(photos);
             albums.add(album);
         }
+        getPhotoLoader().load(albums, new AlbumPhotoLoader.PhotoSource() {
+            @Override
+            public List<Photo> getPhotos(final String albumId)
+                    throws Exception {
+                return getAlbumPhotos(albumId);
+            }
+        });
         return albums;
     }
 
@@ -131,6 +137,18 @@ public class AlbumsPluginImpl implements AlbumsPlugin, Serializable {
         return photos;
     }
 
+    /**
+     * Retrieves the loader of album photos, through which the parallelism,
+     * lazy loading and executor of photo fetches can be configured. It
+     * belongs to the provider, so its settings are kept when the plugin is
+     * created again.
+     *
+     * @return the album photo loader
+     */
+    public AlbumPhotoLoader getPhotoLoader() {
+        return providerSupport.getPhotoLoader();
+    }
+
     @Override
     public ProviderSupport getProviderSupport() {
         return providerSupport;
@@ -30,6 +30,7 @@ import org.brickred.socialauth.Album;
 import org.brickred.socialauth.Photo;
 import org.brickred.socialauth.exception.ServerDataException;
 import org.brickred.socialauth.plugin.AlbumsPlugin;
+import org.brickred.socialauth.util.AlbumPhotoLoader;
 import org.brickred.socialauth.util.MethodType;
 import org.brickred.socialauth.util.ProviderSupport;
 import org.brickred.socialauth.util.Response;
@@ -128,9 +129,6 @@ public class AlbumsPluginImpl implements AlbumsPlugin, Serializable {
                                 albumObj.setLink(String.format(SET_LINK,
                                         this.getUserId(), id));
                             }
-                            List<Photo> photos = getAlbumPhotos(id);
-                            albumObj.setPhotos(photos);
-
                             albums.add(albumObj);
                         }
                     }
@@ -139,6 +137,13 @@ public class AlbumsPluginImpl implements AlbumsPlugin, Serializable {
                 LOG.debug("No Albums were obtained from : " + albumUrl);
             }
         }
+        getPhotoLoader().load(albums, new AlbumPhotoLoader.PhotoSource() {
+            @Override
+            public List<Photo> getPhotos(final String albumId)
+                    throws Exception {
+                return getAlbumPhotos(albumId);
+            }
+        });
         return albums;
     }
 
@@ -167,6 +172,7 @@ public class AlbumsPluginImpl implements AlbumsPlugin, Serializable {
                 }
 
             }
+            this.userId = id;
             return id;
         }
     }
@@ -220,6 +226,18 @@ public class AlbumsPluginImpl implements AlbumsPlugin, Serializable {
         return photos;
     }
 
+    /**
+     * Retrieves the loader of album photos, through which the parallelism,
+     * lazy loading and executor of photo fetches can be configured. It
+     * belongs to the provider, so its settings are kept when the plugin is
+     * created again.
+     *
+     * @return the album photo loader
+     */
+    public AlbumPhotoLoader getPhotoLoader() {
+        return providerSupport.getPhotoLoader();
+    }
+
     @Override
     public ProviderSupport getProviderSupport() {
         return providerSupport;
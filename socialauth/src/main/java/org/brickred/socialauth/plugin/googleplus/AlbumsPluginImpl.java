@@ -30,6 +30,7 @@ import org.brickred.socialauth.Album;
 import org.brickred.socialauth.Photo;
 import org.brickred.socialauth.exception.ServerDataException;
 import org.brickred.socialauth.plugin.AlbumsPlugin;
+import org.brickred.socialauth.util.AlbumPhotoLoader;
 import org.brickred.socialauth.util.MethodType;
 import org.brickred.socialauth.util.ProviderSupport;
 import org.brickred.socialauth.util.Response;
@@ -132,16 +133,20 @@ public class AlbumsPluginImpl implements AlbumsPlugin, Serializable {
                     }
 
                     album.setLink(href);
-                    List<Photo> photos = getAlbumPhotos(albumId);
-                    album.setPhotos(photos);
 
                     albums.add(album);
-                    System.out.println(album);
                 }
             } else {
                 LOG.info("No albums were obtained from : " + ALBUMS_URL);
             }
         }
+        getPhotoLoader().load(albums, new AlbumPhotoLoader.PhotoSource() {
+            @Override
+            public List<Photo> getPhotos(final String albumId)
+                    throws Exception {
+                return getAlbumPhotos(albumId);
+            }
+        });
 
         return albums;
     }
@@ -235,6 +240,18 @@ public class AlbumsPluginImpl implements AlbumsPlugin, Serializable {
         return photos;
     }
 
+    /**
+     * Retrieves the loader of album photos, through which the parallelism,
+     * lazy loading and executor of photo fetches can be configured. It
+     * belongs to the provider, so its settings are kept when the plugin is
+     * created again.
+     *
+     * @return the album photo loader
+     */
+    public AlbumPhotoLoader getPhotoLoader() {
+        return providerSupport.getPhotoLoader();
+    }
+
     @Override
     public ProviderSupport getProviderSupport() {
         return providerSupport;
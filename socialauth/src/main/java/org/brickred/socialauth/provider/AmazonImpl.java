@@ -68,7 +68,6 @@ public class AmazonImpl extends AbstractProvider {
     private Profile userProfile;
     private AccessGrant accessGrant;
     private OAuthStrategyBase authenticationStrategy;
-    private String state;
 
     /**
      * Stores configuration for the provider
@@ -79,7 +78,7 @@ public class AmazonImpl extends AbstractProvider {
      */
     public AmazonImpl(final OAuthConfig providerConfig) throws Exception {
         config = providerConfig;
-        state = "SocialAuth" + System.currentTimeMillis();
+        setState("SocialAuth" + System.currentTimeMillis());
         // Need to pass scope while fetching RequestToken from LinkedIn for new
         // keys
         if (config.getCustomPermissions() != null) {
@@ -115,7 +114,7 @@ public class AmazonImpl extends AbstractProvider {
     @Override
     public String getLoginRedirectURL(String successUrl) throws Exception {
         Map<String, String> map = new HashMap<String, String>();
-        map.put(Constants.STATE, state);
+        map.put(Constants.STATE, getState());
         return authenticationStrategy.getLoginRedirectURL(successUrl, map);
     }
 
@@ -132,7 +131,7 @@ public class AmazonImpl extends AbstractProvider {
             throws Exception {
         if (requestParams.containsKey(Constants.STATE)) {
             String stateStr = requestParams.get(Constants.STATE);
-            if (!state.equals(stateStr)) {
+            if (!stateStr.equals(getState())) {
                 throw new SocialAuthException(
                         "State parameter value does not match with expected value");
             }
@@ -29,6 +29,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.brickred.socialauth.AbstractProvider;
 import org.brickred.socialauth.Contact;
+import org.brickred.socialauth.ContactStream;
 import org.brickred.socialauth.Permission;
 import org.brickred.socialauth.Profile;
 import org.brickred.socialauth.exception.AccessTokenExpireException;
@@ -39,6 +40,7 @@ import org.brickred.socialauth.oauthstrategy.OAuth2;
 import org.brickred.socialauth.oauthstrategy.OAuthStrategyBase;
 import org.brickred.socialauth.util.*;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.InputStream;
@@ -55,6 +57,11 @@ public class FacebookImpl extends AbstractProvider {
 
     private static final long serialVersionUID = 8644510564735754296L;
     private static final String PROFILE_URL = "https://graph.facebook.com/v2.5/me?fields=id,name,email";
+    private static final ProfileMapping PROFILE_MAPPING = new ProfileMapping(
+            "id -> validatedId", "name -> fullName",
+            "first_name -> firstName", "last_name -> lastName",
+            "email -> email", "location.name -> location",
+            "gender -> gender", "birthday", "locale");
     private static final String CONTACTS_URL = "https://graph.facebook.com/v2.5/me/friends";
     private static final String UPDATE_STATUS_URL = "https://graph.facebook.com/v2.5/me/feed";
     private static final String PROFILE_IMAGE_URL = "http://graph.facebook.com/%1$s/picture";
@@ -169,19 +176,10 @@ public class FacebookImpl extends AbstractProvider {
         }
         try {
             LOG.debug("User Profile : " + presp);
-            JSONObject resp = new JSONObject(presp);
             Profile p = new Profile();
-            p.setValidatedId(resp.optString("id", null));
-            p.setFullName(resp.optString("name", null));
-            p.setFirstName(resp.optString("first_name", null));
-            p.setLastName(resp.optString("last_name", null));
-            p.setEmail(resp.optString("email", null));
-            if (resp.has("location")) {
-                p.setLocation(resp.getJSONObject("location").optString("name",
-                        null));
-            }
-            if (resp.has("birthday")) {
-                String bstr = resp.optString("birthday");
+            Map<String, String> values = PROFILE_MAPPING.map(presp, p);
+            String bstr = values.get("birthday");
+            if (bstr != null) {
                 String[] arr = bstr.split("/");
                 BirthDate bd = new BirthDate();
                 if (arr.length > 0) {
@@ -195,10 +193,12 @@ public class FacebookImpl extends AbstractProvider {
                 }
                 p.setDob(bd);
             }
-            p.setGender(resp.optString("gender", null));
+            if (p.getValidatedId() == null) {
+                throw new JSONException("Profile id not found");
+            }
             p.setProfileImageURL(String.format(PROFILE_IMAGE_URL,
-                    resp.getString("id")));
-            String locale = resp.optString("locale", null);
+                    p.getValidatedId()));
+            String locale = values.get("locale");
             if (locale != null) {
                 String a[] = locale.split("_");
                 p.setLanguage(a[0]);
@@ -262,17 +262,43 @@ public class FacebookImpl extends AbstractProvider {
 
     @Override
     public List<Contact> getContactList() throws Exception {
+        return getContactPage(null).getContacts();
+    }
+
+    /**
+     * Gets the friends of the user page by page, following the
+     * <code>after</code> cursor of the Graph API.
+     *
+     * @return stream of contacts
+     */
+    @Override
+    public ContactStream getContactStream() {
+        return new ContactStream(new ContactStream.PageSource() {
+            @Override
+            public ContactStream.Page getPage(final String cursor)
+                    throws Exception {
+                return getContactPage(cursor);
+            }
+        });
+    }
+
+    private ContactStream.Page getContactPage(final String after)
+            throws Exception {
         List<Contact> plist = new ArrayList<Contact>();
-        LOG.info("Fetching contacts from " + CONTACTS_URL);
+        String url = CONTACTS_URL;
+        if (after != null) {
+            url += "?after=" + HttpUtil.encodeURIComponent(after);
+        }
+        LOG.info("Fetching contacts from " + url);
         String respStr;
         try {
-            Response response = authenticationStrategy
-                    .executeFeed(CONTACTS_URL);
+            Response response = authenticationStrategy.executeFeed(url);
             respStr = response.getResponseBodyAsString(Constants.ENCODING);
         } catch (Exception e) {
             throw new SocialAuthException("Error while getting contacts from "
-                    + CONTACTS_URL, e);
+                    + url, e);
         }
+        String next = null;
         try {
             LOG.debug("User Contacts list in json : " + respStr);
             JSONObject resp = new JSONObject(respStr);
@@ -304,11 +330,18 @@ public class FacebookImpl extends AbstractProvider {
                 }
                 plist.add(p);
             }
+            JSONObject paging = resp.optJSONObject("paging");
+            if (paging != null && paging.has("next")) {
+                JSONObject cursors = paging.optJSONObject("cursors");
+                if (cursors != null) {
+                    next = cursors.optString("after", null);
+                }
+            }
         } catch (Exception e) {
             throw new ServerDataException(
                     "Failed to parse the user profile json : " + respStr, e);
         }
-        return plist;
+        return new ContactStream.Page(plist, next);
     }
 
     /**
@@ -508,7 +541,7 @@ public class FacebookImpl extends AbstractProvider {
                 config.get_consumerSecret(), expireAccessGrant.getKey());
         LOG.debug("URL for Refresh Token :: " + url);
         Response response = HttpUtil.doHttpRequest(url,
-                MethodType.GET.toString(), null, null);
+                MethodType.GET.toString(), null, null, config);
         String result = null;
         try {
             result = response.getResponseBodyAsString(Constants.ENCODING);
@@ -29,6 +29,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.brickred.socialauth.AbstractProvider;
 import org.brickred.socialauth.Contact;
+import org.brickred.socialauth.ContactStream;
 import org.brickred.socialauth.Permission;
 import org.brickred.socialauth.Profile;
 import org.brickred.socialauth.exception.AccessTokenExpireException;
@@ -218,18 +219,46 @@ public class FourSquareImpl extends AbstractProvider {
 
     @Override
     public List<Contact> getContactList() throws Exception {
-        LOG.info("Fetching contacts from " + CONTACTS_URL);
+        return getContactPage(null).getContacts();
+    }
+
+    /**
+     * Gets the friends of the user page by page, using the offset of the
+     * Foursquare API.
+     *
+     * @return stream of contacts
+     */
+    @Override
+    public ContactStream getContactStream() {
+        return new ContactStream(new ContactStream.PageSource() {
+            @Override
+            public ContactStream.Page getPage(final String cursor)
+                    throws Exception {
+                return getContactPage(cursor);
+            }
+        });
+    }
+
+    private ContactStream.Page getContactPage(final String offset)
+            throws Exception {
+        String url = CONTACTS_URL;
+        int start = 0;
+        if (offset != null) {
+            start = Integer.parseInt(offset);
+            url += "&offset=" + start;
+        }
+        LOG.info("Fetching contacts from " + url);
 
         Response serviceResponse;
         try {
-            serviceResponse = authenticationStrategy.executeFeed(CONTACTS_URL);
+            serviceResponse = authenticationStrategy.executeFeed(url);
         } catch (Exception e) {
             throw new SocialAuthException("Error while getting contacts from "
-                    + CONTACTS_URL, e);
+                    + url, e);
         }
         if (serviceResponse.getStatus() != 200) {
             throw new SocialAuthException("Error while getting contacts from "
-                    + CONTACTS_URL + "Status : " + serviceResponse.getStatus());
+                    + url + "Status : " + serviceResponse.getStatus());
         }
         String respStr;
         try {
@@ -237,12 +266,13 @@ public class FourSquareImpl extends AbstractProvider {
                     .getResponseBodyAsString(Constants.ENCODING);
         } catch (Exception exc) {
             throw new SocialAuthException("Failed to read response from  "
-                    + CONTACTS_URL, exc);
+                    + url, exc);
         }
         LOG.debug("User Contacts list in JSON " + respStr);
         JSONObject resp = new JSONObject(respStr);
         List<Contact> plist = new ArrayList<Contact>();
         JSONArray items = new JSONArray();
+        int count = 0;
         if (resp.has("response")) {
             JSONObject robj = resp.getJSONObject("response");
             if (robj.has("friends")) {
@@ -250,6 +280,7 @@ public class FourSquareImpl extends AbstractProvider {
                 if (fobj.has("items")) {
                     items = fobj.getJSONArray("items");
                 }
+                count = fobj.optInt("count");
             } else {
                 throw new SocialAuthException(
                         "Failed to parse the user profile json : " + respStr);
@@ -280,7 +311,10 @@ public class FourSquareImpl extends AbstractProvider {
             plist.add(c);
         }
 
-        return plist;
+        int end = start + items.length();
+        String next = items.length() > 0 && end < count ? String
+                .valueOf(end) : null;
+        return new ContactStream.Page(plist, next);
     }
 
     /**
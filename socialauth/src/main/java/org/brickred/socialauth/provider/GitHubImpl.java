@@ -38,7 +38,6 @@ import org.brickred.socialauth.exception.UserDeniedPermissionException;
 import org.brickred.socialauth.oauthstrategy.OAuth2;
 import org.brickred.socialauth.oauthstrategy.OAuthStrategyBase;
 import org.brickred.socialauth.util.*;
-import org.json.JSONObject;
 
 import java.io.InputStream;
 import java.util.*;
@@ -52,6 +51,10 @@ public class GitHubImpl extends AbstractProvider {
 
     private static final long serialVersionUID = -3529658778980357392L;
     private static final String PROFILE_URL = "https://api.github.com/user";
+    private static final ProfileMapping PROFILE_MAPPING = new ProfileMapping(
+            "id -> validatedId", "name -> fullName", "email -> email",
+            "location -> location", "avatar_url -> profileImageURL",
+            "login -> displayName");
     private static final Map<String, String> ENDPOINTS;
     private static final String[] AllPerms = new String[]{"user",
             "user:email"};
@@ -148,14 +151,8 @@ public class GitHubImpl extends AbstractProvider {
         }
         try {
             LOG.debug("User Profile : " + presp);
-            JSONObject resp = new JSONObject(presp);
             Profile p = new Profile();
-            p.setValidatedId(resp.optString("id", null));
-            p.setFullName(resp.optString("name", null));
-            p.setEmail(resp.optString("email", null));
-            p.setLocation(resp.optString("location", null));
-            p.setProfileImageURL(resp.optString("avatar_url", null));
-            p.setDisplayName(resp.optString("login", null));
+            PROFILE_MAPPING.map(presp, p);
             p.setProviderId(getProviderId());
             if (config.isSaveRawResponse()) {
                 p.setRawResponse(presp);
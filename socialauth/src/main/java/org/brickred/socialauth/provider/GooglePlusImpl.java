@@ -29,6 +29,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.brickred.socialauth.AbstractProvider;
 import org.brickred.socialauth.Contact;
+import org.brickred.socialauth.ContactStream;
 import org.brickred.socialauth.Permission;
 import org.brickred.socialauth.Profile;
 import org.brickred.socialauth.exception.AccessTokenExpireException;
@@ -39,8 +40,6 @@ import org.brickred.socialauth.oauthstrategy.OAuth2;
 import org.brickred.socialauth.oauthstrategy.OAuthStrategyBase;
 import org.brickred.socialauth.util.*;
 import org.json.JSONObject;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
 import java.io.InputStream;
 import java.util.*;
@@ -58,8 +57,9 @@ public class GooglePlusImpl extends AbstractProvider {
 
     private static final long serialVersionUID = 8644510564735754296L;
     private static final String PROFILE_URL = "https://www.googleapis.com/oauth2/v1/userinfo";
-    private static final String CONTACTS_FEED_URL = "https://www.google.com/m8/feeds/contacts/default/full/?max-results=1000";
-    private static final String CONTACT_NAMESPACE = "http://schemas.google.com/g/2005";
+    private static final int CONTACTS_PAGE_SIZE = 1000;
+    private static final String CONTACTS_FEED_URL = "https://www.google.com/m8/feeds/contacts/default/full/?max-results="
+            + CONTACTS_PAGE_SIZE;
     private static final Map<String, String> ENDPOINTS;
     // set this to the list of extended permissions you want
     private static final String[] AllPerms = new String[]{
@@ -86,7 +86,6 @@ public class GooglePlusImpl extends AbstractProvider {
     private Profile userProfile;
     private AccessGrant accessGrant;
     private OAuthStrategyBase authenticationStrategy;
-    private String state;
 
     /**
      * Stores configuration for the provider
@@ -97,7 +96,7 @@ public class GooglePlusImpl extends AbstractProvider {
      */
     public GooglePlusImpl(final OAuthConfig providerConfig) throws Exception {
         config = providerConfig;
-        state = "SocialAuth" + System.currentTimeMillis();
+        setState("SocialAuth" + System.currentTimeMillis());
 
         if (config.getCustomPermissions() != null) {
             scope = Permission.CUSTOM;
@@ -132,7 +131,7 @@ public class GooglePlusImpl extends AbstractProvider {
     @Override
     public String getLoginRedirectURL(final String successUrl) throws Exception {
         Map<String, String> map = new HashMap<String, String>();
-        map.put(Constants.STATE, state);
+        map.put(Constants.STATE, getState());
         return authenticationStrategy.getLoginRedirectURL(successUrl, map);
     }
 
@@ -150,7 +149,7 @@ public class GooglePlusImpl extends AbstractProvider {
             throws Exception {
         if (requestParams.containsKey(Constants.STATE)) {
             String stateStr = requestParams.get(Constants.STATE);
-            if (!state.equals(stateStr)) {
+            if (!stateStr.equals(getState())) {
                 throw new SocialAuthException(
                         "State parameter value does not match with expected value");
             }
@@ -229,97 +228,69 @@ public class GooglePlusImpl extends AbstractProvider {
 
     @Override
     public List<Contact> getContactList() throws Exception {
-        LOG.info("Fetching contacts from " + CONTACTS_FEED_URL);
+        return getContactPage(null).getContacts();
+    }
+
+    /**
+     * Gets the contacts of the user page by page, following the
+     * <code>start-index</code> of the contacts feed. Every page is parsed
+     * while it is read, so memory use does not grow with the address book.
+     *
+     * @return stream of contacts
+     */
+    @Override
+    public ContactStream getContactStream() {
+        return new ContactStream(new ContactStream.PageSource() {
+            @Override
+            public ContactStream.Page getPage(final String cursor)
+                    throws Exception {
+                return getContactPage(cursor);
+            }
+        });
+    }
+
+    private ContactStream.Page getContactPage(final String startIndex)
+            throws Exception {
         if (Permission.AUTHENTICATE_ONLY.equals(this.scope)) {
             throw new SocialAuthException(
                     "You have not set Permission to get contacts.");
         }
+        int start = startIndex == null ? 1 : Integer.parseInt(startIndex);
+        String url = CONTACTS_FEED_URL + "&start-index=" + start;
+        LOG.info("Fetching contacts from " + url);
         Response serviceResponse = null;
         try {
             Map<String, String> map = new HashMap<String, String>();
             map.put("Authorization", "Bearer " + getAccessGrant().getKey());
-            serviceResponse = authenticationStrategy.executeFeed(
-                    CONTACTS_FEED_URL, null, null, map, null);
+            serviceResponse = authenticationStrategy.executeFeed(url, null,
+                    null, map, null);
         } catch (Exception ie) {
             throw new SocialAuthException(
-                    "Failed to retrieve the contacts from " + CONTACTS_FEED_URL,
-                    ie);
+                    "Failed to retrieve the contacts from " + url, ie);
         }
-        List<Contact> plist = new ArrayList<Contact>();
-        Element root;
-
+        final List<Contact> plist = new ArrayList<Contact>();
+        int entries;
+        InputStream in = serviceResponse.getInputStream();
         try {
-            root = XMLParseUtil.loadXmlResource(serviceResponse
-                    .getInputStream());
+            entries = new GoogleContactFeedReader(config.isSaveRawResponse()).read(in,
+                    new GoogleContactFeedReader.ContactHandler() {
+                        @Override
+                        public void handle(final Contact contact) {
+                            plist.add(contact);
+                        }
+                    });
         } catch (Exception e) {
             throw new ServerDataException(
-                    "Failed to parse the contacts from response."
-                            + CONTACTS_FEED_URL, e);
+                    "Failed to parse the contacts from response." + url, e);
+        } finally {
+            in.close();
         }
-        NodeList contactsList = root.getElementsByTagName("entry");
-        if (contactsList != null && contactsList.getLength() > 0) {
-            LOG.debug("Found contacts : " + contactsList.getLength());
-            for (int i = 0; i < contactsList.getLength(); i++) {
-                Element contact = (Element) contactsList.item(i);
-                String fname = "";
-                NodeList l = contact.getElementsByTagNameNS(CONTACT_NAMESPACE,
-                        "email");
-                String address = null;
-                String emailArr[] = null;
-                if (l != null && l.getLength() > 0) {
-                    Element el = (Element) l.item(0);
-                    if (el != null) {
-                        address = el.getAttribute("address");
-                    }
-                    if (l.getLength() > 1) {
-                        emailArr = new String[l.getLength() - 1];
-                        for (int k = 1; k < l.getLength(); k++) {
-                            Element e = (Element) l.item(k);
-                            if (e != null) {
-                                emailArr[k - 1] = e.getAttribute("address");
-                            }
-                        }
-                    }
-                }
-                String lname = "";
-                String dispName = XMLParseUtil.getElementData(contact, "title");
-                if (dispName != null) {
-                    String sarr[] = dispName.split(" ");
-                    if (sarr.length > 0) {
-                        if (sarr.length >= 1) {
-                            fname = sarr[0];
-                        }
-                        if (sarr.length >= 2) {
-                            StringBuilder sb = new StringBuilder();
-                            for (int k = 1; k < sarr.length; k++) {
-                                sb.append(sarr[k]).append(" ");
-                            }
-                            lname = sb.toString();
-                        }
-                    }
-                }
-                String id = XMLParseUtil.getElementData(contact, "id");
-
-                if (address != null && address.length() > 0) {
-                    Contact p = new Contact();
-                    p.setFirstName(fname);
-                    p.setLastName(lname);
-                    p.setEmail(address);
-                    p.setDisplayName(dispName);
-                    p.setOtherEmails(emailArr);
-                    p.setId(id);
-                    if (config.isSaveRawResponse()) {
-                        p.setRawResponse(XMLParseUtil
-                                .getStringFromElement(contact));
-                    }
-                    plist.add(p);
-                }
-            }
-        } else {
-            LOG.debug("No contacts were obtained from the feed : "
-                    + CONTACTS_FEED_URL);
+        LOG.debug("Found contacts : " + plist.size());
+        String next = null;
+        if (entries >= CONTACTS_PAGE_SIZE) {
+            next = String.valueOf(start + entries);
         }
-        return plist;
+        return new ContactStream.Page(plist, next);
     }
 
     /**
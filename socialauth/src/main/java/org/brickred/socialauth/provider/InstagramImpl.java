@@ -30,6 +30,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.brickred.socialauth.AbstractProvider;
 import org.brickred.socialauth.Contact;
+import org.brickred.socialauth.ContactStream;
 import org.brickred.socialauth.Permission;
 import org.brickred.socialauth.Profile;
 import org.brickred.socialauth.exception.AccessTokenExpireException;
@@ -39,6 +40,7 @@ import org.brickred.socialauth.oauthstrategy.OAuth2;
 import org.brickred.socialauth.oauthstrategy.OAuthStrategyBase;
 import org.brickred.socialauth.util.*;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.InputStream;
@@ -54,6 +56,9 @@ public class InstagramImpl extends AbstractProvider {
     public static final String CLASSID = "instagram";
     private static final long serialVersionUID = 6073346132625871229L;
     private static final String PROFILE_URL = "https://api.instagram.com/v1/users/self";
+    private static final ProfileMapping PROFILE_MAPPING = new ProfileMapping(
+            "data.id -> validatedId", "data.full_name -> displayName",
+            "data.profile_picture -> profileImageURL");
     private static final String CONTACTS_URL = "https://api.instagram.com/v1/users/self/follows";
     private static final String VIEW_PROFILE_URL = "http://instagram.com/";
     private static final Map<String, String> ENDPOINTS;
@@ -146,18 +151,44 @@ public class InstagramImpl extends AbstractProvider {
 
     @Override
     public List<Contact> getContactList() throws Exception {
-        LOG.info("Fetching contacts from " + CONTACTS_URL);
+        return getContactPage(null).getContacts();
+    }
+
+    /**
+     * Gets the followed users page by page, following the pagination cursor
+     * of the Instagram API.
+     *
+     * @return stream of contacts
+     */
+    @Override
+    public ContactStream getContactStream() {
+        return new ContactStream(new ContactStream.PageSource() {
+            @Override
+            public ContactStream.Page getPage(final String cursor)
+                    throws Exception {
+                return getContactPage(cursor);
+            }
+        });
+    }
+
+    private ContactStream.Page getContactPage(final String cursor)
+            throws Exception {
+        String url = CONTACTS_URL;
+        if (cursor != null) {
+            url += "?cursor=" + HttpUtil.encodeURIComponent(cursor);
+        }
+        LOG.info("Fetching contacts from " + url);
         Response serviceResponse;
         try {
-            serviceResponse = authenticationStrategy.executeFeed(CONTACTS_URL);
+            serviceResponse = authenticationStrategy.executeFeed(url);
         } catch (Exception e) {
             throw new SocialAuthException("Error : " + e.getMessage()
-                    + " - while getting contacts from " + CONTACTS_URL, e);
+                    + " - while getting contacts from " + url, e);
         }
 
         if (serviceResponse.getStatus() != 200) {
             throw new SocialAuthException("Error while getting contacts from "
-                    + CONTACTS_URL + "Status : " + serviceResponse.getStatus());
+                    + url + "Status : " + serviceResponse.getStatus());
         }
 
         String respStr = serviceResponse
@@ -193,7 +224,12 @@ public class InstagramImpl extends AbstractProvider {
                 plist.add(p);
             }
         }
-        return plist;
+        String next = null;
+        JSONObject pagination = resp.optJSONObject("pagination");
+        if (pagination != null) {
+            next = pagination.optString("next_cursor", null);
+        }
+        return new ContactStream.Page(plist, next);
     }
 
     @Override
@@ -231,12 +267,12 @@ public class InstagramImpl extends AbstractProvider {
             String respStr = response
                     .getResponseBodyAsString(Constants.ENCODING);
             LOG.debug("Profile JSON string :: " + respStr);
-            JSONObject obj = new JSONObject(respStr);
-            JSONObject data = obj.getJSONObject("data");
             Profile p = new Profile();
-            p.setValidatedId(data.optString("id", null));
-            String full_name = data.optString("full_name", null);
-            p.setDisplayName(full_name);
+            PROFILE_MAPPING.map(respStr, p);
+            if (p.getValidatedId() == null) {
+                throw new JSONException("Profile id not found");
+            }
+            String full_name = p.getDisplayName();
             if (full_name != null) {
                 String[] names = full_name.split(" ");
                 if (names.length > 1) {
@@ -246,7 +282,6 @@ public class InstagramImpl extends AbstractProvider {
                     p.setFirstName(full_name);
                 }
             }
-            p.setProfileImageURL(data.optString("profile_picture", null));
             p.setProviderId(getProviderId());
             if (config.isSaveRawResponse()) {
                 p.setRawResponse(respStr);
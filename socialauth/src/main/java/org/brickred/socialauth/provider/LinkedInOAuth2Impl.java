@@ -41,6 +41,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
 import java.io.InputStream;
+import java.io.StringReader;
 import java.util.*;
 
 /**
@@ -57,6 +58,12 @@ public class LinkedInOAuth2Impl extends AbstractProvider {
     private static final String CONNECTION_URL = "https://api.linkedin.com/v1/people/~/connections:(id,first-name,last-name,public-profile-url,picture-url)?oauth2_access_token=";
     private static final String UPDATE_STATUS_URL = "https://api.linkedin.com/v1/people/~/shares?oauth2_access_token=";
     private static final String PROFILE_URL = "https://api.linkedin.com/v1/people/~:(id,first-name,last-name,languages,date-of-birth,picture-url,email-address,location:(name),phone-numbers,main-address)?oauth2_access_token=";
+    private static final XMLFieldExtractor PROFILE_FIELDS = new XMLFieldExtractor(
+            "id", "first-name", "last-name", "date-of-birth",
+            "date-of-birth/year", "date-of-birth/month", "date-of-birth/day",
+            "picture-url", "email-address", "location/name",
+            "phone-numbers/phone-number/phone-type",
+            "phone-numbers/phone-number/phone-number", "main-address");
     private static final String STATUS_BODY = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><share><comment>%1$s</comment><visibility><code>anyone</code></visibility></share>";
     private static final Map<String, String> ENDPOINTS;
     private static final String[] AllPerms = new String[]{"r_fullprofile",
@@ -78,7 +85,6 @@ public class LinkedInOAuth2Impl extends AbstractProvider {
     private OAuthConfig config;
     private Profile userProfile;
     private OAuthStrategyBase authenticationStrategy;
-    private String state;
 
     /**
      * Stores configuration for the provider
@@ -90,7 +96,7 @@ public class LinkedInOAuth2Impl extends AbstractProvider {
     public LinkedInOAuth2Impl(final OAuthConfig providerConfig)
             throws Exception {
         config = providerConfig;
-        state = "SocialAuth" + System.currentTimeMillis();
+        setState("SocialAuth" + System.currentTimeMillis());
         // Need to pass scope while fetching RequestToken from LinkedIn for new
         // keys
         if (config.getCustomPermissions() != null) {
@@ -129,7 +135,7 @@ public class LinkedInOAuth2Impl extends AbstractProvider {
     @Override
     public String getLoginRedirectURL(final String successUrl) throws Exception {
         Map<String, String> map = new HashMap<String, String>();
-        map.put(Constants.STATE, state);
+        map.put(Constants.STATE, getState());
         return authenticationStrategy.getLoginRedirectURL(successUrl, map);
     }
 
@@ -147,7 +153,7 @@ public class LinkedInOAuth2Impl extends AbstractProvider {
             throws Exception {
         if (requestParams.containsKey(Constants.STATE)) {
             String stateStr = requestParams.get(Constants.STATE);
-            if (!state.equals(stateStr)) {
+            if (!stateStr.equals(getState())) {
                 throw new SocialAuthException(
                         "State parameter value does not match with expected value");
             }
@@ -293,86 +299,80 @@ public class LinkedInOAuth2Impl extends AbstractProvider {
                             + ". Staus :" + serviceResponse.getStatus());
         }
 
-        Element root;
+        Map<String, String> fields;
+        String rawResponse = null;
         try {
-            root = XMLParseUtil.loadXmlResource(serviceResponse
-                    .getInputStream());
+            if (config.isSaveRawResponse()) {
+                rawResponse = serviceResponse
+                        .getResponseBodyAsString(Constants.ENCODING);
+                fields = PROFILE_FIELDS.extract(new StringReader(rawResponse));
+            } else {
+                InputStream in = serviceResponse.getInputStream();
+                try {
+                    fields = PROFILE_FIELDS.extract(in);
+                } finally {
+                    in.close();
+                }
+            }
         } catch (Exception e) {
             throw new ServerDataException(
                     "Failed to parse the profile from response." + PROFILE_URL,
                     e);
         }
 
-        if (root != null) {
-            String fname = XMLParseUtil.getElementData(root, "first-name");
-            String lname = XMLParseUtil.getElementData(root, "last-name");
-            NodeList dob = root.getElementsByTagName("date-of-birth");
-            if (dob != null && dob.getLength() > 0) {
-                Element dobel = (Element) dob.item(0);
-                if (dobel != null) {
-                    String y = XMLParseUtil.getElementData(dobel, "year");
-                    String m = XMLParseUtil.getElementData(dobel, "month");
-                    String d = XMLParseUtil.getElementData(dobel, "day");
-                    BirthDate bd = new BirthDate();
-                    if (m != null) {
-                        bd.setMonth(Integer.parseInt(m));
-                    }
-                    if (d != null) {
-                        bd.setDay(Integer.parseInt(d));
-                    }
-                    if (y != null) {
-                        bd.setYear(Integer.parseInt(y));
-                    }
-                    profile.setDob(bd);
-                }
-            }
-            String picUrl = XMLParseUtil.getElementData(root, "picture-url");
-            String id = XMLParseUtil.getElementData(root, "id");
-            if (picUrl != null) {
-                profile.setProfileImageURL(picUrl);
-            }
-            String email = XMLParseUtil.getElementData(root, "email-address");
-            if (email != null) {
-                profile.setEmail(email);
+        String fname = fields.get("first-name");
+        String lname = fields.get("last-name");
+        if (fields.containsKey("date-of-birth")) {
+            String y = fields.get("date-of-birth/year");
+            String m = fields.get("date-of-birth/month");
+            String d = fields.get("date-of-birth/day");
+            BirthDate bd = new BirthDate();
+            if (m != null) {
+                bd.setMonth(Integer.parseInt(m));
             }
-            NodeList location = root.getElementsByTagName("location");
-            if (location != null && location.getLength() > 0) {
-                Element locationEl = (Element) location.item(0);
-                String loc = XMLParseUtil.getElementData(locationEl, "name");
-                if (loc != null) {
-                    profile.setLocation(loc);
-                }
-            }
-            Map<String, String> map = new HashMap<String, String>();
-            NodeList phoneNodes = root.getElementsByTagName("phone-number");
-            if (phoneNodes != null && phoneNodes.getLength() > 0) {
-                Element phoneEl = (Element) phoneNodes.item(0);
-                String type = XMLParseUtil
-                        .getElementData(phoneEl, "phone-type");
-                String phone = XMLParseUtil.getElementData(phoneEl,
-                        "phone-number");
-                if (type != null && type.length() > 0 && phone != null) {
-                    map.put(type, phone);
-                }
-            }
-            String mainAddress = XMLParseUtil.getElementData(root,
-                    "main-address");
-            if (mainAddress != null) {
-                map.put("mainAddress", mainAddress);
+            if (d != null) {
+                bd.setDay(Integer.parseInt(d));
             }
-            if (map != null && !map.isEmpty()) {
-                profile.setContactInfo(map);
+            if (y != null) {
+                bd.setYear(Integer.parseInt(y));
             }
-            profile.setFirstName(fname);
-            profile.setLastName(lname);
-            profile.setValidatedId(id);
-            profile.setProviderId(getProviderId());
-            if (config.isSaveRawResponse()) {
-                profile.setRawResponse(XMLParseUtil.getStringFromElement(root));
-            }
-            LOG.debug("User Profile :" + profile.toString());
-            userProfile = profile;
+            profile.setDob(bd);
+        }
+        String picUrl = fields.get("picture-url");
+        String id = fields.get("id");
+        if (picUrl != null) {
+            profile.setProfileImageURL(picUrl);
+        }
+        String email = fields.get("email-address");
+        if (email != null) {
+            profile.setEmail(email);
+        }
+        String loc = fields.get("location/name");
+        if (loc != null) {
+            profile.setLocation(loc);
+        }
+        Map<String, String> map = new HashMap<String, String>();
+        String type = fields.get("phone-numbers/phone-number/phone-type");
+        String phone = fields.get("phone-numbers/phone-number/phone-number");
+        if (type != null && type.length() > 0 && phone != null) {
+            map.put(type, phone);
+        }
+        String mainAddress = fields.get("main-address");
+        if (mainAddress != null) {
+            map.put("mainAddress", mainAddress);
+        }
+        if (!map.isEmpty()) {
+            profile.setContactInfo(map);
+        }
+        profile.setFirstName(fname);
+        profile.setLastName(lname);
+        profile.setValidatedId(id);
+        profile.setProviderId(getProviderId());
+        if (rawResponse != null) {
+            profile.setRawResponse(rawResponse);
         }
+        LOG.debug("User Profile :" + profile.toString());
+        userProfile = profile;
         return profile;
     }
 
@@ -29,6 +29,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.brickred.socialauth.AbstractProvider;
 import org.brickred.socialauth.Contact;
+import org.brickred.socialauth.ContactStream;
 import org.brickred.socialauth.Permission;
 import org.brickred.socialauth.Profile;
 import org.brickred.socialauth.exception.AccessTokenExpireException;
@@ -163,17 +164,43 @@ public class NimbleImpl extends AbstractProvider {
 
     @Override
     public List<Contact> getContactList() throws Exception {
+        return getContactPage(null).getContacts();
+    }
+
+    /**
+     * Gets the contacts of the user page by page, using the page number of
+     * the Nimble API.
+     *
+     * @return stream of contacts
+     */
+    @Override
+    public ContactStream getContactStream() {
+        return new ContactStream(new ContactStream.PageSource() {
+            @Override
+            public ContactStream.Page getPage(final String cursor)
+                    throws Exception {
+                return getContactPage(cursor);
+            }
+        });
+    }
+
+    private ContactStream.Page getContactPage(final String page)
+            throws Exception {
         List<Contact> plist = new ArrayList<Contact>();
-        LOG.info("Fetching contacts from " + CONTACTS_URL);
+        String pageUrl = CONTACTS_URL;
+        if (page != null) {
+            pageUrl += "&page=" + page;
+        }
+        LOG.info("Fetching contacts from " + pageUrl);
         String respStr;
         try {
-            Response response = authenticationStrategy
-                    .executeFeed(CONTACTS_URL);
+            Response response = authenticationStrategy.executeFeed(pageUrl);
             respStr = response.getResponseBodyAsString(Constants.ENCODING);
         } catch (Exception e) {
             throw new SocialAuthException("Error while getting contacts from "
-                    + CONTACTS_URL, e);
+                    + pageUrl, e);
         }
+        String next = null;
         try {
             LOG.debug("User Contacts list in json : " + respStr);
             JSONObject resp = new JSONObject(respStr);
@@ -254,11 +281,18 @@ public class NimbleImpl extends AbstractProvider {
                     }
                 }
             }
+            JSONObject meta = resp.optJSONObject("meta");
+            if (meta != null) {
+                int current = meta.optInt("page", 1);
+                if (current < meta.optInt("pages", 1)) {
+                    next = String.valueOf(current + 1);
+                }
+            }
         } catch (Exception e) {
             throw new ServerDataException(
                     "Failed to parse the contacts json : " + respStr, e);
         }
-        return plist;
+        return new ContactStream.Page(plist, next);
     }
 
     /**
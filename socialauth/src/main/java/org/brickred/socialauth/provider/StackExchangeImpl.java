@@ -36,8 +36,6 @@ import org.brickred.socialauth.exception.SocialAuthException;
 import org.brickred.socialauth.oauthstrategy.OAuth2;
 import org.brickred.socialauth.oauthstrategy.OAuthStrategyBase;
 import org.brickred.socialauth.util.*;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import java.io.InputStream;
 import java.util.*;
@@ -51,6 +49,11 @@ public class StackExchangeImpl extends AbstractProvider {
 
     private static final long serialVersionUID = 8418999872164052171L;
     private static final String PROFILE_URL = "https://api.stackexchange.com/2.2/me";
+    private static final ProfileMapping PROFILE_MAPPING = new ProfileMapping(
+            "items.0.display_name -> displayName",
+            "items.0.display_name -> fullName",
+            "items.0.profile_image -> profileImageURL",
+            "items.0.user_id -> validatedId", "items.0.location -> location");
     private static final Map<String, String> ENDPOINTS;
     private static final String[] AuthPerms = new String[]{"no_expiry"};
 
@@ -68,7 +71,6 @@ public class StackExchangeImpl extends AbstractProvider {
     private Profile userProfile;
     private AccessGrant accessGrant;
     private OAuthStrategyBase authenticationStrategy;
-    private String state;
 
     /**
      * Stores configuration for the provider
@@ -79,7 +81,7 @@ public class StackExchangeImpl extends AbstractProvider {
      */
     public StackExchangeImpl(final OAuthConfig providerConfig) throws Exception {
         config = providerConfig;
-        state = "SocialAuth" + System.currentTimeMillis();
+        setState("SocialAuth" + System.currentTimeMillis());
         // Need to pass scope while fetching RequestToken from LinkedIn for new
         // keys
         if (config.getCustomPermissions() != null) {
@@ -115,7 +117,7 @@ public class StackExchangeImpl extends AbstractProvider {
     @Override
     public String getLoginRedirectURL(String successUrl) throws Exception {
         Map<String, String> map = new HashMap<String, String>();
-        map.put(Constants.STATE, state);
+        map.put(Constants.STATE, getState());
         return authenticationStrategy.getLoginRedirectURL(successUrl, map);
     }
 
@@ -132,7 +134,7 @@ public class StackExchangeImpl extends AbstractProvider {
             throws Exception {
         if (requestParams.containsKey(Constants.STATE)) {
             String stateStr = requestParams.get(Constants.STATE);
-            if (!state.equals(stateStr)) {
+            if (!stateStr.equals(getState())) {
                 throw new SocialAuthException(
                         "State parameter value does not match with expected value");
             }
@@ -171,24 +173,11 @@ public class StackExchangeImpl extends AbstractProvider {
         }
         try {
             LOG.debug("User Profile : " + presp);
-            JSONObject jsonResp = new JSONObject(presp);
             Profile p = new Profile();
-            if (jsonResp.has("items")) {
-                JSONArray items = jsonResp.getJSONArray("items");
-                if (items.length() > 0) {
-                    JSONObject resp = items.getJSONObject(0);
-                    p.setDisplayName(resp.optString("display_name", null));
-                    p.setFullName(resp.optString("display_name", null));
-                    p.setProfileImageURL(resp.optString("profile_image", null));
-                    p.setValidatedId(resp.optString("user_id", null));
-                    p.setLocation(resp.optString("location", null));
-                    if (config.isSaveRawResponse()) {
-                        p.setRawResponse(presp);
-                    }
-                    p.setProviderId(getProviderId());
-                    if (config.isSaveRawResponse()) {
-                        p.setRawResponse(presp);
-                    }
+            if (!PROFILE_MAPPING.map(presp, p).isEmpty()) {
+                p.setProviderId(getProviderId());
+                if (config.isSaveRawResponse()) {
+                    p.setRawResponse(presp);
                 }
             }
             userProfile = p;
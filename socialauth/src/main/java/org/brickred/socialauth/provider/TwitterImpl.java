@@ -42,6 +42,13 @@ import java.io.InputStream;
 import java.io.Serializable;
 import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 
 /**
@@ -55,7 +62,9 @@ public class TwitterImpl extends AbstractProvider implements AuthProvider,
 
     private static final long serialVersionUID = 1908393649053616794L;
     private static final String PROFILE_URL = "https://api.twitter.com/1.1/users/show.json?screen_name=";
-    private static final String CONTACTS_URL = "https://api.twitter.com/1.1/friends/ids.json?screen_name=%1$s&cursor=-1";
+    private static final String CONTACTS_URL = "https://api.twitter.com/1.1/friends/ids.json?screen_name=%1$s&cursor=%2$s";
+    private static final int LOOKUP_BATCH_SIZE = 100;
+    private static final int LOOKUP_PARALLELISM = 4;
     private static final String LOOKUP_URL = "https://api.twitter.com/1.1/users/lookup.json?user_id=";
     private static final String UPDATE_STATUS_URL = "https://api.twitter.com/1.1/statuses/update.json?status=";
     private static final String IMAGE_UPLOAD_URL = "https://api.twitter.com/1.1/statuses/update_with_media.json";
@@ -82,6 +91,7 @@ public class TwitterImpl extends AbstractProvider implements AuthProvider,
     private OAuthConfig config;
     private Profile userProfile;
     private OAuthStrategyBase authenticationStrategy;
+    private transient Semaphore lookupPermits;
 
     /**
      * Stores configuration for the provider
@@ -263,81 +273,156 @@ public class TwitterImpl extends AbstractProvider implements AuthProvider,
             throw new SocialAuthException(
                     "Please call verifyResponse function first to get Access Token");
         }
-        String url = String.format(CONTACTS_URL,
-                accessToken.getAttribute("screen_name"));
-        List<Contact> plist = new ArrayList<Contact>();
-        LOG.info("Fetching contacts from " + url);
-        Response serviceResponse = null;
-        try {
-            serviceResponse = authenticationStrategy.executeFeed(url);
-        } catch (Exception ie) {
-            throw new SocialAuthException(
-                    "Failed to retrieve the contacts from " + url, ie);
+        FriendIds ids = new FriendIds();
+        while (ids.fetchNext()) {
+            // pages through all cursors of friends/ids
         }
-        String result;
-        try {
-            result = serviceResponse
-                    .getResponseBodyAsString(Constants.ENCODING);
-        } catch (Exception e) {
-            throw new ServerDataException("Failed to get response from " + url);
-        }
-        LOG.debug("User friends ids : " + result);
-        try {
-            JSONObject jobj = new JSONObject(result);
-            if (jobj.has("ids")) {
-                JSONArray idList = jobj.getJSONArray("ids");
-                int flength = idList.length();
-                int ids[] = new int[flength];
-                for (int i = 0; i < idList.length(); i++) {
-                    ids[i] = idList.getInt(i);
+        return lookupAll(ids.get(), ids.size());
+    }
+
+    /**
+     * Gets the friends of the user as a stream. Friend ids are fetched page
+     * by page through the cursors of friends/ids as the stream is consumed,
+     * and every page of the stream is one users/lookup batch.
+     *
+     * @return stream of contacts
+     */
+    @Override
+    public ContactStream getContactStream() {
+        final FriendIds ids = new FriendIds();
+        return new ContactStream(new ContactStream.PageSource() {
+            @Override
+            public ContactStream.Page getPage(final String cursor)
+                    throws Exception {
+                if (!isVerify) {
+                    throw new SocialAuthException(
+                            "Please call verifyResponse function first to get Access Token");
                 }
-                if (flength > 0) {
-                    if (flength > 100) {
-                        int i = flength / 100;
-                        int temparr[];
-                        for (int j = 1; j <= i; j++) {
-                            temparr = new int[100];
-                            for (int k = (j - 1) * 100, c = 0; k < j * 100; k++, c++) {
-                                temparr[c] = ids[k];
-                            }
-                            plist.addAll(lookupUsers(temparr));
-                        }
-                        if (flength > i * 100) {
-                            temparr = new int[flength - i * 100];
-                            for (int k = i * 100, c = 0; k < flength; k++, c++) {
-                                temparr[c] = ids[k];
+                int batch = cursor == null ? 0 : Integer.parseInt(cursor);
+                int from = batch * LOOKUP_BATCH_SIZE;
+                while (ids.size() < from + LOOKUP_BATCH_SIZE && ids.fetchNext()) {
+                    // fetches ids until the batch is complete
+                }
+                int to = Math.min(ids.size(), from + LOOKUP_BATCH_SIZE);
+                List<Contact> contacts;
+                if (from < to) {
+                    contacts = lookupUsers(ids.get(), from, to);
+                } else {
+                    contacts = new ArrayList<Contact>();
+                }
+                boolean more = to < ids.size() || ids.hasMore();
+                return new ContactStream.Page(contacts,
+                        more ? String.valueOf(batch + 1) : null);
+            }
+        });
+    }
+
+    // looks up batches on the executor of the configuration, at most
+    // LOOKUP_PARALLELISM at a time including the calling thread. The caller
+    // takes batches like the workers do, so the lookup completes even if no
+    // worker gets a thread of the executor.
+    private List<Contact> lookupAll(final long ids[], final int size)
+            throws Exception {
+        final int batches = (size + LOOKUP_BATCH_SIZE - 1) / LOOKUP_BATCH_SIZE;
+        Executor executor = config.getExecutor();
+        if (batches <= 1 || executor == null) {
+            List<Contact> plist = new ArrayList<Contact>(size);
+            for (int from = 0; from < size; from += LOOKUP_BATCH_SIZE) {
+                plist.addAll(lookupUsers(ids, from,
+                        Math.min(size, from + LOOKUP_BATCH_SIZE)));
+            }
+            return plist;
+        }
+        LOG.debug("Looking up " + size + " friends in " + batches
+                + " batches");
+        final AtomicReferenceArray<List<Contact>> results = new AtomicReferenceArray<List<Contact>>(
+                batches);
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        final CountDownLatch done = new CountDownLatch(batches);
+        final Deadline deadline = Deadline.current();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                Deadline previous = Deadline.attach(deadline);
+                try {
+                    int b;
+                    while ((b = next.getAndIncrement()) < batches) {
+                        try {
+                            if (failure.get() == null) {
+                                int from = b * LOOKUP_BATCH_SIZE;
+                                results.set(b, lookupUsers(ids, from,
+                                        Math.min(size, from + LOOKUP_BATCH_SIZE)));
                             }
-                            plist.addAll(lookupUsers(temparr));
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            done.countDown();
                         }
-                    } else {
-                        plist.addAll(lookupUsers(ids));
                     }
+                } finally {
+                    Deadline.detach(previous);
                 }
             }
-        } catch (Exception e) {
-            throw new ServerDataException(
-                    "Failed to parse the user friends json : " + result, e);
+        };
+        int workers = Math.min(LOOKUP_PARALLELISM, batches);
+        for (int i = 1; i < workers; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Executor is saturated, looking up on fewer threads");
+                break;
+            }
+        }
+        worker.run();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, e);
+            Thread.currentThread().interrupt();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        List<Contact> plist = new ArrayList<Contact>(size);
+        for (int b = 0; b < batches; b++) {
+            plist.addAll(results.get(b));
         }
         return plist;
     }
 
-    private List<Contact> lookupUsers(final int fids[]) throws Exception {
-        StringBuilder strb = new StringBuilder();
-        List<Contact> plist = new ArrayList<Contact>();
-        for (int value : fids) {
-            if (strb.length() != 0) {
+    // bounds the users/lookup requests in flight for this provider, also
+    // when several contact lists are fetched at the same time and no rate
+    // limited transport is configured
+    private synchronized Semaphore getLookupPermits() {
+        if (lookupPermits == null) {
+            lookupPermits = new Semaphore(LOOKUP_PARALLELISM);
+        }
+        return lookupPermits;
+    }
+
+    private List<Contact> lookupUsers(final long fids[], final int from,
+                                      final int to) throws Exception {
+        StringBuilder strb = new StringBuilder(LOOKUP_URL);
+        for (int i = from; i < to; i++) {
+            if (i > from) {
                 strb.append(",");
             }
-            strb.append(value);
+            strb.append(fids[i]);
         }
-        String url = LOOKUP_URL + strb.toString();
+        List<Contact> plist = new ArrayList<Contact>(to - from);
+        String url = strb.toString();
         LOG.debug("Fetching info of following users : " + url);
         Response serviceResponse = null;
+        Semaphore permits = getLookupPermits();
+        permits.acquire();
         try {
             serviceResponse = authenticationStrategy.executeFeed(url);
         } catch (Exception ie) {
             throw new SocialAuthException(
                     "Failed to retrieve the contacts from " + url, ie);
+        } finally {
+            permits.release();
         }
         String result;
         try {
@@ -348,28 +433,22 @@ public class TwitterImpl extends AbstractProvider implements AuthProvider,
                     e);
         }
         LOG.debug("Users info : " + result);
-        try {
-            JSONArray jarr = new JSONArray(result);
-            for (int i = 0; i < jarr.length(); i++) {
-                JSONObject jobj = jarr.getJSONObject(i);
-                Contact cont = new Contact();
-                cont.setFirstName(jobj.optString("name", null));
-                String sname = jobj.optString("screen_name", null);
-                if (sname != null) {
-                    cont.setDisplayName(sname);
-                    cont.setProfileUrl("https://" + PROPERTY_DOMAIN + "/"
-                            + sname);
-                }
-                cont.setProfileImageURL(jobj.optString("profile_image_url",
-                        null));
-                cont.setId(jobj.optString("id_str", null));
-                if (config.isSaveRawResponse()) {
-                    cont.setRawResponse(jobj.toString());
-                }
-                plist.add(cont);
+        JSONArray jarr = new JSONArray(result);
+        for (int i = 0; i < jarr.length(); i++) {
+            JSONObject jobj = jarr.getJSONObject(i);
+            Contact cont = new Contact();
+            cont.setFirstName(jobj.optString("name", null));
+            String sname = jobj.optString("screen_name", null);
+            if (sname != null) {
+                cont.setDisplayName(sname);
+                cont.setProfileUrl("https://" + PROPERTY_DOMAIN + "/" + sname);
             }
-        } catch (Exception e) {
-            throw e;
+            cont.setProfileImageURL(jobj.optString("profile_image_url", null));
+            cont.setId(jobj.optString("id_str", null));
+            if (config.isSaveRawResponse()) {
+                cont.setRawResponse(jobj.toString());
+            }
+            plist.add(cont);
         }
         return plist;
     }
@@ -503,4 +582,67 @@ public class TwitterImpl extends AbstractProvider implements AuthProvider,
     protected OAuthStrategyBase getOauthStrategy() {
         return authenticationStrategy;
     }
+
+    // friend ids collected from the cursors of friends/ids, in a growable
+    // long[] as Twitter ids overflow int
+    private class FriendIds {
+        private long ids[] = new long[0];
+        private int size;
+        private String cursor = "-1";
+
+        long[] get() {
+            return ids;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean hasMore() {
+            return cursor != null;
+        }
+
+        boolean fetchNext() throws Exception {
+            if (cursor == null) {
+                return false;
+            }
+            String url = String.format(CONTACTS_URL,
+                    accessToken.getAttribute("screen_name"), cursor);
+            LOG.info("Fetching contacts from " + url);
+            Response serviceResponse = null;
+            try {
+                serviceResponse = authenticationStrategy.executeFeed(url);
+            } catch (Exception ie) {
+                throw new SocialAuthException(
+                        "Failed to retrieve the contacts from " + url, ie);
+            }
+            String result;
+            try {
+                result = serviceResponse
+                        .getResponseBodyAsString(Constants.ENCODING);
+            } catch (Exception e) {
+                throw new ServerDataException("Failed to get response from "
+                        + url);
+            }
+            LOG.debug("User friends ids : " + result);
+            try {
+                JSONObject jobj = new JSONObject(result);
+                JSONArray idList = jobj.optJSONArray("ids");
+                int length = idList == null ? 0 : idList.length();
+                if (size + length > ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max(ids.length * 2, size
+                            + length));
+                }
+                for (int i = 0; i < length; i++) {
+                    ids[size++] = idList.getLong(i);
+                }
+                String next = jobj.optString("next_cursor_str", "0");
+                cursor = "0".equals(next) ? null : next;
+            } catch (Exception e) {
+                throw new ServerDataException(
+                        "Failed to parse the user friends json : " + result, e);
+            }
+            return true;
+        }
+    }
 }
\ No newline at end of file
@@ -47,6 +47,7 @@ public class YammerImpl extends AbstractProvider implements AuthProvider,
     private static final String ACCESS_TOKEN_URL = "https://www.yammer.com/oauth2/access_token.json?client_id=%1$s&client_secret=%2$s&code=%3$s";
     private static final String UPDATE_STATUS_URL = "https://www.yammer.com/api/v1/messages.json";
     private static final String PROFILE_URL = "https://www.yammer.com/api/v1/users/%1$s.json?access_token=%2$s";
+    private static final int CONTACTS_PAGE_SIZE = 50;
     private static final String CONTACTS_URL = "https://www.yammer.com/api/v1/users.json?sort_by=followers&access_token=%1$s";
 
     private final Log LOG = LogFactory.getLog(YammerImpl.class);
@@ -142,7 +143,7 @@ public class YammerImpl extends AbstractProvider implements AuthProvider,
         Response response;
         try {
             response = HttpUtil.doHttpRequest(url, MethodType.GET.toString(),
-                    null, null);
+                    null, null, config);
         } catch (Exception e) {
             throw new SocialAuthException("Error in url : " + e);
         }
@@ -208,24 +209,52 @@ public class YammerImpl extends AbstractProvider implements AuthProvider,
 
     @Override
     public List<Contact> getContactList() throws Exception {
+        return getContactPage(null).getContacts();
+    }
+
+    /**
+     * Gets the users of the network page by page, using the page number of
+     * the Yammer API.
+     *
+     * @return stream of contacts
+     */
+    @Override
+    public ContactStream getContactStream() {
+        return new ContactStream(new ContactStream.PageSource() {
+            @Override
+            public ContactStream.Page getPage(final String cursor)
+                    throws Exception {
+                return getContactPage(cursor);
+            }
+        });
+    }
+
+    private ContactStream.Page getContactPage(final String page)
+            throws Exception {
         if (!isVerify || accessToken == null) {
             throw new SocialAuthException(
                     "Please call verifyResponse function first to get Access Token");
         }
         List<Contact> plist = new ArrayList<Contact>();
         String contactURL = String.format(CONTACTS_URL, accessToken);
+        int current = 1;
+        if (page != null) {
+            current = Integer.parseInt(page);
+            contactURL += "&page=" + current;
+        }
         Map<String, String> headerParam = new HashMap<String, String>();
         headerParam.put("Authorization", "Bearer " + accessToken);
         LOG.info("Fetching contacts from " + contactURL);
         String respStr;
         try {
             Response response = HttpUtil.doHttpRequest(contactURL,
-                    MethodType.GET.toString(), null, headerParam);
+                    MethodType.GET.toString(), null, headerParam, config);
             respStr = response.getResponseBodyAsString(Constants.ENCODING);
         } catch (Exception e) {
             throw new SocialAuthException("Error while getting contacts from "
                     + contactURL, e);
         }
+        String next = null;
         try {
             LOG.debug("User Contacts list in json : " + respStr);
             JSONArray resp = new JSONArray(respStr);
@@ -248,11 +277,15 @@ public class YammerImpl extends AbstractProvider implements AuthProvider,
                 }
                 plist.add(p);
             }
+            // a full page means there may be more users
+            if (resp.length() >= CONTACTS_PAGE_SIZE) {
+                next = String.valueOf(current + 1);
+            }
         } catch (Exception e) {
             throw new ServerDataException(
                     "Failed to parse the user profile json : " + respStr, e);
         }
-        return plist;
+        return new ContactStream.Page(plist, next);
 
     }
 
@@ -282,7 +315,7 @@ public class YammerImpl extends AbstractProvider implements AuthProvider,
         Response serviceResponse;
         try {
             serviceResponse = HttpUtil.doHttpRequest(UPDATE_STATUS_URL,
-                    MethodType.POST.toString(), msgBody, headerParam);
+                    MethodType.POST.toString(), msgBody, headerParam, config);
 
             if (serviceResponse.getStatus() != 201) {
                 throw new SocialAuthException(
@@ -324,7 +357,7 @@ public class YammerImpl extends AbstractProvider implements AuthProvider,
         try {
 
             serviceResponse = HttpUtil.doHttpRequest(profileURL, "GET", null,
-                    headerParam);
+                    headerParam, config);
         } catch (Exception e) {
             throw new SocialAuthException(
                     "Failed to retrieve the user profile from  " + profileURL,
@@ -429,7 +462,7 @@ public class YammerImpl extends AbstractProvider implements AuthProvider,
         LOG.debug("Header Params : " + headerParam.toString());
         try {
             serviceResponse = HttpUtil.doHttpRequest(url, methodType, body,
-                    headerParam);
+                    headerParam, config);
         } catch (Exception e) {
             throw new SocialAuthException(
                     "Error while making request to URL : " + url, e);
@@ -0,0 +1,241 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.brickred.socialauth.Album;
+import org.brickred.socialauth.Photo;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads the photos of albums for the album plugins. The photos of all
+ * albums are fetched concurrently, with at most {@link #getParallelism()}
+ * requests of one call in flight, so a user with many albums does not wait
+ * for one round trip per album in turn. The calling thread is one of the
+ * workers and the others run on the executor, which for providers created
+ * by SocialAuthManager is SocialAuthConfig.getExecutor(). Without an
+ * executor the photos are fetched one album after another on the calling
+ * thread. In lazy mode the albums are returned without photos, and the
+ * photos of an album are fetched on the first call of
+ * {@link Album#getPhotos()}.
+ * <p>
+ * The calling thread only waits for the albums other workers have started
+ * on, so the executor may be the one the call itself runs on. The deadline
+ * attached to the calling thread is applied to every request.
+ * <p>
+ * Each provider has its own loader, see AbstractProvider.getPhotoLoader(),
+ * whose defaults are taken from the "album.photos.parallelism" and
+ * "album.photos.lazy" properties.
+ *
+ * @author tarunn@brickred.com
+ */
+public class AlbumPhotoLoader implements Serializable {
+
+    /**
+     * Default number of albums whose photos are fetched at the same time
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private static final long serialVersionUID = -3195823477641021596L;
+    private static final Log LOG = LogFactory.getLog(AlbumPhotoLoader.class);
+
+    private volatile int parallelism = DEFAULT_PARALLELISM;
+    private volatile boolean lazy;
+    private transient volatile Executor executor;
+
+    /**
+     * Fetches the photos of one album.
+     */
+    public interface PhotoSource {
+
+        /**
+         * Fetches the photos of the album
+         *
+         * @param albumId the album id
+         * @return the photos of the album
+         * @throws Exception
+         */
+        public List<Photo> getPhotos(String albumId) throws Exception;
+    }
+
+    /**
+     * Retrieves the number of albums whose photos are fetched at the same
+     * time
+     *
+     * @return the parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Updates the number of albums whose photos are fetched at the same
+     * time. A value of 1 fetches them one after another on the calling
+     * thread.
+     *
+     * @param parallelism the parallelism
+     */
+    public void setParallelism(final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Checks whether photos are loaded on first access
+     *
+     * @return true if photos are loaded lazily
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Updates whether photos are loaded on first access of
+     * {@link Album#getPhotos()} instead of before the albums are returned.
+     *
+     * @param lazy true to load photos lazily
+     */
+    public void setLazy(final boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Retrieves the executor on which photos are fetched
+     *
+     * @return the executor, or null if photos are fetched on the calling
+     * thread
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Updates the executor on which photos are fetched, e.g.
+     * SocialAuthConfig.getExecutor(). The parallelism still bounds the
+     * requests of one call.
+     *
+     * @param executor the executor, or null to fetch photos on the calling
+     *                 thread
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Loads the photos of the given albums, or sets them up to be loaded on
+     * first access in lazy mode.
+     *
+     * @param albums the albums
+     * @param source fetches the photos of an album
+     * @throws Exception if fetching the photos of any album fails
+     */
+    public void load(final List<Album> albums, final PhotoSource source)
+            throws Exception {
+        if (lazy) {
+            for (Album album : albums) {
+                final String albumId = album.getId();
+                album.setPhotosLoader(new Callable<List<Photo>>() {
+                    @Override
+                    public List<Photo> call() throws Exception {
+                        return source.getPhotos(albumId);
+                    }
+                });
+            }
+            return;
+        }
+        Executor exec = executor;
+        int workers = exec == null ? 1 : Math.min(parallelism, albums.size());
+        if (workers <= 1) {
+            for (Album album : albums) {
+                album.setPhotos(source.getPhotos(album.getId()));
+            }
+            return;
+        }
+        LOG.debug("Fetching photos of " + albums.size() + " albums with "
+                + workers + " concurrent requests");
+        fanOut(albums, source, exec, workers);
+    }
+
+    private void fanOut(final List<Album> albums, final PhotoSource source,
+                        final Executor exec, final int workers) throws Exception {
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        // counts albums, not workers, so a worker which never starts is not
+        // waited for
+        final CountDownLatch done = new CountDownLatch(albums.size());
+        final Deadline deadline = Deadline.current();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                Deadline previous = Deadline.attach(deadline);
+                try {
+                    int i;
+                    while (failure.get() == null
+                            && (i = next.getAndIncrement()) < albums.size()) {
+                        try {
+                            Album album = albums.get(i);
+                            album.setPhotos(source.getPhotos(album.getId()));
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                } finally {
+                    Deadline.detach(previous);
+                }
+            }
+        };
+        for (int i = 1; i < workers; i++) {
+            try {
+                exec.execute(worker);
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Executor rejected photo fetch, continuing on calling thread");
+                break;
+            }
+        }
+        worker.run();
+        // after a failure, albums nobody has started are skipped
+        while (next.getAndIncrement() < albums.size()) {
+            done.countDown();
+        }
+        done.await();
+        Exception e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connection serving a {@link CachedResponse}, so that it can be returned as
+ * a {@link Response} without contacting the provider.
+ *
+ * @author tarunn@brickred.com
+ */
+class CachedHttpURLConnection extends HttpURLConnection {
+
+    private final CachedResponse cached;
+    private final InputStream content;
+
+    /**
+     * @param url     the request URL
+     * @param cached  the response to serve
+     * @param content the content to serve, usually the cached body
+     */
+    CachedHttpURLConnection(final URL url, final CachedResponse cached,
+                            final InputStream content) {
+        super(url);
+        this.cached = cached;
+        this.content = content;
+        responseCode = HTTP_OK;
+        responseMessage = "OK";
+        connected = true;
+    }
+
+    CachedHttpURLConnection(final URL url, final CachedResponse cached) {
+        this(url, cached, new ByteArrayInputStream(cached.getBody()));
+    }
+
+    @Override
+    public void connect() {
+        // nothing to connect
+    }
+
+    @Override
+    public void disconnect() {
+        try {
+            content.close();
+        } catch (IOException e) {
+            // content is not read any further
+        }
+    }
+
+    @Override
+    public boolean usingProxy() {
+        return false;
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return content;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return null;
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        return cached.getHeaders();
+    }
+
+    @Override
+    public String getHeaderField(final String name) {
+        for (Map.Entry<String, List<String>> entry : cached.getHeaders()
+                .entrySet()) {
+            if (entry.getKey() != null && entry.getKey().equalsIgnoreCase(name)
+                    && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(entry.getValue().size() - 1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response content and validators stored by {@link CachingHttpTransport}.
+ * The body is kept decompressed.
+ *
+ * @author tarunn@brickred.com
+ */
+public class CachedResponse implements Serializable {
+
+    private static final long serialVersionUID = -3196823018553719532L;
+
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private final String eTag;
+    private final String lastModified;
+
+    /**
+     * @param headers      response headers, without Content-Encoding
+     * @param body         decompressed response content
+     * @param eTag         the ETag validator, may be null
+     * @param lastModified the Last-Modified validator, may be null
+     */
+    public CachedResponse(final Map<String, List<String>> headers,
+                          final byte[] body, final String eTag, final String lastModified) {
+        this.headers = Collections.unmodifiableMap(headers);
+        this.body = body;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Retrieves the response headers
+     *
+     * @return map of header names and values
+     */
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Retrieves the decompressed response content. The returned array must
+     * not be modified.
+     *
+     * @return the response content
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Retrieves the ETag validator
+     *
+     * @return the ETag or null
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Retrieves the Last-Modified validator
+     *
+     * @return the Last-Modified date or null
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Retrieves the approximate memory used by this response in bytes
+     *
+     * @return the size in bytes
+     */
+    public int getSize() {
+        int size = body.length;
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            size += entry.getKey() == null ? 0 : entry.getKey().length();
+            for (String value : entry.getValue()) {
+                size += value == null ? 0 : value.length();
+            }
+        }
+        return size;
+    }
+}
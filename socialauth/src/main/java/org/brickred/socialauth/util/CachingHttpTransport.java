@@ -0,0 +1,300 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.brickred.socialauth.exception.SocialAuthException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link HttpTransport} decorator which caches GET responses carrying an ETag
+ * or Last-Modified validator. Subsequent requests for the same resource are
+ * sent with If-None-Match / If-Modified-Since and a 304 response is answered
+ * from the cache.
+ * <p>
+ * Responses are keyed by the URL without the access token and OAuth signature
+ * parameters, plus a digest of the access token, so that signed requests for
+ * the same resource share an entry while different users never do.
+ *
+ * @author tarunn@brickred.com
+ */
+public class CachingHttpTransport implements HttpTransport {
+
+    /**
+     * Default maximum size in bytes of a single cached response
+     */
+    public static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+
+    private static final Log LOG = LogFactory.getLog(CachingHttpTransport.class);
+    private static final Set<String> VOLATILE_PARAMS = new HashSet<String>(
+            Arrays.asList("access_token", "oauth_token", "oauth_nonce",
+                    "oauth_timestamp", "oauth_signature", "appsecret_proof"));
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final HttpTransport transport;
+    private final HttpCacheStorage storage;
+    private final int maxEntrySize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param transport    the transport which makes the requests
+     * @param storage      the storage of cached responses
+     * @param maxEntrySize maximum size in bytes of a single cached response
+     */
+    public CachingHttpTransport(final HttpTransport transport,
+                                final HttpCacheStorage storage, final int maxEntrySize) {
+        this.transport = transport;
+        this.storage = storage;
+        this.maxEntrySize = maxEntrySize > 0 ? maxEntrySize
+                : DEFAULT_MAX_ENTRY_SIZE;
+    }
+
+    /**
+     * @param transport the transport which makes the requests
+     */
+    public CachingHttpTransport(final HttpTransport transport) {
+        this(transport, new LruHttpCacheStorage(), DEFAULT_MAX_ENTRY_SIZE);
+    }
+
+    @Override
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final String body,
+                                  final Map<String, String> header) throws SocialAuthException {
+        String key = getKey(urlStr, header);
+        if (requestMethod != null
+                && !MethodType.GET.toString().equals(requestMethod)) {
+            storage.remove(key);
+            return transport.doHttpRequest(urlStr, requestMethod, body,
+                    header);
+        }
+        CachedResponse cached = storage.get(key);
+        Map<String, String> requestHeader = header;
+        if (cached != null) {
+            requestHeader = new HashMap<String, String>();
+            if (header != null) {
+                requestHeader.putAll(header);
+            }
+            if (cached.getETag() != null) {
+                requestHeader.put("If-None-Match", cached.getETag());
+            }
+            if (cached.getLastModified() != null) {
+                requestHeader.put("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        Response response = transport.doHttpRequest(urlStr, requestMethod,
+                body, requestHeader);
+        URL url = getURL(urlStr);
+        try {
+            int status = response.readStatus();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                hits.incrementAndGet();
+                response.close();
+                LOG.debug("Serving " + key + " from cache");
+                return new Response(new CachedHttpURLConnection(url, cached));
+            }
+            misses.incrementAndGet();
+            String eTag = response.getHeader("ETag");
+            String lastModified = response.getHeader("Last-Modified");
+            if (status != HttpURLConnection.HTTP_OK
+                    || (eTag == null && lastModified == null)
+                    || isNoStore(response.getHeader("Cache-Control"))) {
+                if (cached != null) {
+                    storage.remove(key);
+                }
+                return response;
+            }
+            return store(key, url, response, eTag, lastModified);
+        } catch (IOException e) {
+            throw new SocialAuthException(e);
+        }
+    }
+
+    @Override
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final Map<String, String> params,
+                                  final Map<String, String> header, final InputStream inputStream,
+                                  final String fileName, final String fileParamName)
+            throws SocialAuthException {
+        storage.remove(getKey(urlStr, header));
+        return transport.doHttpRequest(urlStr, requestMethod, params, header,
+                inputStream, fileName, fileParamName);
+    }
+
+    /**
+     * Retrieves the storage of cached responses
+     *
+     * @return the cache storage
+     */
+    public HttpCacheStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Retrieves the number of requests answered from the cache
+     *
+     * @return number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Retrieves the number of GET requests whose content was fetched
+     *
+     * @return number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Retrieves the transport which makes the requests
+     *
+     * @return the underlying transport
+     */
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    // reads the content once and serves it from memory; content larger than
+    // the entry size is passed on without being cached
+    private Response store(final String key, final URL url,
+                           final Response response, final String eTag,
+                           final String lastModified) throws IOException {
+        Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+        for (Map.Entry<String, List<String>> entry : response
+                .getHeaderFields().entrySet()) {
+            String name = entry.getKey();
+            if (name != null
+                    && (name.equalsIgnoreCase(Constants.CONTENT_ENCODING_HEADER)
+                    || name.equalsIgnoreCase("Content-Length"))) {
+                continue;
+            }
+            headers.put(name, new ArrayList<String>(entry.getValue()));
+        }
+        InputStream in = ResponseBodyReader.decodeContent(
+                response.getInputStream(),
+                response.getHeader(Constants.CONTENT_ENCODING_HEADER));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+            if (out.size() > maxEntrySize) {
+                LOG.debug("Response of " + key + " is too large to cache");
+                CachedResponse partial = new CachedResponse(headers,
+                        new byte[0], eTag, lastModified);
+                InputStream content = new SequenceInputStream(
+                        new ByteArrayInputStream(out.toByteArray()), in);
+                return new Response(new CachedHttpURLConnection(url, partial,
+                        content));
+            }
+        }
+        in.close();
+        byte[] body = out.toByteArray();
+        headers.put("Content-Length", Arrays.asList(String.valueOf(body.length)));
+        CachedResponse cached = new CachedResponse(headers, body, eTag,
+                lastModified);
+        storage.put(key, cached);
+        return new Response(new CachedHttpURLConnection(url, cached));
+    }
+
+    private boolean isNoStore(final String cacheControl) {
+        return cacheControl != null
+                && cacheControl.toLowerCase().contains("no-store");
+    }
+
+    private URL getURL(final String urlStr) throws SocialAuthException {
+        try {
+            return new URL(urlStr);
+        } catch (MalformedURLException e) {
+            throw new SocialAuthException(e);
+        }
+    }
+
+    private String getKey(final String urlStr, final Map<String, String> header)
+            throws SocialAuthException {
+        StringBuilder key = new StringBuilder(urlStr.length());
+        int query = urlStr.indexOf('?');
+        if (query < 0) {
+            key.append(urlStr);
+        } else {
+            key.append(urlStr, 0, query);
+            char sep = '?';
+            for (String param : urlStr.substring(query + 1).split("&")) {
+                int eq = param.indexOf('=');
+                String name = eq < 0 ? param : param.substring(0, eq);
+                if (param.length() == 0 || VOLATILE_PARAMS.contains(name)) {
+                    continue;
+                }
+                key.append(sep).append(param);
+                sep = '&';
+            }
+        }
+        String token = HttpUtil.getAccessToken(urlStr, header);
+        if (token != null) {
+            key.append('#').append(digest(token));
+        }
+        return key.toString();
+    }
+
+    private String digest(final String token) throws SocialAuthException {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(
+                    token.getBytes(Constants.ENCODING));
+            char[] chars = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                chars[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+                chars[2 * i + 1] = HEX[hash[i] & 0xf];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SocialAuthException(e);
+        } catch (IOException e) {
+            throw new SocialAuthException(e);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Count based circuit breaker. It records the outcome of the last
+ * <code>windowSize</code> calls and opens when the failure rate reaches the
+ * threshold. While open, calls are rejected until <code>openDuration</code>
+ * has elapsed, then a single trial call is let through (half open). The
+ * circuit closes again if the trial call succeeds.
+ *
+ * @author tarunn@brickred.com
+ */
+public class CircuitBreaker {
+
+    /**
+     * State of a circuit breaker
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final Log LOG = LogFactory.getLog(CircuitBreaker.class);
+
+    private final String name;
+    private final int failureRateThreshold;
+    private final long openDuration;
+    private final boolean[] outcomes;
+    private final int minimumCalls;
+    private int position;
+    private int recorded;
+    private int failuresInWindow;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInProgress;
+    private long calls;
+    private long failures;
+    private long rejected;
+
+    /**
+     * @param name                 name of the breaker, i.e. the provider id
+     * @param failureRateThreshold failure percentage at which the circuit opens
+     * @param windowSize           number of last calls considered
+     * @param openDuration         time in milliseconds the circuit stays open
+     */
+    public CircuitBreaker(final String name, final int failureRateThreshold,
+                          final int windowSize, final long openDuration) {
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        outcomes = new boolean[Math.max(1, windowSize)];
+        minimumCalls = Math.max(1, outcomes.length / 2);
+    }
+
+    /**
+     * Returns True if a call may be made now. A call which is allowed must be
+     * followed by {@link #onSuccess()} or {@link #onFailure()}.
+     *
+     * @return true if the call is allowed otherwise false
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDuration) {
+                rejected++;
+                return false;
+            }
+            LOG.info("Circuit of " + name + " is half open");
+            state = State.HALF_OPEN;
+            trialInProgress = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInProgress) {
+                rejected++;
+                return false;
+            }
+            trialInProgress = true;
+        }
+        calls++;
+        return true;
+    }
+
+    /**
+     * Records a successful call
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            LOG.info("Circuit of " + name + " is closed");
+            state = State.CLOSED;
+            trialInProgress = false;
+            reset();
+        }
+        record(false);
+    }
+
+    /**
+     * Records a failed call
+     */
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls
+                && failuresInWindow * 100 >= failureRateThreshold * recorded) {
+            open();
+        }
+    }
+
+    /**
+     * Records a call which was allowed but not made or whose outcome does not
+     * say anything about the provider, e.g. because the deadline expired.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            trialInProgress = false;
+        }
+    }
+
+    /**
+     * Retrieves the breaker name
+     *
+     * @return the breaker name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Retrieves the current state
+     *
+     * @return the current state
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Retrieves the failure rate of the calls in the window
+     *
+     * @return failure percentage
+     */
+    public synchronized int getFailureRate() {
+        return recorded == 0 ? 0 : failuresInWindow * 100 / recorded;
+    }
+
+    /**
+     * Retrieves the number of calls allowed so far
+     *
+     * @return number of calls
+     */
+    public synchronized long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Retrieves the number of failed calls so far
+     *
+     * @return number of failures
+     */
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Retrieves the number of calls rejected because the circuit was open
+     *
+     * @return number of rejected calls
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + " {state: " + state + ", failureRate: "
+                + getFailureRate() + "%, calls: " + calls + ", failures: "
+                + failures + ", rejected: " + rejected + "}";
+    }
+
+    private void open() {
+        LOG.warn("Circuit of " + name + " is open for " + openDuration
+                + " ms");
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        trialInProgress = false;
+        reset();
+    }
+
+    private void reset() {
+        position = 0;
+        recorded = 0;
+        failuresInWindow = 0;
+    }
+
+    private void record(final boolean failure) {
+        if (recorded == outcomes.length) {
+            if (outcomes[position]) {
+                failuresInWindow--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[position] = failure;
+        if (failure) {
+            failuresInWindow++;
+        }
+        position = (position + 1) % outcomes.length;
+    }
+}
@@ -91,6 +91,21 @@ public interface Constants {
      */
     public static final String HMACSHA1_SIGNATURE = "HMAC-SHA1";
 
+    /**
+     * HMAC-SHA256
+     */
+    public static final String HMACSHA256_SIGNATURE = "HMAC-SHA256";
+
+    /**
+     * RSA-SHA1
+     */
+    public static final String RSASHA1_SIGNATURE = "RSA-SHA1";
+
+    /**
+     * PLAINTEXT
+     */
+    public static final String PLAINTEXT_SIGNATURE = "PLAINTEXT";
+
     /**
      * request token url
      */
@@ -241,6 +256,165 @@ public interface Constants {
      */
     public static final String HTTP_CONNECTION_TIMEOUT = "http.connectionTimeOut";
 
+    /**
+     * HTTP read timeout property
+     */
+    public static final String HTTP_READ_TIMEOUT = "http.readTimeOut";
+
+    /**
+     * Time budget in milliseconds for connecting a provider property
+     */
+    public static final String CONNECT_DEADLINE = "connect.deadline";
+
+    /**
+     * HTTP transport property. Value can be "default" or "limited"
+     */
+    public static final String HTTP_TRANSPORT = "http.transport";
+
+    /**
+     * Name of the HTTP transport limiting requests in flight per host
+     */
+    public static final String HTTP_TRANSPORT_LIMITED = "limited";
+
+    /**
+     * Maximum requests in flight per provider host property
+     */
+    public static final String HTTP_LIMIT_MAX_PER_HOST = "http.limit.maxPerHost";
+
+    /**
+     * Idle timeout of the limit of a host property
+     */
+    public static final String HTTP_LIMIT_IDLE_TIMEOUT = "http.limit.idleTimeOut";
+
+    /**
+     * Time to wait for a request to a host to be allowed property
+     */
+    public static final String HTTP_LIMIT_WAIT_TIMEOUT = "http.limit.waitTimeOut";
+
+    /**
+     * Enables retries and circuit breakers for provider calls property
+     */
+    public static final String HTTP_RESILIENCE = "http.resilience";
+
+    /**
+     * Number of retries of a failed idempotent request property
+     */
+    public static final String HTTP_RETRY_MAX_RETRIES = "http.retry.maxRetries";
+
+    /**
+     * Initial retry backoff in milliseconds property
+     */
+    public static final String HTTP_RETRY_BACKOFF = "http.retry.backoff";
+
+    /**
+     * Maximum retry backoff in milliseconds property
+     */
+    public static final String HTTP_RETRY_MAX_BACKOFF = "http.retry.maxBackoff";
+
+    /**
+     * Failure percentage at which the circuit of a provider opens property
+     */
+    public static final String HTTP_BREAKER_FAILURE_RATE = "http.breaker.failureRate";
+
+    /**
+     * Number of calls considered by a circuit breaker property
+     */
+    public static final String HTTP_BREAKER_WINDOW = "http.breaker.window";
+
+    /**
+     * Time in milliseconds the circuit of a provider stays open property
+     */
+    public static final String HTTP_BREAKER_OPEN_DURATION = "http.breaker.openDuration";
+
+    /**
+     * Enables scheduling of provider calls by their rate limit headers
+     * property
+     */
+    public static final String HTTP_RATE_LIMIT = "http.rateLimit";
+
+    /**
+     * Maximum time in milliseconds a call waits for an exhausted rate limit
+     * property
+     */
+    public static final String HTTP_RATE_LIMIT_MAX_WAIT = "http.rateLimit.maxWait";
+
+    /**
+     * Time in milliseconds an application stays throttled when the provider
+     * gives no reset time property
+     */
+    public static final String HTTP_RATE_LIMIT_COOLDOWN = "http.rateLimit.cooldown";
+
+    /**
+     * Enables the conditional GET response cache property
+     */
+    public static final String HTTP_CACHE = "http.cache";
+
+    /**
+     * Maximum total size in bytes of cached responses property
+     */
+    public static final String HTTP_CACHE_MAX_SIZE = "http.cache.maxSize";
+
+    /**
+     * Maximum size in bytes of a single cached response property
+     */
+    public static final String HTTP_CACHE_MAX_ENTRY_SIZE = "http.cache.maxEntrySize";
+
+    /**
+     * Class name of the response cache storage property. The class must
+     * implement HttpCacheStorage and have a no argument constructor
+     */
+    public static final String HTTP_CACHE_STORAGE = "http.cache.storage";
+
+    /**
+     * Secret used to sign the state parameter of stateless logins property.
+     * It must be the same on every node completing logins
+     */
+    public static final String STATE_SECRET = "state.secret";
+
+    /**
+     * Maximum age in milliseconds of the state parameter of stateless logins
+     * property
+     */
+    public static final String STATE_MAX_AGE = "state.maxAge";
+
+    /**
+     * Milliseconds before expiry at which TokenRefreshManager refreshes an
+     * access grant property
+     */
+    public static final String TOKEN_REFRESH_AHEAD = "token.refresh.ahead";
+
+    /**
+     * Milliseconds after which TokenRefreshManager retries a failed refresh
+     * property
+     */
+    public static final String TOKEN_REFRESH_RETRY_DELAY = "token.refresh.retryDelay";
+
+    /**
+     * Number of threads used for asynchronous provider calls property
+     */
+    public static final String ASYNC_THREADS = "async.threads";
+
+    /**
+     * Execution mode of asynchronous provider calls property. Value can be
+     * "platform" or "virtual"
+     */
+    public static final String ASYNC_EXECUTION = "async.execution";
+
+    /**
+     * Virtual thread execution mode
+     */
+    public static final String EXECUTION_VIRTUAL = "virtual";
+
+    /**
+     * Number of albums whose photos are fetched at the same time property
+     */
+    public static final String ALBUM_PHOTOS_PARALLELISM = "album.photos.parallelism";
+
+    /**
+     * Whether album photos are fetched on first access property
+     */
+    public static final String ALBUM_PHOTOS_LAZY = "album.photos.lazy";
+
     /**
      * Content Encoding Header
      */
@@ -0,0 +1,147 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.brickred.socialauth.exception.DeadlineExceededException;
+
+/**
+ * Time budget for a chain of provider calls, e.g. the token exchange and
+ * profile fetch done while connecting a provider. A deadline is attached to
+ * the current thread through {@link #attach(Deadline)}; every HTTP request
+ * made by the thread then fails fast once the budget is spent, and its
+ * connect and read timeouts are limited to the remaining time.
+ *
+ * @author tarunn@brickred.com
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>();
+
+    private final long budget;
+    private final long expiresAt;
+
+    private Deadline(final long budget) {
+        this.budget = budget;
+        this.expiresAt = System.currentTimeMillis() + budget;
+    }
+
+    /**
+     * Creates a deadline which expires after the given time
+     *
+     * @param millis time budget in milliseconds
+     * @return the deadline
+     */
+    public static Deadline after(final long millis) {
+        return new Deadline(Math.max(0, millis));
+    }
+
+    /**
+     * Returns the deadline attached to the current thread
+     *
+     * @return the deadline or null if no deadline is attached
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Attaches the given deadline to the current thread. The returned value
+     * must be passed to {@link #detach(Deadline)} once the calls are done.
+     *
+     * @param deadline the deadline to attach, can be null
+     * @return the deadline which was attached before
+     */
+    public static Deadline attach(final Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        if (deadline != null) {
+            CURRENT.set(deadline);
+        }
+        return previous;
+    }
+
+    /**
+     * Restores the deadline which was attached before
+     * {@link #attach(Deadline)} was called.
+     *
+     * @param previous the value returned by {@link #attach(Deadline)}
+     */
+    public static void detach(final Deadline previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Returns the remaining time
+     *
+     * @return remaining time in milliseconds, 0 if expired
+     */
+    public long remaining() {
+        return Math.max(0, expiresAt - System.currentTimeMillis());
+    }
+
+    /**
+     * Returns True if the budget has been spent
+     *
+     * @return true if expired otherwise false
+     */
+    public boolean isExpired() {
+        return remaining() == 0;
+    }
+
+    /**
+     * Throws an exception if the budget has been spent
+     *
+     * @throws DeadlineExceededException
+     */
+    public void check() throws DeadlineExceededException {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Deadline of " + budget
+                    + " ms exceeded");
+        }
+    }
+
+    /**
+     * Limits the given timeout to the remaining time
+     *
+     * @param timeout timeout in milliseconds, 0 for no timeout
+     * @return the timeout to use in milliseconds, at least 1
+     */
+    public int limit(final int timeout) {
+        long remaining = Math.max(1, remaining());
+        if (timeout > 0 && timeout < remaining) {
+            return timeout;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline {budget: " + budget + " ms, remaining: "
+                + remaining() + " ms}";
+    }
+}
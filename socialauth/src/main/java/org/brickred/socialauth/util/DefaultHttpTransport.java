@@ -0,0 +1,283 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.brickred.socialauth.exception.DeadlineExceededException;
+import org.brickred.socialauth.exception.SocialAuthException;
+
+import javax.net.ssl.HttpsURLConnection;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+
+/**
+ * Default {@link HttpTransport} which opens a new java.net.HttpURLConnection
+ * for every request. Proxy and timeouts are taken from the values configured
+ * through {@link HttpUtil}. If a {@link Deadline} is attached to the current
+ * thread, requests fail once it has expired and timeouts are limited to the
+ * remaining time.
+ *
+ * @author tarunn@brickred.com
+ */
+public class DefaultHttpTransport implements HttpTransport {
+
+    private static final Log LOG = LogFactory.getLog(DefaultHttpTransport.class);
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final String body,
+                                  final Map<String, String> header) throws SocialAuthException {
+        checkDeadline();
+        HttpURLConnection conn;
+        try {
+            conn = openConnection(urlStr, requestMethod, header);
+
+            // If use POST or PUT must use this
+            OutputStream os = null;
+            if (body != null) {
+                if (requestMethod != null
+                        && !MethodType.GET.toString().equals(requestMethod)
+                        && !MethodType.DELETE.toString().equals(requestMethod)) {
+                    os = conn.getOutputStream();
+                    DataOutputStream out = new DataOutputStream(os);
+                    out.write(body.getBytes("UTF-8"));
+                    out.flush();
+                }
+            }
+            conn.connect();
+        } catch (Exception e) {
+            throw new SocialAuthException(e);
+        }
+        return new Response(conn);
+    }
+
+    @Override
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final Map<String, String> params,
+                                  final Map<String, String> header, final InputStream inputStream,
+                                  final String fileName, final String fileParamName)
+            throws SocialAuthException {
+        checkDeadline();
+        HttpURLConnection conn;
+        try {
+            conn = openConnection(urlStr, requestMethod, header);
+
+            // If use POST or PUT must use this
+            OutputStream os = null;
+            if (inputStream != null) {
+                if (requestMethod != null
+                        && !MethodType.GET.toString().equals(requestMethod)
+                        && !MethodType.DELETE.toString().equals(requestMethod)) {
+                    LOG.debug(requestMethod + " request");
+                    String boundary = "----Socialauth-posting"
+                            + System.currentTimeMillis();
+                    conn.setRequestProperty("Content-Type",
+                            "multipart/form-data; boundary=" + boundary);
+                    boundary = "--" + boundary;
+
+                    byte[] head = getMultipartHead(boundary, fileName,
+                            fileParamName);
+                    byte[] tail = getMultipartTail(boundary, params);
+                    long length = getContentLength(inputStream);
+                    long total = head.length + length + tail.length;
+                    // body is streamed instead of being buffered by the
+                    // connection
+                    if (length >= 0 && total <= Integer.MAX_VALUE) {
+                        conn.setFixedLengthStreamingMode((int) total);
+                    } else {
+                        conn.setChunkedStreamingMode(COPY_BUFFER_SIZE);
+                    }
+                    os = conn.getOutputStream();
+                    os.write(head);
+                    copy(inputStream, os);
+                    os.write(tail);
+                    os.flush();
+                }
+            }
+            conn.connect();
+        } catch (Exception e) {
+            throw new SocialAuthException(e);
+        }
+        return new Response(conn);
+    }
+
+    /**
+     * Opens and prepares the connection for the given URL. Proxy, timeout,
+     * request method and headers are applied but nothing is sent yet.
+     *
+     * @param urlStr        the URL String
+     * @param requestMethod Method type
+     * @param header        Header parameters
+     * @return the connection
+     * @throws IOException
+     */
+    protected HttpURLConnection openConnection(final String urlStr,
+                                               final String requestMethod, final Map<String, String> header)
+            throws IOException {
+        HttpURLConnection conn;
+        URL url = new URL(urlStr);
+        Proxy proxy = HttpUtil.getProxy();
+        if (proxy != null) {
+            conn = (HttpURLConnection) url.openConnection(proxy);
+        } else {
+            conn = (HttpURLConnection) url.openConnection();
+        }
+
+        if (MethodType.POST.toString().equalsIgnoreCase(requestMethod)
+                || MethodType.PUT.toString().equalsIgnoreCase(requestMethod)) {
+            conn.setDoOutput(true);
+        }
+
+        conn.setDoInput(true);
+
+        HttpClient client = HttpUtil.getRequestClient();
+        if (client != null && conn instanceof HttpsURLConnection) {
+            HttpsURLConnection https = (HttpsURLConnection) conn;
+            if (client.getSSLSocketFactory() != null) {
+                https.setSSLSocketFactory(client.getSSLSocketFactory());
+            }
+            if (client.getHostnameVerifier() != null) {
+                https.setHostnameVerifier(client.getHostnameVerifier());
+            }
+        }
+
+        conn.setInstanceFollowRedirects(true);
+        int timeout = HttpUtil.getConnectionTimeout();
+        int readTimeout = HttpUtil.getReadTimeout();
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            timeout = deadline.limit(timeout);
+            readTimeout = deadline.limit(readTimeout);
+        }
+        if (timeout > 0) {
+            LOG.debug("Setting connection timeout : " + timeout);
+            conn.setConnectTimeout(timeout);
+        }
+        if (readTimeout > 0) {
+            LOG.debug("Setting read timeout : " + readTimeout);
+            conn.setReadTimeout(readTimeout);
+        }
+        if (requestMethod != null) {
+            conn.setRequestMethod(requestMethod);
+        }
+        if (header != null) {
+            for (String key : header.keySet()) {
+                conn.setRequestProperty(key, header.get(key));
+            }
+        }
+        return conn;
+    }
+
+    private static void checkDeadline() throws DeadlineExceededException {
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            deadline.check();
+        }
+    }
+
+    private static byte[] getMultipartHead(final String boundary,
+                                           final String fileName, final String fileParamName)
+            throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(boundary).append("\r\n");
+        if (fileParamName != null) {
+            sb.append("Content-Disposition: form-data; name=\"")
+                    .append(fileParamName).append("\"; filename=\"")
+                    .append(fileName).append("\"\r\n");
+        } else {
+            sb.append("Content-Disposition: form-data;  filename=\"")
+                    .append(fileName).append("\"\r\n");
+        }
+        sb.append("Content-Type: multipart/form-data\r\n\r\n");
+        LOG.debug(sb);
+        return sb.toString().getBytes(Constants.ENCODING);
+    }
+
+    private static byte[] getMultipartTail(final String boundary,
+                                           final Map<String, String> params) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("\r\n".getBytes(Constants.ENCODING));
+        if (params != null) {
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                LOG.debug(entry.getKey() + " : " + entry.getValue());
+                out.write((boundary + "\r\nContent-Disposition: form-data; name=\""
+                        + entry.getKey() + "\"\r\n\r\n")
+                        .getBytes(Constants.ENCODING));
+                out.write(entry.getValue().getBytes(Constants.ENCODING));
+                out.write("\r\n".getBytes(Constants.ENCODING));
+            }
+        }
+        out.write((boundary + "--\r\n\r\n").getBytes(Constants.ENCODING));
+        return out.toByteArray();
+    }
+
+    // number of bytes left in the stream, or -1 if it is not known up front
+    private static long getContentLength(final InputStream in)
+            throws IOException {
+        if (in instanceof FileInputStream) {
+            FileChannel channel = ((FileInputStream) in).getChannel();
+            return channel.size() - channel.position();
+        }
+        if (in instanceof ByteArrayInputStream) {
+            return in.available();
+        }
+        return -1;
+    }
+
+    private static void copy(final InputStream in, final OutputStream out)
+            throws IOException {
+        if (in instanceof FileInputStream) {
+            FileChannel channel = ((FileInputStream) in).getChannel();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = channel.position();
+            long size = channel.size();
+            while (position < size) {
+                position += channel.transferTo(position, size - position,
+                        target);
+            }
+            channel.position(position);
+            return;
+        }
+        byte[] buf = new byte[COPY_BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+    }
+}
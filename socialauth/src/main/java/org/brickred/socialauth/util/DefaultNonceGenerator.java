@@ -0,0 +1,101 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default {@link NonceGenerator}. A nonce is made of 64 random bits followed
+ * by a sequence number shared by all generators of the JVM, so nonces are
+ * unique within the JVM and unpredictable. Random bits are taken from a set
+ * of striped SecureRandom instances, so concurrent requests do not contend on
+ * a single generator.
+ *
+ * @author tarunn@brickred.com
+ */
+public class DefaultNonceGenerator implements NonceGenerator {
+
+    private static final DefaultNonceGenerator INSTANCE = new DefaultNonceGenerator();
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecureRandom[] stripes;
+
+    public DefaultNonceGenerator() {
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime()
+                .availableProcessors() * 2 - 1)) << 1;
+        stripes = new SecureRandom[count];
+        SecureRandom seed = new SecureRandom();
+        for (int i = 0; i < count; i++) {
+            stripes[i] = newRandom(seed);
+        }
+    }
+
+    // SHA1PRNG keeps its state per instance, unlike the native generator
+    // which serializes all instances on one lock
+    private static SecureRandom newRandom(final SecureRandom seed) {
+        try {
+            SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+            byte[] bytes = new byte[20];
+            seed.nextBytes(bytes);
+            random.setSeed(bytes);
+            return random;
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    /**
+     * Returns the shared default generator
+     *
+     * @return the default nonce generator
+     */
+    public static DefaultNonceGenerator getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public String generateNonce() {
+        long seq = SEQUENCE.incrementAndGet();
+        SecureRandom random = stripes[(int) seq & (stripes.length - 1)];
+        long bits;
+        synchronized (random) {
+            bits = random.nextLong();
+        }
+        char[] chars = new char[32];
+        int pos = chars.length;
+        do {
+            chars[--pos] = HEX[(int) (seq & 0xf)];
+            seq >>>= 4;
+        } while (seq != 0);
+        for (int i = 0; i < 16; i++) {
+            chars[--pos] = HEX[(int) (bits & 0xf)];
+            bits >>>= 4;
+        }
+        return new String(chars, pos, chars.length - pos);
+    }
+}
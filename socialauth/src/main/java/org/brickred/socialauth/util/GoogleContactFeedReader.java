@@ -0,0 +1,234 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.brickred.socialauth.Contact;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the contacts of a Google contacts Atom feed with StAX. Each contact
+ * is passed to a {@link ContactHandler} as soon as its entry has been read,
+ * so the whole feed is never held in memory.
+ *
+ * @author tarunn@brickred.com
+ */
+public class GoogleContactFeedReader {
+
+    /**
+     * Namespace of the Google data elements, e.g. <code>gd:email</code>
+     */
+    public static final String CONTACT_NAMESPACE = "http://schemas.google.com/g/2005";
+
+    private static final QName ADDRESS = new QName("address");
+    private static final XMLOutputFactory OUTPUT_FACTORY;
+
+    static {
+        OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+        OUTPUT_FACTORY.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES,
+                Boolean.TRUE);
+    }
+
+    /**
+     * Receives the contacts read from the feed
+     */
+    public interface ContactHandler {
+
+        /**
+         * Called for every entry of the feed which has an email address
+         *
+         * @param contact the contact
+         * @throws Exception
+         */
+        void handle(Contact contact) throws Exception;
+    }
+
+    private final boolean saveRawResponse;
+
+    /**
+     * Creates a reader
+     *
+     * @param saveRawResponse if true, the XML of every entry is set as raw
+     *                        response of its contact
+     */
+    public GoogleContactFeedReader(final boolean saveRawResponse) {
+        this.saveRawResponse = saveRawResponse;
+    }
+
+    /**
+     * Reads the feed and passes each contact to the given handler. Entries
+     * without an email address are skipped, but still counted.
+     *
+     * @param in      feed input stream, it is not closed
+     * @param handler contact handler
+     * @return number of entries read from the feed
+     * @throws Exception
+     */
+    public int read(final InputStream in, final ContactHandler handler)
+            throws Exception {
+        XMLEventReader reader = XMLParseUtil.getXMLInputFactory()
+                .createXMLEventReader(in);
+        int entries = 0;
+        try {
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()
+                        && "entry".equals(event.asStartElement().getName()
+                        .getLocalPart())) {
+                    entries++;
+                    Contact contact = readEntry(reader,
+                            event.asStartElement());
+                    if (contact != null) {
+                        handler.handle(contact);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return entries;
+    }
+
+    private Contact readEntry(final XMLEventReader reader,
+                              final StartElement entry) throws XMLStreamException {
+        StringWriter raw = null;
+        XMLEventWriter writer = null;
+        if (saveRawResponse) {
+            raw = new StringWriter();
+            writer = OUTPUT_FACTORY.createXMLEventWriter(raw);
+            writer.add(entry);
+        }
+        String id = null;
+        String dispName = null;
+        String address = null;
+        List<String> otherEmails = null;
+        int depth = 0;
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (writer != null) {
+                writer.add(event);
+            }
+            if (event.isStartElement()) {
+                StartElement element = event.asStartElement();
+                QName name = element.getName();
+                if (CONTACT_NAMESPACE.equals(name.getNamespaceURI())
+                        && "email".equals(name.getLocalPart())) {
+                    Attribute attr = element.getAttributeByName(ADDRESS);
+                    String value = attr == null ? "" : attr.getValue();
+                    if (address == null) {
+                        address = value;
+                    } else {
+                        if (otherEmails == null) {
+                            otherEmails = new ArrayList<String>();
+                        }
+                        otherEmails.add(value);
+                    }
+                    depth++;
+                } else if (depth == 0 && id == null
+                        && "id".equals(name.getLocalPart())) {
+                    id = readText(reader, writer);
+                } else if (depth == 0 && dispName == null
+                        && "title".equals(name.getLocalPart())) {
+                    dispName = readText(reader, writer);
+                } else {
+                    depth++;
+                }
+            } else if (event.isEndElement()) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            }
+        }
+        if (address == null || address.length() == 0) {
+            return null;
+        }
+        Contact contact = new Contact();
+        String fname = "";
+        String lname = "";
+        if (dispName != null) {
+            String sarr[] = dispName.split(" ");
+            if (sarr.length >= 1) {
+                fname = sarr[0];
+            }
+            if (sarr.length >= 2) {
+                StringBuilder sb = new StringBuilder();
+                for (int k = 1; k < sarr.length; k++) {
+                    sb.append(sarr[k]).append(" ");
+                }
+                lname = sb.toString();
+            }
+        }
+        contact.setFirstName(fname);
+        contact.setLastName(lname);
+        contact.setEmail(address);
+        contact.setDisplayName(dispName);
+        if (otherEmails != null) {
+            contact.setOtherEmails(otherEmails.toArray(new String[otherEmails
+                    .size()]));
+        }
+        contact.setId(id);
+        if (writer != null) {
+            writer.close();
+            contact.setRawResponse(raw.toString());
+        }
+        return contact;
+    }
+
+    // an element without text, e.g. <title/>, gives null like a missing one
+    private static String readText(final XMLEventReader reader,
+                                   final XMLEventWriter writer) throws XMLStreamException {
+        StringBuilder sb = new StringBuilder();
+        int depth = 0;
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (writer != null) {
+                writer.add(event);
+            }
+            if (event.isCharacters()) {
+                sb.append(event.asCharacters().getData());
+            } else if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            }
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+}
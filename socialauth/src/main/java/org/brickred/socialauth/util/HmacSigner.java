@@ -0,0 +1,168 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.brickred.socialauth.exception.SignatureException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes OAuth 1.0 HMAC signatures. Mac instances are pooled and the
+ * signing keys of the most recently used consumer secret and token secret
+ * pairs are cached, so signing a request does not look up the algorithm or
+ * derive the key again. The
+ * signature base string is streamed into the Mac from the method, URL and
+ * {@link NormalizedParameters} instead of being concatenated first.
+ *
+ * @author tarunn@brickred.com
+ */
+public final class HmacSigner implements OAuthSigner {
+
+    /**
+     * HMAC-SHA1 signer
+     */
+    public static final HmacSigner HMAC_SHA1 = new HmacSigner(
+            Constants.HMACSHA1_SIGNATURE, "HmacSHA1");
+
+    /**
+     * HMAC-SHA256 signer
+     */
+    public static final HmacSigner HMAC_SHA256 = new HmacSigner(
+            Constants.HMACSHA256_SIGNATURE, "HmacSHA256");
+
+    private static final int MAX_KEYS = 4096;
+
+    private final String signatureMethod;
+    private final String algorithm;
+    private final Map<KeyId, SecretKeySpec> keys;
+    private final ObjectPool<State> states;
+
+    private HmacSigner(final String signatureMethod, final String algorithm) {
+        this.signatureMethod = signatureMethod;
+        this.algorithm = algorithm;
+        keys = Collections.synchronizedMap(new LinkedHashMap<KeyId, SecretKeySpec>(
+                16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<KeyId, SecretKeySpec> eldest) {
+                return size() > MAX_KEYS;
+            }
+        });
+        states = new ObjectPool<State>();
+    }
+
+    @Override
+    public String getSignatureMethod() {
+        return signatureMethod;
+    }
+
+    @Override
+    public String sign(final String method, final String url,
+                       final NormalizedParameters params, final String consumerSecret,
+                       final String tokenSecret) throws SignatureException {
+        try {
+            SecretKeySpec key = getKey(consumerSecret, tokenSecret);
+            State s = states.poll();
+            if (s == null) {
+                s = new State(Mac.getInstance(algorithm));
+            }
+            if (s.key != key) {
+                s.mac.init(key);
+                s.key = key;
+            }
+            SignatureBaseString.write(method, url, params, s.buf, s);
+            String signature = Base64.encodeBytes(s.mac.doFinal());
+            states.release(s);
+            return signature;
+        } catch (Exception e) {
+            throw new SignatureException("Unable to generate "
+                    + signatureMethod, e);
+        }
+    }
+
+    private SecretKeySpec getKey(final String consumerSecret,
+                                 final String tokenSecret) throws Exception {
+        KeyId id = new KeyId(consumerSecret == null ? "" : consumerSecret,
+                tokenSecret == null ? "" : tokenSecret);
+        SecretKeySpec key = keys.get(id);
+        if (key == null) {
+            // RFC 5849 key: encoded consumer secret & encoded token secret
+            String value = HttpUtil.encodeURIComponent(id.consumerSecret) + "&"
+                    + HttpUtil.encodeURIComponent(id.tokenSecret);
+            key = new SecretKeySpec(value.getBytes(Constants.ENCODING),
+                    algorithm);
+            keys.put(id, key);
+        }
+        return key;
+    }
+
+    // both secrets are compared as they are, so no separator can make two
+    // different pairs collide
+    private static final class KeyId {
+        private final String consumerSecret;
+        private final String tokenSecret;
+
+        KeyId(final String consumerSecret, final String tokenSecret) {
+            this.consumerSecret = consumerSecret;
+            this.tokenSecret = tokenSecret;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof KeyId)) {
+                return false;
+            }
+            KeyId other = (KeyId) obj;
+            return consumerSecret.equals(other.consumerSecret)
+                    && tokenSecret.equals(other.tokenSecret);
+        }
+
+        @Override
+        public int hashCode() {
+            return consumerSecret.hashCode() * 31 + tokenSecret.hashCode();
+        }
+    }
+
+    private static class State implements SignatureBaseString.Sink {
+        private final Mac mac;
+        private final byte[] buf = new byte[512];
+        private SecretKeySpec key;
+
+        State(final Mac mac) {
+            this.mac = mac;
+        }
+
+        @Override
+        public void update(final byte[] b, final int off, final int len) {
+            mac.update(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.brickred.socialauth.exception.SocialAuthException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link HttpTransport} which limits the number of requests in flight per
+ * provider host. The limits are keyed by the provider domains (e.g.
+ * graph.facebook.com, googleapis.com) so that every host belonging to a
+ * provider shares the same limit.
+ * <p>
+ * At most <code>maxPerHost</code> requests to a host wait for their response
+ * at a time: a request holds a permit from the moment it is sent until its
+ * status and headers have been received, and reading the content is not
+ * limited. A request which gets no permit within the wait timeout fails
+ * with a {@link SocialAuthException}. This transport does not keep
+ * connections itself; reuse of keep-alive connections is left to
+ * java.net.HttpURLConnection and its JVM wide settings. The limits and
+ * statistics of hosts which are not provider domains are dropped after being
+ * idle for <code>idleTimeout</code> milliseconds.
+ *
+ * @author tarunn@brickred.com
+ */
+public class HostLimitedHttpTransport extends DefaultHttpTransport {
+
+    /**
+     * Default maximum requests in flight per host
+     */
+    public static final int DEFAULT_MAX_PER_HOST = 20;
+
+    /**
+     * Default idle timeout of a host limit in milliseconds
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+
+    /**
+     * Default time in milliseconds to wait for a free permit
+     */
+    public static final long DEFAULT_WAIT_TIMEOUT = 5000;
+
+    private static final Log LOG = LogFactory.getLog(HostLimitedHttpTransport.class);
+
+    private final ConcurrentMap<String, HostLimit> limits;
+    private final Collection<String> domains;
+    private final int maxPerHost;
+    private final long idleTimeout;
+    private final long waitTimeout;
+    private final AtomicLong lastEviction;
+
+    /**
+     * @param domains     provider domains for which limits are created upfront
+     * @param maxPerHost  maximum requests in flight at a time for a host
+     * @param idleTimeout time in milliseconds after which the limit of an
+     *                    unused host is dropped
+     * @param waitTimeout time in milliseconds to wait for a free permit. If it
+     *                    elapses the request fails.
+     */
+    public HostLimitedHttpTransport(final Collection<String> domains,
+                                    final int maxPerHost, final long idleTimeout,
+                                    final long waitTimeout) {
+        this.maxPerHost = maxPerHost > 0 ? maxPerHost : DEFAULT_MAX_PER_HOST;
+        this.idleTimeout = idleTimeout > 0 ? idleTimeout
+                : DEFAULT_IDLE_TIMEOUT;
+        this.waitTimeout = waitTimeout >= 0 ? waitTimeout
+                : DEFAULT_WAIT_TIMEOUT;
+        this.domains = domains;
+        limits = new ConcurrentHashMap<String, HostLimit>();
+        lastEviction = new AtomicLong(System.currentTimeMillis());
+        if (domains != null) {
+            for (String domain : domains) {
+                limits.putIfAbsent(domain, new HostLimit(domain,
+                        this.maxPerHost, true));
+            }
+        }
+    }
+
+    /**
+     * @param domains provider domains for which limits are created upfront
+     */
+    public HostLimitedHttpTransport(final Collection<String> domains) {
+        this(domains, DEFAULT_MAX_PER_HOST, DEFAULT_IDLE_TIMEOUT,
+                DEFAULT_WAIT_TIMEOUT);
+    }
+
+    @Override
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final String body,
+                                  final Map<String, String> header) throws SocialAuthException {
+        HostLimit limit = acquire(urlStr);
+        try {
+            return complete(super.doHttpRequest(urlStr, requestMethod, body,
+                    header));
+        } finally {
+            limit.release();
+        }
+    }
+
+    @Override
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final Map<String, String> params,
+                                  final Map<String, String> header, final InputStream inputStream,
+                                  final String fileName, final String fileParamName)
+            throws SocialAuthException {
+        HostLimit limit = acquire(urlStr);
+        try {
+            return complete(super.doHttpRequest(urlStr, requestMethod, params,
+                    header, inputStream, fileName, fileParamName));
+        } finally {
+            limit.release();
+        }
+    }
+
+    // waits for the status and headers, so that the permit covers the
+    // request until the host has answered it
+    private Response complete(final Response response)
+            throws SocialAuthException {
+        try {
+            response.readStatus();
+        } catch (IOException e) {
+            throw new SocialAuthException(e);
+        }
+        return response;
+    }
+
+    /**
+     * Returns the statistics of all host limits, keyed by name (provider
+     * domain or host).
+     *
+     * @return map of host statistics
+     */
+    public Map<String, HostStats> getHostStats() {
+        Map<String, HostStats> stats = new HashMap<String, HostStats>();
+        for (HostLimit limit : limits.values()) {
+            stats.put(limit.name, limit.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Drops the limits and statistics of non provider hosts which have no
+     * request in flight and have not been used for more than the idle
+     * timeout.
+     *
+     * @return number of dropped hosts
+     */
+    public int evictIdleHosts() {
+        long now = System.currentTimeMillis();
+        lastEviction.set(now);
+        int count = 0;
+        Iterator<HostLimit> itr = limits.values().iterator();
+        while (itr.hasNext()) {
+            HostLimit limit = itr.next();
+            if (!limit.provider && limit.inFlight.get() == 0
+                    && now - limit.lastUsed > idleTimeout) {
+                itr.remove();
+                count++;
+            }
+        }
+        if (count > 0) {
+            LOG.debug("Dropped idle host limits : " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the maximum requests in flight per host
+     *
+     * @return the maximum requests in flight per host
+     */
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    /**
+     * Retrieves the idle timeout of a host limit
+     *
+     * @return the idle timeout in milliseconds
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    private HostLimit acquire(final String urlStr) throws SocialAuthException {
+        long now = System.currentTimeMillis();
+        long last = lastEviction.get();
+        if (now - last > idleTimeout && lastEviction.compareAndSet(last, now)) {
+            evictIdleHosts();
+        }
+        String name = getHostName(urlStr);
+        HostLimit limit = limits.get(name);
+        if (limit == null) {
+            HostLimit newLimit = new HostLimit(name, maxPerHost, false);
+            limit = limits.putIfAbsent(name, newLimit);
+            if (limit == null) {
+                limit = newLimit;
+            }
+        }
+        long timeout = waitTimeout;
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            deadline.check();
+            timeout = Math.min(timeout, deadline.remaining());
+        }
+        boolean acquired;
+        try {
+            acquired = limit.acquire(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SocialAuthException(
+                    "Interrupted while waiting to send request to " + name, e);
+        }
+        if (!acquired) {
+            throw new SocialAuthException("More than " + maxPerHost
+                    + " requests in flight to " + name + " for " + timeout
+                    + " ms");
+        }
+        return limit;
+    }
+
+    private String getHostName(final String urlStr) throws SocialAuthException {
+        String host;
+        try {
+            host = new URL(urlStr).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            throw new SocialAuthException(e);
+        }
+        if (domains != null) {
+            for (String domain : domains) {
+                if (host.equals(domain) || host.endsWith("." + domain)) {
+                    return domain;
+                }
+            }
+        }
+        return host;
+    }
+
+    /**
+     * Snapshot of the statistics of a host limit
+     */
+    public static class HostStats {
+        private final String name;
+        private final int maxPerHost;
+        private final int inFlight;
+        private final int peakInFlight;
+        private final long requests;
+        private final long waits;
+        private final long rejections;
+
+        HostStats(final String name, final int maxPerHost, final int inFlight,
+                  final int peakInFlight, final long requests, final long waits,
+                  final long rejections) {
+            this.name = name;
+            this.maxPerHost = maxPerHost;
+            this.inFlight = inFlight;
+            this.peakInFlight = peakInFlight;
+            this.requests = requests;
+            this.waits = waits;
+            this.rejections = rejections;
+        }
+
+        /**
+         * @return the provider domain or host
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the maximum requests in flight
+         */
+        public int getMaxPerHost() {
+            return maxPerHost;
+        }
+
+        /**
+         * @return the number of requests currently in flight
+         */
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * @return the number of requests which can be sent without waiting
+         */
+        public int getAvailable() {
+            return Math.max(0, maxPerHost - inFlight);
+        }
+
+        /**
+         * @return the highest number of requests in flight at a time
+         */
+        public int getPeakInFlight() {
+            return peakInFlight;
+        }
+
+        /**
+         * @return the total number of requests sent to the host
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return the number of requests which had to wait for a permit
+         */
+        public long getWaits() {
+            return waits;
+        }
+
+        /**
+         * @return the number of requests which failed because no permit was
+         * free within the wait timeout
+         */
+        public long getRejections() {
+            return rejections;
+        }
+
+        @Override
+        public String toString() {
+            return name + " {inFlight: " + inFlight + ", max: " + maxPerHost
+                    + ", peak: " + peakInFlight + ", requests: " + requests
+                    + ", waits: " + waits + ", rejections: " + rejections
+                    + "}";
+        }
+    }
+
+    private static class HostLimit {
+        private final String name;
+        private final int maxPerHost;
+        private final boolean provider;
+        private final Semaphore permits;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong waits = new AtomicLong();
+        private final AtomicLong rejections = new AtomicLong();
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        HostLimit(final String name, final int maxPerHost,
+                  final boolean provider) {
+            this.name = name;
+            this.maxPerHost = maxPerHost;
+            this.provider = provider;
+            permits = new Semaphore(maxPerHost);
+        }
+
+        boolean acquire(final long timeout) throws InterruptedException {
+            requests.incrementAndGet();
+            lastUsed = System.currentTimeMillis();
+            if (!permits.tryAcquire()) {
+                waits.incrementAndGet();
+                if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                    rejections.incrementAndGet();
+                    LOG.warn("No free permit for " + name + " within "
+                            + timeout + " ms");
+                    return false;
+                }
+            }
+            int current = inFlight.incrementAndGet();
+            int peak = peakInFlight.get();
+            while (current > peak
+                    && !peakInFlight.compareAndSet(peak, current)) {
+                peak = peakInFlight.get();
+            }
+            return true;
+        }
+
+        void release() {
+            lastUsed = System.currentTimeMillis();
+            inFlight.decrementAndGet();
+            permits.release();
+        }
+
+        HostStats stats() {
+            return new HostStats(name, maxPerHost, inFlight.get(),
+                    peakInFlight.get(), requests.get(), waits.get(),
+                    rejections.get());
+        }
+    }
+}
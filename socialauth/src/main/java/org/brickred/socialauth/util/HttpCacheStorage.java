@@ -0,0 +1,62 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+/**
+ * Storage of the responses cached by {@link CachingHttpTransport}.
+ * Implementations must be thread safe.
+ *
+ * @author tarunn@brickred.com
+ */
+public interface HttpCacheStorage {
+
+    /**
+     * Retrieves the cached response for the given key
+     *
+     * @param key the cache key
+     * @return the cached response or null if none is stored
+     */
+    CachedResponse get(String key);
+
+    /**
+     * Stores the response for the given key
+     *
+     * @param key      the cache key
+     * @param response the response to cache
+     */
+    void put(String key, CachedResponse response);
+
+    /**
+     * Removes the response stored for the given key
+     *
+     * @param key the cache key
+     */
+    void remove(String key);
+
+    /**
+     * Removes all responses
+     */
+    void clear();
+}
@@ -0,0 +1,222 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.brickred.socialauth.exception.SocialAuthException;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Map;
+
+/**
+ * HTTP settings and transport of one application configuration. Each
+ * SocialAuthConfig owns a client which is passed to its providers through
+ * {@link OAuthConfig#getHttpClient()}, so several configurations with
+ * different proxies, timeouts, transports or TLS settings can be used in the same
+ * JVM without affecting each other.
+ * <p>
+ * Values which are not set on the client fall back to the static values of
+ * {@link HttpUtil}.
+ *
+ * @author tarunn@brickred.com
+ */
+public class HttpClient {
+
+    private static final Log LOG = LogFactory.getLog(HttpClient.class);
+
+    private volatile Proxy proxy;
+    private volatile int connectionTimeout;
+    private volatile int readTimeout;
+    private volatile SSLSocketFactory sslSocketFactory;
+    private volatile HostnameVerifier hostnameVerifier;
+    private volatile HttpTransport transport;
+
+    /**
+     * Makes HTTP request with the settings and transport of this client
+     *
+     * @param urlStr        the URL String
+     * @param requestMethod Method type
+     * @param body          Body to pass in request.
+     * @param header        Header parameters
+     * @return Response Object
+     * @throws SocialAuthException
+     */
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final String body,
+                                  final Map<String, String> header) throws SocialAuthException {
+        return HttpUtil.doHttpRequest(this, null, urlStr, requestMethod, body,
+                header);
+    }
+
+    /**
+     * Makes multipart HTTP request with the settings and transport of this
+     * client
+     *
+     * @param urlStr        the URL String
+     * @param requestMethod Method type
+     * @param params        Parameters to pass in request
+     * @param header        Header parameters
+     * @param inputStream   Input stream of image
+     * @param fileName      Image file name
+     * @param fileParamName Image Filename parameter. It requires in some provider.
+     * @return Response object
+     * @throws SocialAuthException
+     */
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final Map<String, String> params,
+                                  final Map<String, String> header, final InputStream inputStream,
+                                  final String fileName, final String fileParamName)
+            throws SocialAuthException {
+        return HttpUtil.doHttpRequest(this, null, urlStr, requestMethod,
+                params, header, inputStream, fileName, fileParamName);
+    }
+
+    /**
+     * Sets the proxy host and port
+     *
+     * @param host proxy host
+     * @param port proxy port
+     */
+    public void setProxy(final String host, final int port) {
+        if (host != null) {
+            LOG.debug("Setting proxy - Host : " + host + "   port : " + port);
+            proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(host,
+                    Math.max(port, 0)));
+        }
+    }
+
+    /**
+     * Retrieves the proxy
+     *
+     * @return the proxy or null if not set
+     */
+    public Proxy getProxy() {
+        return proxy;
+    }
+
+    /**
+     * Updates the proxy
+     *
+     * @param proxy the proxy
+     */
+    public void setProxy(final Proxy proxy) {
+        this.proxy = proxy;
+    }
+
+    /**
+     * Retrieves the connection timeout
+     *
+     * @return the connection timeout in milliseconds, 0 if not set
+     */
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    /**
+     * Updates the connection timeout
+     *
+     * @param connectionTimeout the connection timeout in milliseconds
+     */
+    public void setConnectionTimeout(final int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    /**
+     * Retrieves the read timeout
+     *
+     * @return the read timeout in milliseconds, 0 if not set
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Updates the read timeout
+     *
+     * @param readTimeout the read timeout in milliseconds
+     */
+    public void setReadTimeout(final int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Retrieves the socket factory used for HTTPS connections
+     *
+     * @return the socket factory or null if the default is used
+     */
+    public SSLSocketFactory getSSLSocketFactory() {
+        return sslSocketFactory;
+    }
+
+    /**
+     * Updates the socket factory used for HTTPS connections
+     *
+     * @param sslSocketFactory the socket factory
+     */
+    public void setSSLSocketFactory(final SSLSocketFactory sslSocketFactory) {
+        this.sslSocketFactory = sslSocketFactory;
+    }
+
+    /**
+     * Retrieves the host name verifier used for HTTPS connections
+     *
+     * @return the host name verifier or null if the default is used
+     */
+    public HostnameVerifier getHostnameVerifier() {
+        return hostnameVerifier;
+    }
+
+    /**
+     * Updates the host name verifier used for HTTPS connections
+     *
+     * @param hostnameVerifier the host name verifier
+     */
+    public void setHostnameVerifier(final HostnameVerifier hostnameVerifier) {
+        this.hostnameVerifier = hostnameVerifier;
+    }
+
+    /**
+     * Retrieves the transport which makes the requests
+     *
+     * @return the transport or null if the one of {@link HttpUtil} is used
+     */
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Updates the transport which makes the requests
+     *
+     * @param transport the transport
+     */
+    public void setTransport(final HttpTransport transport) {
+        this.transport = transport;
+    }
+}
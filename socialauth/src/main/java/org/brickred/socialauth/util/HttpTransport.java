@@ -0,0 +1,78 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.brickred.socialauth.exception.SocialAuthException;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Abstraction over the HTTP layer used by the OAuth strategies and providers.
+ * The {@link DefaultHttpTransport} opens a new HttpURLConnection for every
+ * call whereas {@link HostLimitedHttpTransport} also bounds and tracks the
+ * requests in flight per provider host.
+ * <p>
+ * The transport in use can be changed through
+ * {@link HttpUtil#setHttpTransport(HttpTransport)} or by setting the
+ * "http.transport" property in the configuration file.
+ *
+ * @author tarunn@brickred.com
+ */
+public interface HttpTransport {
+
+    /**
+     * Makes HTTP request
+     *
+     * @param urlStr        the URL String
+     * @param requestMethod Method type
+     * @param body          Body to pass in request.
+     * @param header        Header parameters
+     * @return Response Object
+     * @throws SocialAuthException
+     */
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final String body,
+                                  final Map<String, String> header) throws SocialAuthException;
+
+    /**
+     * Makes multipart HTTP request to upload an image
+     *
+     * @param urlStr        the URL String
+     * @param requestMethod Method type
+     * @param params        Parameters to pass in request
+     * @param header        Header parameters
+     * @param inputStream   Input stream of image
+     * @param fileName      Image file name
+     * @param fileParamName Image Filename parameter. It requires in some provider.
+     * @return Response object
+     * @throws SocialAuthException
+     */
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final Map<String, String> params,
+                                  final Map<String, String> header, final InputStream inputStream,
+                                  final String fileName, final String fileParamName)
+            throws SocialAuthException;
+}
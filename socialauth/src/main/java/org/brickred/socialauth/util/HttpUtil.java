@@ -39,6 +39,8 @@ import java.security.SecureRandom;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This class is used to make HTTP requests. We did try NOT writing this class
@@ -55,9 +57,17 @@ import java.util.*;
 public class HttpUtil {
 
     private static final Log LOG = LogFactory.getLog(HttpUtil.class);
-    private static final String ALLOWED_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_.!~*'()";
     private static Proxy proxyObj = null;
     private static int timeoutValue = 0;
+    private static int readTimeoutValue = 0;
+    private static final ThreadLocal<OAuthConfig> REQUEST_CONFIG = new ThreadLocal<OAuthConfig>();
+    private static final ThreadLocal<HttpClient> REQUEST_CLIENT = new ThreadLocal<HttpClient>();
+    private static volatile HttpTransport transport = new DefaultHttpTransport();
+    private static volatile HttpClient defaultClient;
+    private static final Pattern OAUTH_TOKEN = Pattern
+            .compile("oauth_token=\"([^\"]*)\"");
+    private static final Pattern QUERY_TOKEN = Pattern
+            .compile("[?&](?:access_token|oauth_token)=([^&]*)");
 
     static {
 
@@ -137,7 +147,8 @@ public class HttpUtil {
     }
 
     /**
-     * Makes HTTP request using java.net.HTTPURLConnection
+     * Makes HTTP request through the default {@link HttpClient}, see
+     * {@link #setDefaultHttpClient(HttpClient)}
      *
      * @param urlStr        the URL String
      * @param requestMethod Method type
@@ -149,59 +160,54 @@ public class HttpUtil {
     public static Response doHttpRequest(final String urlStr,
                                          final String requestMethod, final String body,
                                          final Map<String, String> header) throws SocialAuthException {
-        HttpURLConnection conn;
-        try {
-
-            URL url = new URL(urlStr);
-            if (proxyObj != null) {
-                conn = (HttpURLConnection) url.openConnection(proxyObj);
-            } else {
-                conn = (HttpURLConnection) url.openConnection();
-            }
-
-            if (MethodType.POST.toString().equalsIgnoreCase(requestMethod)
-                    || MethodType.PUT.toString()
-                    .equalsIgnoreCase(requestMethod)) {
-                conn.setDoOutput(true);
-            }
-
-            conn.setDoInput(true);
+        return doHttpRequest(defaultClient, null, urlStr, requestMethod, body,
+                header);
+    }
 
-            conn.setInstanceFollowRedirects(true);
-            if (timeoutValue > 0) {
-                LOG.debug("Setting connection timeout : " + timeoutValue);
-                conn.setConnectTimeout(timeoutValue);
-            }
-            if (requestMethod != null) {
-                conn.setRequestMethod(requestMethod);
-            }
-            if (header != null) {
-                for (String key : header.keySet()) {
-                    conn.setRequestProperty(key, header.get(key));
-                }
-            }
+    /**
+     * Makes HTTP request using the configured {@link HttpTransport}. The
+     * connection and read timeouts of the given provider configuration are
+     * used if they are set. If the configuration carries an
+     * {@link HttpClient}, its settings and transport are used, otherwise
+     * those of the default client.
+     *
+     * @param urlStr        the URL String
+     * @param requestMethod Method type
+     * @param body          Body to pass in request.
+     * @param header        Header parameters
+     * @param config        Configuration of the provider making the request
+     * @return Response Object
+     * @throws SocialAuthException
+     */
+    public static Response doHttpRequest(final String urlStr,
+                                         final String requestMethod, final String body,
+                                         final Map<String, String> header, final OAuthConfig config)
+            throws SocialAuthException {
+        return doHttpRequest(getClient(config), config, urlStr, requestMethod,
+                body, header);
+    }
 
-            // If use POST or PUT must use this
-            OutputStream os = null;
-            if (body != null) {
-                if (requestMethod != null
-                        && !MethodType.GET.toString().equals(requestMethod)
-                        && !MethodType.DELETE.toString().equals(requestMethod)) {
-                    os = conn.getOutputStream();
-                    DataOutputStream out = new DataOutputStream(os);
-                    out.write(body.getBytes("UTF-8"));
-                    out.flush();
-                }
-            }
-            conn.connect();
-        } catch (Exception e) {
-            throw new SocialAuthException(e);
+    static Response doHttpRequest(final HttpClient client,
+                                  final OAuthConfig config, final String urlStr,
+                                  final String requestMethod, final String body,
+                                  final Map<String, String> header) throws SocialAuthException {
+        OAuthConfig previousConfig = REQUEST_CONFIG.get();
+        HttpClient previousClient = REQUEST_CLIENT.get();
+        set(REQUEST_CONFIG, config);
+        set(REQUEST_CLIENT, client);
+        try {
+            return getTransport(client).doHttpRequest(urlStr, requestMethod,
+                    body, header);
+        } finally {
+            set(REQUEST_CONFIG, previousConfig);
+            set(REQUEST_CLIENT, previousClient);
         }
-        return new Response(conn);
-
     }
 
     /**
+     * Makes HTTP request through the default {@link HttpClient}, see
+     * {@link #setDefaultHttpClient(HttpClient)}
+     *
      * @param urlStr        the URL String
      * @param requestMethod Method type
      * @param params        Parameters to pass in request
@@ -217,102 +223,77 @@ public class HttpUtil {
                                          final Map<String, String> header, final InputStream inputStream,
                                          final String fileName, final String fileParamName)
             throws SocialAuthException {
-        HttpURLConnection conn;
-        try {
-
-            URL url = new URL(urlStr);
-            if (proxyObj != null) {
-                conn = (HttpURLConnection) url.openConnection(proxyObj);
-            } else {
-                conn = (HttpURLConnection) url.openConnection();
-            }
-
-            if (requestMethod.equalsIgnoreCase(MethodType.POST.toString())
-                    || requestMethod
-                    .equalsIgnoreCase(MethodType.PUT.toString())) {
-                conn.setDoOutput(true);
-            }
+        return doHttpRequest(defaultClient, null, urlStr, requestMethod,
+                params, header, inputStream, fileName, fileParamName);
+    }
 
-            conn.setDoInput(true);
+    /**
+     * @param urlStr        the URL String
+     * @param requestMethod Method type
+     * @param params        Parameters to pass in request
+     * @param header        Header parameters
+     * @param inputStream   Input stream of image
+     * @param fileName      Image file name
+     * @param fileParamName Image Filename parameter. It requires in some provider.
+     * @param config        Configuration of the provider making the request
+     * @return Response object
+     * @throws SocialAuthException
+     */
+    public static Response doHttpRequest(final String urlStr,
+                                         final String requestMethod, final Map<String, String> params,
+                                         final Map<String, String> header, final InputStream inputStream,
+                                         final String fileName, final String fileParamName,
+                                         final OAuthConfig config) throws SocialAuthException {
+        return doHttpRequest(getClient(config), config, urlStr, requestMethod,
+                params, header, inputStream, fileName, fileParamName);
+    }
 
-            conn.setInstanceFollowRedirects(true);
-            if (timeoutValue > 0) {
-                LOG.debug("Setting connection timeout : " + timeoutValue);
-                conn.setConnectTimeout(timeoutValue);
-            }
-            if (requestMethod != null) {
-                conn.setRequestMethod(requestMethod);
-            }
-            if (header != null) {
-                for (String key : header.keySet()) {
-                    conn.setRequestProperty(key, header.get(key));
-                }
-            }
+    static Response doHttpRequest(final HttpClient client,
+                                  final OAuthConfig config, final String urlStr,
+                                  final String requestMethod, final Map<String, String> params,
+                                  final Map<String, String> header, final InputStream inputStream,
+                                  final String fileName, final String fileParamName)
+            throws SocialAuthException {
+        OAuthConfig previousConfig = REQUEST_CONFIG.get();
+        HttpClient previousClient = REQUEST_CLIENT.get();
+        set(REQUEST_CONFIG, config);
+        set(REQUEST_CLIENT, client);
+        try {
+            return getTransport(client).doHttpRequest(urlStr, requestMethod,
+                    params, header, inputStream, fileName, fileParamName);
+        } finally {
+            set(REQUEST_CONFIG, previousConfig);
+            set(REQUEST_CLIENT, previousClient);
+        }
+    }
 
-            // If use POST or PUT must use this
-            OutputStream os = null;
-            if (inputStream != null) {
-                if (requestMethod != null
-                        && !MethodType.GET.toString().equals(requestMethod)
-                        && !MethodType.DELETE.toString().equals(requestMethod)) {
-                    LOG.debug(requestMethod + " request");
-                    String boundary = "----Socialauth-posting"
-                            + System.currentTimeMillis();
-                    conn.setRequestProperty("Content-Type",
-                            "multipart/form-data; boundary=" + boundary);
-                    boundary = "--" + boundary;
-
-                    os = conn.getOutputStream();
-                    DataOutputStream out = new DataOutputStream(os);
-                    write(out, boundary + "\r\n");
-
-                    if (fileParamName != null) {
-                        write(out, "Content-Disposition: form-data; name=\""
-                                + fileParamName + "\"; filename=\"" + fileName
-                                + "\"\r\n");
-                    } else {
-                        write(out,
-                                "Content-Disposition: form-data;  filename=\""
-                                        + fileName + "\"\r\n");
-                    }
-                    write(out, "Content-Type: " + "multipart/form-data"
-                            + "\r\n\r\n");
-                    int b;
-                    while ((b = inputStream.read()) != -1) {
-                        out.write(b);
-                    }
-                    // out.write(imageFile);
-                    write(out, "\r\n");
-
-                    Iterator<Map.Entry<String, String>> entries = params
-                            .entrySet().iterator();
-                    while (entries.hasNext()) {
-                        Map.Entry<String, String> entry = entries.next();
-                        write(out, boundary + "\r\n");
-                        write(out, "Content-Disposition: form-data; name=\""
-                                + entry.getKey() + "\"\r\n\r\n");
-                        // write(out,
-                        // "Content-Type: text/plain;charset=UTF-8 \r\n\r\n");
-                        LOG.debug(entry.getValue());
-                        out.write(entry.getValue().getBytes("UTF-8"));
-                        write(out, "\r\n");
-                    }
+    private static HttpClient getClient(final OAuthConfig config) {
+        if (config != null && config.getHttpClient() != null) {
+            return config.getHttpClient();
+        }
+        return defaultClient;
+    }
 
-                    write(out, boundary + "--\r\n");
-                    write(out, "\r\n");
-                }
-            }
-            conn.connect();
-        } catch (Exception e) {
-            throw new SocialAuthException(e);
+    private static HttpTransport getTransport(final HttpClient client) {
+        if (client != null && client.getTransport() != null) {
+            return client.getTransport();
         }
-        return new Response(conn);
+        return transport;
+    }
 
+    private static <T> void set(final ThreadLocal<T> local, final T value) {
+        if (value == null) {
+            local.remove();
+        } else {
+            local.set(value);
+        }
     }
 
     /**
      * Generates a query string from given Map while sorting the parameters in
-     * the canonical order as required by oAuth before signing
+     * the canonical order as required by oAuth before signing. Values are
+     * percent encoded, names are used as they are. Requests are signed with
+     * {@link NormalizedParameters}, which encodes names too.
      *
      * @param params Parameters Map to generate query string
      * @return String
@@ -340,46 +321,16 @@ public class HttpUtil {
         return s.toString();
     }
 
+    /**
+     * Percent encodes the given value as required by OAuth (RFC 3986)
+     *
+     * @param value the value to encode
+     * @return encoded string, empty if value is null
+     * @throws Exception
+     */
     public static String encodeURIComponent(final String value)
             throws Exception {
-        if (value == null) {
-            return "";
-        }
-
-        try {
-            return URLEncoder.encode(value, "utf-8")
-                    // OAuth encodes some characters differently:
-                    .replace("+", "%20").replace("*", "%2A")
-                    .replace("%7E", "~");
-            // This could be done faster with more hand-crafted code.
-        } catch (UnsupportedEncodingException wow) {
-            throw new SocialAuthException(wow.getMessage(), wow);
-        }
-    }
-
-	/*
-     * public static String encodeURIComponent(final String input) { if (input
-	 * == null || input.trim().length() == 0) { return input; }
-	 * 
-	 * int l = input.length(); StringBuilder o = new StringBuilder(l * 3); try {
-	 * for (int i = 0; i < l; i++) { String e = input.substring(i, i + 1); if
-	 * (ALLOWED_CHARS.indexOf(e) == -1) { byte[] b = e.getBytes("utf-8");
-	 * o.append(getHex(b)); continue; } o.append(e); } return o.toString(); }
-	 * catch (UnsupportedEncodingException e) { e.printStackTrace(); } return
-	 * input; }
-	 */
-
-    private static String getHex(final byte buf[]) {
-        StringBuilder o = new StringBuilder(buf.length * 3);
-        for (int i = 0; i < buf.length; i++) {
-            int n = buf[i] & 0xff;
-            o.append("%");
-            if (n < 0x10) {
-                o.append("0");
-            }
-            o.append(Long.toString(n, 16).toUpperCase());
-        }
-        return o.toString();
+        return PercentCodec.encode(value);
     }
 
     /**
@@ -389,65 +340,13 @@ public class HttpUtil {
      * @return decoded string
      */
     public static String decodeURIComponent(final String encodedURI) {
-        char actualChar;
-
-        StringBuffer buffer = new StringBuffer();
-
-        int bytePattern, sumb = 0;
-
-        for (int i = 0, more = -1; i < encodedURI.length(); i++) {
-            actualChar = encodedURI.charAt(i);
-
-            switch (actualChar) {
-                case '%': {
-                    actualChar = encodedURI.charAt(++i);
-                    int hb = (Character.isDigit(actualChar) ? actualChar - '0'
-                            : 10 + Character.toLowerCase(actualChar) - 'a') & 0xF;
-                    actualChar = encodedURI.charAt(++i);
-                    int lb = (Character.isDigit(actualChar) ? actualChar - '0'
-                            : 10 + Character.toLowerCase(actualChar) - 'a') & 0xF;
-                    bytePattern = (hb << 4) | lb;
-                    break;
-                }
-                case '+': {
-                    bytePattern = ' ';
-                    break;
-                }
-                default: {
-                    bytePattern = actualChar;
-                }
-            }
-
-            if ((bytePattern & 0xc0) == 0x80) { // 10xxxxxx
-                sumb = (sumb << 6) | (bytePattern & 0x3f);
-                if (--more == 0) {
-                    buffer.append((char) sumb);
-                }
-            } else if ((bytePattern & 0x80) == 0x00) { // 0xxxxxxx
-                buffer.append((char) bytePattern);
-            } else if ((bytePattern & 0xe0) == 0xc0) { // 110xxxxx
-                sumb = bytePattern & 0x1f;
-                more = 1;
-            } else if ((bytePattern & 0xf0) == 0xe0) { // 1110xxxx
-                sumb = bytePattern & 0x0f;
-                more = 2;
-            } else if ((bytePattern & 0xf8) == 0xf0) { // 11110xxx
-                sumb = bytePattern & 0x07;
-                more = 3;
-            } else if ((bytePattern & 0xfc) == 0xf8) { // 111110xx
-                sumb = bytePattern & 0x03;
-                more = 4;
-            } else { // 1111110x
-                sumb = bytePattern & 0x01;
-                more = 5;
-            }
-        }
-        return buffer.toString();
+        return PercentCodec.decode(encodedURI);
     }
 
     /**
-     * Sets the proxy host and port. This will be implicitly called if
-     * "proxy.host" and "proxy.port" properties are given in properties file
+     * Sets the proxy host and port used for requests which are not made
+     * through an {@link HttpClient}. The "proxy.host" and "proxy.port"
+     * properties are applied to the client of SocialAuthConfig instead.
      *
      * @param host proxy host
      * @param port proxy port
@@ -464,8 +363,9 @@ public class HttpUtil {
     }
 
     /**
-     * Sets the connection time out. This will be implicitly called if
-     * "http.connectionTimeOut" property is given in properties file
+     * Sets the connection time out used for requests which are not made
+     * through an {@link HttpClient}. The "http.connectionTimeOut" property is
+     * applied to the client of SocialAuthConfig instead.
      *
      * @param timeout httpconnection timeout value
      */
@@ -473,6 +373,137 @@ public class HttpUtil {
         timeoutValue = timeout;
     }
 
+    /**
+     * Sets the read timeout used for requests which are not made through an
+     * {@link HttpClient}. The "http.readTimeOut" property is applied to the
+     * client of SocialAuthConfig instead.
+     *
+     * @param timeout httpconnection read timeout value
+     */
+    public static void setReadTimeout(final int timeout) {
+        readTimeoutValue = timeout;
+    }
+
+    /**
+     * Sets the transport which is used to make HTTP requests when the
+     * {@link HttpClient} of the request has no transport of its own. The
+     * "http.transport" property is applied to the client of SocialAuthConfig
+     * instead.
+     *
+     * @param httpTransport the transport to use
+     */
+    public static void setHttpTransport(final HttpTransport httpTransport) {
+        if (httpTransport != null) {
+            LOG.debug("Setting HTTP transport : "
+                    + httpTransport.getClass().getName());
+            transport = httpTransport;
+        }
+    }
+
+    /**
+     * Sets the client used for requests which do not come with an
+     * {@link OAuthConfig} carrying a client of its own, e.g. those made
+     * through the overloads without a configuration. SocialAuthConfig sets
+     * its client when it is loaded, so such requests keep using the
+     * configured proxy, timeouts and transport; when several configurations
+     * are loaded, the last one is used.
+     *
+     * @param client the default client, null to use the static settings of
+     *               this class
+     */
+    public static void setDefaultHttpClient(final HttpClient client) {
+        defaultClient = client;
+    }
+
+    /**
+     * Retrieves the client used for requests which do not come with a client
+     * of their own
+     *
+     * @return the default client, null if none is set
+     */
+    public static HttpClient getDefaultHttpClient() {
+        return defaultClient;
+    }
+
+    /**
+     * Retrieves the transport which is used for requests whose client has no
+     * transport of its own
+     *
+     * @return the HTTP transport
+     */
+    public static HttpTransport getHttpTransport() {
+        return transport;
+    }
+
+    static Proxy getProxy() {
+        HttpClient client = REQUEST_CLIENT.get();
+        if (client != null && client.getProxy() != null) {
+            return client.getProxy();
+        }
+        return proxyObj;
+    }
+
+    static int getConnectionTimeout() {
+        OAuthConfig config = REQUEST_CONFIG.get();
+        if (config != null && config.getConnectionTimeout() > 0) {
+            return config.getConnectionTimeout();
+        }
+        HttpClient client = REQUEST_CLIENT.get();
+        if (client != null && client.getConnectionTimeout() > 0) {
+            return client.getConnectionTimeout();
+        }
+        return timeoutValue;
+    }
+
+    static HttpClient getRequestClient() {
+        return REQUEST_CLIENT.get();
+    }
+
+    static OAuthConfig getRequestConfig() {
+        return REQUEST_CONFIG.get();
+    }
+
+    /**
+     * Finds the access token of a request in the Authorization header or the
+     * query string.
+     *
+     * @param urlStr the request URL
+     * @param header the request headers, may be null
+     * @return the access token or null if the request carries none
+     */
+    static String getAccessToken(final String urlStr,
+                                 final Map<String, String> header) {
+        String token = null;
+        String auth = header == null ? null : header.get("Authorization");
+        if (auth != null) {
+            Matcher matcher = OAUTH_TOKEN.matcher(auth);
+            if (matcher.find()) {
+                token = matcher.group(1);
+            } else if (auth.startsWith("Bearer ")) {
+                token = auth.substring(7).trim();
+            }
+        }
+        if (token == null) {
+            Matcher matcher = QUERY_TOKEN.matcher(urlStr);
+            if (matcher.find()) {
+                token = matcher.group(1);
+            }
+        }
+        return token == null || token.length() == 0 ? null : token;
+    }
+
+    static int getReadTimeout() {
+        OAuthConfig config = REQUEST_CONFIG.get();
+        if (config != null && config.getReadTimeout() > 0) {
+            return config.getReadTimeout();
+        }
+        HttpClient client = REQUEST_CLIENT.get();
+        if (client != null && client.getReadTimeout() > 0) {
+            return client.getReadTimeout();
+        }
+        return readTimeoutValue;
+    }
+
     public static void write(final DataOutputStream out, final String outStr)
             throws IOException {
         out.writeBytes(outStr);
@@ -0,0 +1,367 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Extracts a few scalar fields from a JSON document while it is read,
+ * without building a {@link org.json.JSONObject} tree. Fields are addressed
+ * by dot separated paths of member names and array indexes, e.g.
+ * <code>location.name</code> or <code>items.0.user_id</code>. Strings are
+ * returned unescaped, numbers and booleans as written in the document;
+ * <code>null</code> values, objects and arrays are not returned. Members
+ * which do not lead to a requested field are skipped without being decoded,
+ * and reading stops as soon as every field has been found.
+ * <p>
+ * An extractor is immutable and can be shared between threads.
+ *
+ * @author tarunn@brickred.com
+ */
+public final class JSONFieldExtractor {
+
+    private static final int MAX_DEPTH = 512;
+
+    private final String[] paths;
+    private final Map<String, Integer> slots;
+    private final Set<String> prefixes;
+
+    /**
+     * Creates an extractor for the given paths
+     *
+     * @param paths paths of the fields to extract
+     */
+    public JSONFieldExtractor(final String... paths) {
+        this.paths = Arrays.copyOf(paths, paths.length);
+        slots = new HashMap<String, Integer>();
+        prefixes = new HashSet<String>();
+        for (int i = 0; i < paths.length; i++) {
+            slots.put(paths[i], Integer.valueOf(i));
+            int dot = paths[i].indexOf('.');
+            while (dot > 0) {
+                prefixes.add(paths[i].substring(0, dot));
+                dot = paths[i].indexOf('.', dot + 1);
+            }
+        }
+    }
+
+    /**
+     * Extracts the fields from the given JSON string
+     *
+     * @param json JSON string
+     * @return map of path and value of the fields found
+     * @throws JSONException if the document is not valid JSON
+     */
+    public Map<String, String> extract(final String json)
+            throws JSONException {
+        return extract(new StringReader(json));
+    }
+
+    /**
+     * Extracts the fields from the given reader
+     *
+     * @param in JSON reader, it is not closed
+     * @return map of path and value of the fields found
+     * @throws JSONException if the document is not valid JSON or can not be
+     *                       read
+     */
+    public Map<String, String> extract(final Reader in) throws JSONException {
+        Parser parser = new Parser(in);
+        try {
+            parser.readValue("", true, 0);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (int i = 0; i < paths.length; i++) {
+            if (parser.values[i] != null) {
+                result.put(paths[i], parser.values[i]);
+            }
+        }
+        return result;
+    }
+
+    private final class Parser {
+
+        private final Reader in;
+        private final char[] buf = new char[1024];
+        private final String[] values = new String[paths.length];
+        private final StringBuilder sb = new StringBuilder();
+        private int pos;
+        private int len;
+        private long offset;
+        private int found;
+
+        Parser(final Reader in) {
+            this.in = in;
+        }
+
+        private int next() throws IOException {
+            if (pos == len) {
+                offset += len;
+                len = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (len <= 0) {
+                    len = 0;
+                    return -1;
+                }
+            }
+            return buf[pos++];
+        }
+
+        private void back() {
+            pos--;
+        }
+
+        private int nextClean() throws IOException {
+            int c = next();
+            while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                c = next();
+            }
+            return c;
+        }
+
+        private JSONException error(final String message) {
+            return new JSONException(message + " at character "
+                    + (offset + pos));
+        }
+
+        private boolean isDone() {
+            return found == paths.length;
+        }
+
+        private void record(final String path, final String value) {
+            Integer slot = slots.get(path);
+            if (slot != null && values[slot.intValue()] == null) {
+                values[slot.intValue()] = value;
+                found++;
+            }
+        }
+
+        private boolean isTracked(final String path) {
+            return slots.containsKey(path) || prefixes.contains(path);
+        }
+
+        void readValue(final String path, final boolean track,
+                       final int depth) throws IOException, JSONException {
+            if (depth > MAX_DEPTH) {
+                throw error("JSON nesting is too deep");
+            }
+            int c = nextClean();
+            switch (c) {
+                case '{':
+                    readObject(path, track, depth);
+                    break;
+                case '[':
+                    readArray(path, track, depth);
+                    break;
+                case '"':
+                    if (track) {
+                        record(path, readString());
+                    } else {
+                        skipString();
+                    }
+                    break;
+                case -1:
+                    throw error("Unexpected end of JSON");
+                default:
+                    back();
+                    String literal = readLiteral();
+                    if (track && !"null".equals(literal)) {
+                        record(path, literal);
+                    }
+            }
+        }
+
+        private void readObject(final String path, final boolean track,
+                                final int depth) throws IOException, JSONException {
+            int c = nextClean();
+            if (c == '}') {
+                return;
+            }
+            while (true) {
+                if (c != '"') {
+                    throw error("A JSONObject text must have a string key");
+                }
+                String child = null;
+                if (track) {
+                    String key = readString();
+                    child = path.length() == 0 ? key : path + '.' + key;
+                } else {
+                    skipString();
+                }
+                if (nextClean() != ':') {
+                    throw error("Expected a ':' after a key");
+                }
+                readValue(child, track && isTracked(child), depth + 1);
+                if (isDone()) {
+                    return;
+                }
+                c = nextClean();
+                if (c == '}') {
+                    return;
+                }
+                if (c != ',') {
+                    throw error("Expected a ',' or '}'");
+                }
+                c = nextClean();
+            }
+        }
+
+        private void readArray(final String path, final boolean track,
+                               final int depth) throws IOException, JSONException {
+            int c = nextClean();
+            if (c == ']') {
+                return;
+            }
+            if (c == -1) {
+                throw error("Unexpected end of JSON");
+            }
+            back();
+            int index = 0;
+            while (true) {
+                String child = null;
+                if (track) {
+                    child = path.length() == 0 ? String.valueOf(index) : path
+                            + '.' + index;
+                }
+                readValue(child, track && isTracked(child), depth + 1);
+                if (isDone()) {
+                    return;
+                }
+                index++;
+                c = nextClean();
+                if (c == ']') {
+                    return;
+                }
+                if (c != ',') {
+                    throw error("Expected a ',' or ']'");
+                }
+            }
+        }
+
+        private String readString() throws IOException, JSONException {
+            sb.setLength(0);
+            while (true) {
+                int c = next();
+                switch (c) {
+                    case -1:
+                    case '\n':
+                    case '\r':
+                        throw error("Unterminated string");
+                    case '"':
+                        return sb.toString();
+                    case '\\':
+                        c = next();
+                        switch (c) {
+                            case 'b':
+                                sb.append('\b');
+                                break;
+                            case 't':
+                                sb.append('\t');
+                                break;
+                            case 'n':
+                                sb.append('\n');
+                                break;
+                            case 'f':
+                                sb.append('\f');
+                                break;
+                            case 'r':
+                                sb.append('\r');
+                                break;
+                            case 'u':
+                                sb.append(readUnicode());
+                                break;
+                            case '"':
+                            case '\'':
+                            case '\\':
+                            case '/':
+                                sb.append((char) c);
+                                break;
+                            default:
+                                throw error("Illegal escape");
+                        }
+                        break;
+                    default:
+                        sb.append((char) c);
+                }
+            }
+        }
+
+        private char readUnicode() throws IOException, JSONException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(next(), 16);
+                if (digit < 0) {
+                    throw error("Illegal escape");
+                }
+                value = (value << 4) | digit;
+            }
+            return (char) value;
+        }
+
+        private void skipString() throws IOException, JSONException {
+            while (true) {
+                int c = next();
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\') {
+                    c = next();
+                }
+                if (c == -1 || c == '\n' || c == '\r') {
+                    throw error("Unterminated string");
+                }
+            }
+        }
+
+        private String readLiteral() throws IOException, JSONException {
+            sb.setLength(0);
+            int c = next();
+            while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+                sb.append((char) c);
+                c = next();
+            }
+            if (c != -1) {
+                back();
+            }
+            String literal = sb.toString().trim();
+            if (literal.length() == 0) {
+                throw error("Missing value");
+            }
+            return literal;
+        }
+    }
+}
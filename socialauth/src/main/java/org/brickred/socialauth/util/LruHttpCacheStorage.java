@@ -0,0 +1,116 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In memory {@link HttpCacheStorage} which evicts the least recently used
+ * responses once the total size of the stored responses exceeds the limit.
+ *
+ * @author tarunn@brickred.com
+ */
+public class LruHttpCacheStorage implements HttpCacheStorage {
+
+    /**
+     * Default maximum total size in bytes
+     */
+    public static final long DEFAULT_MAX_SIZE = 10 * 1024 * 1024;
+
+    private final long maxSize;
+    private final LinkedHashMap<String, CachedResponse> entries;
+    private long size;
+
+    /**
+     * @param maxSize maximum total size of the stored responses in bytes
+     */
+    public LruHttpCacheStorage(final long maxSize) {
+        this.maxSize = maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+        entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true);
+    }
+
+    public LruHttpCacheStorage() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    @Override
+    public synchronized CachedResponse get(final String key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public synchronized void put(final String key,
+                                 final CachedResponse response) {
+        if (response.getSize() > maxSize) {
+            remove(key);
+            return;
+        }
+        CachedResponse old = entries.put(key, response);
+        if (old != null) {
+            size -= old.getSize();
+        }
+        size += response.getSize();
+        Iterator<Map.Entry<String, CachedResponse>> it = entries.entrySet()
+                .iterator();
+        while (size > maxSize && it.hasNext()) {
+            size -= it.next().getValue().getSize();
+            it.remove();
+        }
+    }
+
+    @Override
+    public synchronized void remove(final String key) {
+        CachedResponse old = entries.remove(key);
+        if (old != null) {
+            size -= old.getSize();
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Retrieves the total size of the stored responses in bytes
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of stored responses
+     *
+     * @return number of responses
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+}
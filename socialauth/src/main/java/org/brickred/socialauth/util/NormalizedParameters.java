@@ -0,0 +1,217 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import java.util.Map;
+
+/**
+ * Builds the normalized request parameter string used by OAuth 1.0 signatures
+ * and query strings. Names and values are percent encoded once, when they are
+ * added, and pairs are kept sorted by encoded name and then encoded value, so
+ * no intermediate "name=value" strings are created. Parameters with a null or
+ * empty value are left out.
+ *
+ * @author tarunn@brickred.com
+ */
+public class NormalizedParameters {
+
+    private String[] names;
+    private String[] values;
+    private int size;
+    private int length;
+
+    public NormalizedParameters() {
+        this(16);
+    }
+
+    /**
+     * @param capacity expected number of parameters
+     */
+    public NormalizedParameters(final int capacity) {
+        names = new String[Math.max(capacity, 4)];
+        values = new String[names.length];
+    }
+
+    /**
+     * Creates the normalized parameters of the given map
+     *
+     * @param params parameters map
+     * @return the normalized parameters
+     */
+    public static NormalizedParameters of(final Map<String, String> params) {
+        NormalizedParameters np = new NormalizedParameters(params.size() + 4);
+        np.addAll(params);
+        return np;
+    }
+
+    /**
+     * Adds a parameter
+     *
+     * @param name  parameter name
+     * @param value parameter value, ignored if null or empty
+     * @return this object
+     */
+    public NormalizedParameters add(final String name, final String value) {
+        if (value != null && value.length() > 0) {
+            insert(PercentCodec.encode(name), PercentCodec.encode(value));
+        }
+        return this;
+    }
+
+    /**
+     * Adds all parameters of the given map
+     *
+     * @param params parameters map, may be null
+     * @return this object
+     */
+    public NormalizedParameters addAll(final Map<String, String> params) {
+        if (params != null) {
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                add(entry.getKey(), entry.getValue());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds the parameters of a query string. Components which are already
+     * encoded in normalized form are used as they are.
+     *
+     * @param query query string without "?"
+     * @return this object
+     */
+    public NormalizedParameters addQuery(final String query) {
+        int start = 0;
+        int len = query.length();
+        while (start < len) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = len;
+            }
+            int eq = query.indexOf('=', start);
+            if (eq < 0 || eq > end) {
+                eq = end;
+            }
+            if (eq > start && end > eq + 1) {
+                insert(normalize(query.substring(start, eq)),
+                        normalize(query.substring(eq + 1, end)));
+            }
+            start = end + 1;
+        }
+        return this;
+    }
+
+    /**
+     * Retrieves the number of parameters
+     *
+     * @return number of parameters
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends the normalized parameter string, "name=value" pairs joined with
+     * "&amp;", to the given builder
+     *
+     * @param sb the builder to append to
+     * @return the given builder
+     */
+    public StringBuilder appendTo(final StringBuilder sb) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append('&');
+            }
+            sb.append(names[i]).append('=').append(values[i]);
+        }
+        return sb;
+    }
+
+    /**
+     * Retrieves the length of the normalized parameter string
+     *
+     * @return length in chars
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Retrieves the encoded name of the parameter at given position
+     *
+     * @param index position in sort order
+     * @return encoded name
+     */
+    String getName(final int index) {
+        return names[index];
+    }
+
+    /**
+     * Retrieves the encoded value of the parameter at given position
+     *
+     * @param index position in sort order
+     * @return encoded value
+     */
+    String getValue(final int index) {
+        return values[index];
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(length)).toString();
+    }
+
+    private static String normalize(final String component) {
+        return PercentCodec.encode(PercentCodec.decode(component));
+    }
+
+    // insertion keeps pairs sorted, requests have few parameters
+    private void insert(final String name, final String value) {
+        if (size == names.length) {
+            String[] n = new String[size * 2];
+            String[] v = new String[size * 2];
+            System.arraycopy(names, 0, n, 0, size);
+            System.arraycopy(values, 0, v, 0, size);
+            names = n;
+            values = v;
+        }
+        int pos = size;
+        while (pos > 0 && compare(names[pos - 1], values[pos - 1], name, value) > 0) {
+            names[pos] = names[pos - 1];
+            values[pos] = values[pos - 1];
+            pos--;
+        }
+        names[pos] = name;
+        values[pos] = value;
+        size++;
+        length += name.length() + value.length() + (size > 1 ? 2 : 1);
+    }
+
+    private static int compare(final String name1, final String value1,
+                               final String name2, final String value2) {
+        int c = name1.compareTo(name2);
+        return c != 0 ? c : value1.compareTo(value2);
+    }
+}
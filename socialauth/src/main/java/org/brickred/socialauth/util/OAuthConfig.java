@@ -27,6 +27,7 @@ package org.brickred.socialauth.util;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * It contains the configuration of application like consumer key and consumer
@@ -51,6 +52,12 @@ public class OAuthConfig implements Serializable {
     private List<String> pluginsScopes;
     private boolean saveRawResponse;
     private Map<String, String> customProperties;
+    private int connectionTimeout;
+    private int readTimeout;
+    private transient HttpClient httpClient;
+    private transient Executor executor;
+    private transient NonceGenerator nonceGenerator;
+    private transient OAuthSigner signer;
 
     /**
      * @param consumerKey     Application consumer key
@@ -302,6 +309,149 @@ public class OAuthConfig implements Serializable {
         this.customProperties = customProperties;
     }
 
+    /**
+     * Retrieves the connection timeout for the provider
+     *
+     * @return the connection timeout in milliseconds, 0 if not configured
+     */
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    /**
+     * Updates the connection timeout for the provider. It overrides the
+     * "http.connectionTimeOut" property for requests made to this provider.
+     *
+     * @param connectionTimeout the connection timeout in milliseconds
+     */
+    public void setConnectionTimeout(final int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    /**
+     * Retrieves the read timeout for the provider
+     *
+     * @return the read timeout in milliseconds, 0 if not configured
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Updates the read timeout for the provider. It overrides the
+     * "http.readTimeOut" property for requests made to this provider.
+     *
+     * @param readTimeout the read timeout in milliseconds
+     */
+    public void setReadTimeout(final int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Retrieves the HTTP client used for requests made to the provider
+     *
+     * @return the HTTP client, null if the static HttpUtil settings are used
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Updates the HTTP client used for requests made to the provider. It is
+     * set by SocialAuthConfig to the client of the application configuration.
+     * The client is not serialized; SocialAuthConfig sets it again when it is
+     * deserialized with this configuration.
+     *
+     * @param httpClient the HTTP client
+     */
+    public void setHttpClient(final HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Retrieves the executor on which the provider runs requests it makes
+     * concurrently
+     *
+     * @return the executor, null if the requests are made one after another
+     * on the calling thread
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Updates the executor on which the provider runs requests it makes
+     * concurrently. It is set by SocialAuthConfig to its executor and is not
+     * serialized, like the HTTP client.
+     *
+     * @param executor the executor
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Retrieves the generator of OAuth 1.0 request nonces
+     *
+     * @return the nonce generator, the default one if not set
+     */
+    public NonceGenerator getNonceGenerator() {
+        if (nonceGenerator == null) {
+            return DefaultNonceGenerator.getInstance();
+        }
+        return nonceGenerator;
+    }
+
+    /**
+     * Updates the generator of OAuth 1.0 request nonces
+     *
+     * @param nonceGenerator the nonce generator
+     */
+    public void setNonceGenerator(final NonceGenerator nonceGenerator) {
+        this.nonceGenerator = nonceGenerator;
+    }
+
+    /**
+     * Retrieves the signer of OAuth 1.0 requests
+     *
+     * @return the signer set for the provider, or the built in signer of the
+     * signature method. Null if the signature method needs a key which is
+     * not configured.
+     */
+    public OAuthSigner getSigner() {
+        if (signer == null) {
+            return getDefaultSigner(_signatureMethod);
+        }
+        return signer;
+    }
+
+    /**
+     * Updates the signer of OAuth 1.0 requests. It is set by SocialAuthConfig
+     * for signature methods which need key material, e.g. RSA-SHA1.
+     *
+     * @param signer the signer
+     */
+    public void setSigner(final OAuthSigner signer) {
+        this.signer = signer;
+    }
+
+    /**
+     * Retrieves the built in signer of the given signature method
+     *
+     * @param signatureMethod the signature method
+     * @return the signer, or null if the method is unknown or needs a key
+     */
+    static OAuthSigner getDefaultSigner(final String signatureMethod) {
+        if (Constants.HMACSHA1_SIGNATURE.equals(signatureMethod)) {
+            return HmacSigner.HMAC_SHA1;
+        } else if (Constants.HMACSHA256_SIGNATURE.equals(signatureMethod)) {
+            return HmacSigner.HMAC_SHA256;
+        } else if (Constants.PLAINTEXT_SIGNATURE.equals(signatureMethod)) {
+            return PlaintextSigner.INSTANCE;
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder();
@@ -320,6 +470,8 @@ public class OAuthConfig implements Serializable {
         result.append(" registeredPlugins: " + registeredPlugins + NEW_LINE);
         result.append(" pluginsScopes: " + pluginsScopes + NEW_LINE);
         result.append(" saveRawResponse: " + saveRawResponse + NEW_LINE);
+        result.append(" connectionTimeout: " + connectionTimeout + NEW_LINE);
+        result.append(" readTimeout: " + readTimeout + NEW_LINE);
         if (customProperties != null) {
             result.append(" customProperties: " + customProperties.toString()
                     + NEW_LINE);
@@ -30,11 +30,7 @@ import org.brickred.socialauth.exception.SignatureException;
 import org.brickred.socialauth.exception.SocialAuthConfigurationException;
 import org.brickred.socialauth.exception.SocialAuthException;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
@@ -67,7 +63,8 @@ public class OAuthConsumer implements Serializable, Constants {
      * signing algorithms.The request parameters are collected, sorted and
      * concatenated into a normalized string.
      *
-     * @param signatureType Type of signature. It can be HMAC-SHA1.
+     * @param signatureType Type of signature. It can be HMAC-SHA1,
+     *                      HMAC-SHA256, RSA-SHA1 or PLAINTEXT.
      * @param method        Method type can be GET, POST or PUT
      * @param url           Requested URL for which generating signature
      * @param args          Required arguments to generate signature
@@ -84,19 +81,43 @@ public class OAuthConsumer implements Serializable, Constants {
         LOG.debug("Given Method Type : " + method);
         LOG.debug("Given URL : " + url);
         LOG.debug("Given Parameters : " + args);
-        if (HMACSHA1_SIGNATURE.equals(signatureType)) {
-            return getHMACSHA1(method, url, args, token);
-        } else {
-            throw new SignatureException("Signature type not implemented :"
-                    + signatureType);
-        }
+        return generateSignature(signatureType, method, url,
+                NormalizedParameters.of(args), token);
     }
 
-    private String getHMACSHA1(final String method, final String url,
-                               final Map<String, String> args, final AccessGrant token)
+    /**
+     * It returns a signature for signing OAuth request from the normalized
+     * request parameters.
+     *
+     * @param signatureType Type of signature. It can be HMAC-SHA1,
+     *                      HMAC-SHA256, RSA-SHA1 or PLAINTEXT.
+     * @param method        Method type can be GET, POST or PUT
+     * @param url           Requested URL for which generating signature
+     * @param params        Normalized parameters to generate signature
+     * @param token         Token Object
+     * @return The computed signature
+     * @throws Exception
+     */
+    public String generateSignature(final String signatureType,
+                                    final String method, final String url,
+                                    final NormalizedParameters params, final AccessGrant token)
             throws Exception {
-
-        if (config.get_consumerSecret().length() == 0) {
+        OAuthSigner signer = config.getSigner();
+        if (signer == null || !signer.getSignatureMethod().equals(signatureType)) {
+            signer = OAuthConfig.getDefaultSigner(signatureType);
+        }
+        if (signer == null) {
+            if (Constants.RSASHA1_SIGNATURE.equals(signatureType)) {
+                throw new SignatureException(
+                        "RSA-SHA1 signer of provider is not set, check its private key");
+            }
+            throw new SignatureException("Signature type not implemented :"
+                    + signatureType);
+        }
+        // RSA-SHA1 does not use the consumer secret
+        if (config.get_consumerSecret().length() == 0
+                && !Constants.RSASHA1_SIGNATURE.equals(signer
+                .getSignatureMethod())) {
             throw new SignatureException("Please check consumer secret");
         }
         boolean valid = MethodType.GET.toString().equals(method)
@@ -108,35 +129,9 @@ public class OAuthConsumer implements Serializable, Constants {
         if (url.length() == 0) {
             throw new SignatureException("Please check URL");
         }
-        String key = HttpUtil.encodeURIComponent(config.get_consumerSecret())
-                + "&";
-        if (token != null && token.getSecret() != null) {
-            key += HttpUtil.encodeURIComponent(token.getSecret());
-        }
-        try {
-            // get an hmac_sha1 key from the raw key bytes
-            SecretKeySpec signingKey = new SecretKeySpec(key.getBytes("UTF-8"),
-                    "HMAC-SHA1");
-
-            // get an hmac_sha1 Mac instance and initialize with the signing key
-            Mac mac = Mac.getInstance("HmacSHA1");
-            mac.init(signingKey);
-
-            String data = HttpUtil.encodeURIComponent(method) + "&"
-                    + HttpUtil.encodeURIComponent(url) + "&"
-                    + HttpUtil.encodeURIComponent(HttpUtil.buildParams(args));
-            LOG.debug("Signature data : " + data);
-            // compute the hmac on input data bytes
-            byte[] rawHmac = mac.doFinal(data.getBytes("UTF-8"));
-
-            // base64-encode the hmac
-            LOG.debug("Encoding raw HMAC to Base64");
-            String sig = Base64.encodeBytes(rawHmac);
-
-            return sig;
-        } catch (Exception e) {
-            throw new SignatureException("Unable to generate HMAC-SHA1", e);
-        }
+        LOG.debug("Signature params : " + params);
+        return signer.sign(method, url, params, config.get_consumerSecret(),
+                token == null ? null : token.getSecret());
     }
 
     /**
@@ -158,38 +153,40 @@ public class OAuthConsumer implements Serializable, Constants {
         // Changes for LinkedIn. We have to pass scope while fetching
         // RequestToken from LinkedIn
         String reqURL = reqTokenURL;
-        Map<String, String> params = new HashMap<String, String>();
+        String query = null;
         if (reqTokenURL.indexOf('?') > 0) {
             reqURL = reqTokenURL.substring(0, reqTokenURL.indexOf('?'));
-            String query = reqTokenURL.substring(reqTokenURL.indexOf('?') + 1,
+            query = reqTokenURL.substring(reqTokenURL.indexOf('?') + 1,
                     reqTokenURL.length());
-            String[] pairs = query.split("&");
-
-            for (String pair : pairs) {
-                String[] kv = pair.split("=");
-                if (kv.length == 2) {
-                    params.put(kv[0], kv[1]);
-                }
-            }
         }
 
+        Map<String, String> params = new HashMap<String, String>();
         params.put(OAUTH_CALLBACK, callbackURL);
         putOauthParams(params);
+        NormalizedParameters normalized = NormalizedParameters.of(params);
+        if (query != null) {
+            normalized.addQuery(query);
+        }
 
         String sig = generateSignature(config.get_signatureMethod(),
-                config.get_transportName(), reqURL, params, null);
+                config.get_transportName(), reqURL, normalized, null);
         LOG.debug(config.get_signatureMethod()
                 + " Signature for request token : " + sig);
         params.put(OAUTH_SIGNATURE, sig);
-        reqURL += "?" + HttpUtil.buildParams(params);
+        Map<String, String> wire = new HashMap<String, String>();
+        if (query != null) {
+            putQuery(wire, query);
+        }
+        wire.putAll(params);
+        reqURL += "?" + HttpUtil.buildParams(wire);
         LOG.debug("URL to get Request Token : " + reqURL);
 
         Response response = HttpUtil.doHttpRequest(reqURL,
-                config.get_transportName(), null, null);
+                config.get_transportName(), null, null, config);
 
         if (response.getStatus() == 200) {
             token = new AccessGrant();
-            parse(response.getInputStream(), token);
+            parse(response, token);
         } else {
             LOG.debug("Error while fetching Request Token");
             throw new SocialAuthConfigurationException(
@@ -227,9 +224,11 @@ public class OAuthConsumer implements Serializable, Constants {
         params.put(OAUTH_TOKEN, reqToken.getKey());
         putOauthParams(params);
 
+        NormalizedParameters normalized = NormalizedParameters.of(params);
+
         String reqURL = accessTokenURL;
         String sig = generateSignature(config.get_signatureMethod(),
-                config.get_transportName(), reqURL, params, reqToken);
+                config.get_transportName(), reqURL, normalized, reqToken);
         LOG.debug(config.get_signatureMethod()
                 + " Signature for access token : " + sig);
         params.put(OAUTH_SIGNATURE, sig);
@@ -243,7 +242,7 @@ public class OAuthConsumer implements Serializable, Constants {
         Response response = null;
         try {
             response = HttpUtil.doHttpRequest(reqURL,
-                    config.get_transportName(), body, null);
+                    config.get_transportName(), body, null, config);
         } catch (Exception e) {
             LOG.debug("Error while getting Access Token");
             throw new SocialAuthException("Error while getting Access Token", e);
@@ -251,7 +250,7 @@ public class OAuthConsumer implements Serializable, Constants {
 
         if (response.getStatus() == 200) {
             accessToken = new AccessGrant();
-            parse(response.getInputStream(), accessToken);
+            parse(response, accessToken);
         } else {
             throw new SocialAuthException(
                     "Unable to retrieve the access token. Status: "
@@ -347,33 +346,22 @@ public class OAuthConsumer implements Serializable, Constants {
                           final Map<String, String> headerParams, final String body,
                           final String methodName, final AccessGrant token,
                           final boolean isHeaderRequired) throws Exception {
-        Map<String, String> params;
-        if (paramsMap != null) {
-            params = paramsMap;
-        } else {
-            params = new HashMap<String, String>();
-        }
+        Map<String, String> params = new HashMap<String, String>();
         params.put(OAUTH_TOKEN, token.getKey());
         putOauthParams(params);
+        NormalizedParameters normalized = NormalizedParameters.of(params);
+        normalized.addAll(paramsMap);
         String url;
         int idx = reqURL.indexOf('?');
         if (idx != -1) {
-            String[] pairs = AMPERSAND.split(reqURL.substring(idx + 1));
-            for (String pair : pairs) {
-                int eq = pair.indexOf('=');
-                if (eq == -1) {
-                    params.put(pair, "");
-                } else {
-                    params.put(pair.substring(0, eq),
-                            HttpUtil.decodeURIComponent(pair.substring(eq + 1)));
-                }
-            }
+            // query components are normalized without decoding into a map
+            normalized.addQuery(reqURL.substring(idx + 1));
             url = reqURL.substring(0, idx);
         } else {
             url = reqURL;
         }
         String sig = generateSignature(config.get_signatureMethod(),
-                methodName, url, params, token);
+                methodName, url, normalized, token);
         params.put(OAUTH_SIGNATURE, sig);
         Map<String, String> headerMap = null;
         if (isHeaderRequired) {
@@ -387,26 +375,47 @@ public class OAuthConsumer implements Serializable, Constants {
             }
             url = reqURL;
         } else {
-            url += "?" + HttpUtil.buildParams(params);
+            Map<String, String> wire = new HashMap<String, String>();
+            if (paramsMap != null) {
+                wire.putAll(paramsMap);
+            }
+            if (idx != -1) {
+                putQuery(wire, reqURL.substring(idx + 1));
+            }
+            wire.putAll(params);
+            url += "?" + HttpUtil.buildParams(wire);
         }
-        return HttpUtil.doHttpRequest(url, methodName, body, headerMap);
+        return HttpUtil.doHttpRequest(url, methodName, body, headerMap,
+                config);
     }
 
-    private void parse(final InputStream in, final AccessGrant token)
+    // NormalizedParameters is only used for the signature base string; the
+    // query and body sent keep the format of HttpUtil.buildParams, where
+    // names are sent as they are, so values are decoded here to be encoded
+    // again
+    private static void putQuery(final Map<String, String> params,
+                                 final String query) {
+        for (String pair : AMPERSAND.split(query)) {
+            int eq = pair.indexOf('=');
+            if (eq == -1) {
+                params.put(pair, "");
+            } else {
+                params.put(pair.substring(0, eq),
+                        HttpUtil.decodeURIComponent(pair.substring(eq + 1)));
+            }
+        }
+    }
+
+    private void parse(final Response response, final AccessGrant token)
             throws Exception {
-        StringBuffer sb = new StringBuffer();
+        String body;
         try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    in, ENCODING));
-            String line = null;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
-            }
+            body = response.getResponseBodyAsString(ENCODING);
         } catch (Exception exc) {
             throw new SocialAuthException("Failed to parse response");
         }
 
-        String[] pairs = sb.toString().split("&");
+        String[] pairs = AMPERSAND.split(body);
         String key = null, secret = null;
         for (String pair : pairs) {
             int idx = pair.indexOf('=');
@@ -439,7 +448,7 @@ public class OAuthConsumer implements Serializable, Constants {
     public void putNonceAndTimestamp(final Map<String, String> params) {
         long ts = System.currentTimeMillis();
         params.put(OAUTH_TIMESTAMP, String.valueOf(ts / 1000));
-        params.put(OAUTH_NONCE, String.valueOf(ts));
+        params.put(OAUTH_NONCE, config.getNonceGenerator().generateNonce());
     }
 
     /**
@@ -588,6 +597,6 @@ public class OAuthConsumer implements Serializable, Constants {
             url += "?" + HttpUtil.buildParams(params);
         }
         return HttpUtil.doHttpRequest(reqURL, methodName, paramsMap, headerMap,
-                inputStream, fileName, fileParamName);
+                inputStream, fileName, fileParamName, config);
     }
 }
@@ -0,0 +1,59 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.brickred.socialauth.exception.SignatureException;
+
+/**
+ * Computes the signature of OAuth 1.0 requests for one signature method. The
+ * signer of a provider is selected by the "signature_method" property and
+ * key material is prepared once, when the signer is created. Implementations
+ * must be thread safe.
+ *
+ * @author tarunn@brickred.com
+ */
+public interface OAuthSigner {
+
+    /**
+     * Retrieves the signature method name sent as oauth_signature_method
+     *
+     * @return the signature method e.g. HMAC-SHA1
+     */
+    String getSignatureMethod();
+
+    /**
+     * Signs the given request
+     *
+     * @param method         the request method
+     * @param url            the request URL without query string
+     * @param params         the normalized request parameters
+     * @param consumerSecret the consumer secret
+     * @param tokenSecret    the token secret, may be null
+     * @return the signature, as it is sent in oauth_signature
+     * @throws SignatureException
+     */
+    String sign(String method, String url, NormalizedParameters params,
+                String consumerSecret, String tokenSecret) throws SignatureException;
+}
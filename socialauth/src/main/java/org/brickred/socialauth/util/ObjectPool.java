@@ -0,0 +1,78 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded pool of reusable objects, e.g. buffers, Mac or DocumentBuilder
+ * instances. Unlike a ThreadLocal cache it does not assume long lived
+ * threads: objects are shared by all threads, including virtual threads
+ * which run a single task, and at most <code>capacity</code> idle objects
+ * are kept. Callers take an object with {@link #poll()}, create a new one
+ * if the pool is empty and hand it back with {@link #release(Object)}.
+ *
+ * @param <T> type of the pooled objects
+ * @author tarunn@brickred.com
+ */
+final class ObjectPool<T> {
+
+    /**
+     * Default number of idle objects kept by a pool
+     */
+    static final int DEFAULT_CAPACITY = Math.max(4, Runtime.getRuntime()
+            .availableProcessors() * 2);
+
+    private final BlockingQueue<T> idle;
+
+    ObjectPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    ObjectPool(final int capacity) {
+        idle = new ArrayBlockingQueue<T>(capacity);
+    }
+
+    /**
+     * Takes an idle object
+     *
+     * @return the object or null if the pool is empty
+     */
+    T poll() {
+        return idle.poll();
+    }
+
+    /**
+     * Returns an object to the pool. It is dropped if the pool is full.
+     *
+     * @param object the object, can be null
+     */
+    void release(final T object) {
+        if (object != null) {
+            idle.offer(object);
+        }
+    }
+}
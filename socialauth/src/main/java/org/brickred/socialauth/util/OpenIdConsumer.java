@@ -88,7 +88,7 @@ public class OpenIdConsumer {
      * @throws Exception
      */
     public static String getAssociationURL(final String url) throws Exception {
-        String param = HttpUtil.buildParams(associationMap);
+        String param = NormalizedParameters.of(associationMap).toString();
         char separator = url.indexOf('?') == -1 ? '?' : '&';
         return url + separator + param;
     }
@@ -119,7 +119,7 @@ public class OpenIdConsumer {
         if (scope != null) {
             params.put("openid.ext2.scope", scope);
         }
-        String paramStr = HttpUtil.buildParams(params);
+        String paramStr = NormalizedParameters.of(params).toString();
         char separator = requestTokenUrl.indexOf('?') == -1 ? '?' : '&';
         String url = requestTokenUrl + separator + paramStr;
         LOG.debug("Request Token URL : " + url);
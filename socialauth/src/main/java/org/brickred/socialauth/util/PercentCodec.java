@@ -0,0 +1,234 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+/**
+ * Table driven percent encoding as specified by RFC 3986 and required by
+ * OAuth. Only ALPHA, DIGIT, "-", ".", "_" and "~" are left unencoded and other
+ * characters are encoded as upper case hex of their UTF-8 bytes. Strings which
+ * need no encoding or decoding are returned as they are.
+ *
+ * @author tarunn@brickred.com
+ */
+final class PercentCodec {
+
+    private static final boolean[] UNRESERVED = new boolean[128];
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final char REPLACEMENT = '\uFFFD';
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+        UNRESERVED['-'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['~'] = true;
+    }
+
+    private PercentCodec() {
+    }
+
+    /**
+     * Encodes the given value
+     *
+     * @param value the value to encode
+     * @return the encoded value, empty if value is null
+     */
+    static String encode(final String value) {
+        if (value == null) {
+            return "";
+        }
+        int start = firstReserved(value);
+        if (start == value.length()) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 16);
+        sb.append(value, 0, start);
+        encode(value, start, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the encoded value to the given builder
+     *
+     * @param value the value to encode, nothing is appended if null
+     * @param sb    the builder to append to
+     */
+    static void encode(final String value, final StringBuilder sb) {
+        if (value != null) {
+            encode(value, 0, sb);
+        }
+    }
+
+    /**
+     * Decodes the given value. "+" is decoded as space and malformed UTF-8
+     * sequences are replaced with U+FFFD.
+     *
+     * @param value the value to decode
+     * @return the decoded value
+     */
+    static String decode(final String value) {
+        int len = value.length();
+        int start = 0;
+        while (start < len) {
+            char c = value.charAt(start);
+            if (c == '%' || c == '+') {
+                break;
+            }
+            start++;
+        }
+        if (start == len) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(len);
+        sb.append(value, 0, start);
+        decode(value, start, sb);
+        return sb.toString();
+    }
+
+    private static int firstReserved(final String value) {
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c >= 128 || !UNRESERVED[c]) {
+                return i;
+            }
+        }
+        return len;
+    }
+
+    private static void encode(final String value, final int start,
+                               final StringBuilder sb) {
+        int len = value.length();
+        for (int i = start; i < len; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (UNRESERVED[c]) {
+                    sb.append(c);
+                } else {
+                    appendByte(sb, c);
+                }
+            } else if (c < 0x800) {
+                appendByte(sb, 0xC0 | (c >> 6));
+                appendByte(sb, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                appendByte(sb, 0xF0 | (cp >> 18));
+                appendByte(sb, 0x80 | ((cp >> 12) & 0x3F));
+                appendByte(sb, 0x80 | ((cp >> 6) & 0x3F));
+                appendByte(sb, 0x80 | (cp & 0x3F));
+            } else if (c >= Character.MIN_SURROGATE
+                    && c <= Character.MAX_SURROGATE) {
+                // unpaired surrogates are encoded as '?' like URLEncoder does
+                appendByte(sb, '?');
+            } else {
+                appendByte(sb, 0xE0 | (c >> 12));
+                appendByte(sb, 0x80 | ((c >> 6) & 0x3F));
+                appendByte(sb, 0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static void appendByte(final StringBuilder sb, final int b) {
+        sb.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+
+    private static void decode(final String value, final int start,
+                               final StringBuilder sb) {
+        int len = value.length();
+        int i = start;
+        while (i < len) {
+            char c = value.charAt(i);
+            if (c == '+') {
+                sb.append(' ');
+                i++;
+                continue;
+            }
+            int b = c == '%' ? hexByte(value, i) : -1;
+            if (b < 0) {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            i += 3;
+            if (b < 0x80) {
+                sb.append((char) b);
+                continue;
+            }
+            int more;
+            int cp;
+            if ((b & 0xE0) == 0xC0) {
+                more = 1;
+                cp = b & 0x1F;
+            } else if ((b & 0xF0) == 0xE0) {
+                more = 2;
+                cp = b & 0x0F;
+            } else if ((b & 0xF8) == 0xF0) {
+                more = 3;
+                cp = b & 0x07;
+            } else {
+                sb.append(REPLACEMENT);
+                continue;
+            }
+            int min = more == 1 ? 0x80 : more == 2 ? 0x800 : 0x10000;
+            for (; more > 0; more--) {
+                int next = hexByte(value, i);
+                if (next < 0 || (next & 0xC0) != 0x80) {
+                    break;
+                }
+                cp = (cp << 6) | (next & 0x3F);
+                i += 3;
+            }
+            if (more > 0 || cp < min || cp > Character.MAX_CODE_POINT
+                    || (cp >= Character.MIN_SURROGATE
+                    && cp <= Character.MAX_SURROGATE)) {
+                sb.append(REPLACEMENT);
+            } else {
+                sb.appendCodePoint(cp);
+            }
+        }
+    }
+
+    // byte value of the %XX sequence at index, or -1 if there is none
+    private static int hexByte(final String value, final int index) {
+        if (index + 2 >= value.length() || value.charAt(index) != '%') {
+            return -1;
+        }
+        int hi = Character.digit(value.charAt(index + 1), 16);
+        int lo = Character.digit(value.charAt(index + 2), 16);
+        if (hi < 0 || lo < 0) {
+            return -1;
+        }
+        return (hi << 4) | lo;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.brickred.socialauth.exception.SignatureException;
+
+/**
+ * PLAINTEXT signer. The signature is the encoded consumer secret and token
+ * secret, so it must only be used over HTTPS.
+ *
+ * @author tarunn@brickred.com
+ */
+public final class PlaintextSigner implements OAuthSigner {
+
+    /**
+     * PLAINTEXT signer
+     */
+    public static final PlaintextSigner INSTANCE = new PlaintextSigner();
+
+    private PlaintextSigner() {
+    }
+
+    @Override
+    public String getSignatureMethod() {
+        return Constants.PLAINTEXT_SIGNATURE;
+    }
+
+    @Override
+    public String sign(final String method, final String url,
+                       final NormalizedParameters params, final String consumerSecret,
+                       final String tokenSecret) throws SignatureException {
+        StringBuilder sb = new StringBuilder();
+        PercentCodec.encode(consumerSecret, sb);
+        sb.append('&');
+        PercentCodec.encode(tokenSecret, sb);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.brickred.socialauth.Profile;
+import org.json.JSONException;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Declares how the fields of a provider's JSON profile response are copied
+ * into a {@link Profile}. Each mapping has the form
+ * <code>"path -> property"</code>, e.g.
+ * <code>"location.name -> location"</code>, where the path is understood by
+ * {@link JSONFieldExtractor} and the property is a string property of
+ * {@link Profile}. A mapping without a property, e.g. <code>"birthday"</code>,
+ * only extracts the value so that the provider can convert it itself.
+ * <p>
+ * The mappings are compiled once, so a mapping is usually kept in a static
+ * field of the provider. It is immutable and can be shared between threads.
+ *
+ * @author tarunn@brickred.com
+ */
+public final class ProfileMapping {
+
+    private final JSONFieldExtractor extractor;
+    private final String[] paths;
+    private final Property[] properties;
+
+    /**
+     * Creates a mapping
+     *
+     * @param mappings mappings of the form <code>"path -> property"</code> or
+     *                 <code>"path"</code>
+     * @throws IllegalArgumentException if a property is unknown
+     */
+    public ProfileMapping(final String... mappings) {
+        List<String> pathList = new ArrayList<String>();
+        List<Property> propertyList = new ArrayList<Property>();
+        Set<String> extracted = new LinkedHashSet<String>();
+        for (String mapping : mappings) {
+            int index = mapping.indexOf("->");
+            String path = (index < 0 ? mapping : mapping.substring(0, index))
+                    .trim();
+            extracted.add(path);
+            if (index >= 0) {
+                pathList.add(path);
+                propertyList.add(Property.forName(mapping.substring(index + 2)
+                        .trim()));
+            }
+        }
+        extractor = new JSONFieldExtractor(extracted.toArray(new String[extracted
+                .size()]));
+        paths = pathList.toArray(new String[pathList.size()]);
+        properties = propertyList.toArray(new Property[propertyList.size()]);
+    }
+
+    /**
+     * Copies the mapped fields of the given JSON string into the profile
+     *
+     * @param json    JSON profile response
+     * @param profile profile to update
+     * @return map of path and value of all the fields found
+     * @throws JSONException if the response is not valid JSON
+     */
+    public Map<String, String> map(final String json, final Profile profile)
+            throws JSONException {
+        return map(new StringReader(json), profile);
+    }
+
+    /**
+     * Copies the mapped fields of the JSON read from the given reader into
+     * the profile
+     *
+     * @param in      JSON profile response, it is not closed
+     * @param profile profile to update
+     * @return map of path and value of all the fields found
+     * @throws JSONException if the response is not valid JSON
+     */
+    public Map<String, String> map(final Reader in, final Profile profile)
+            throws JSONException {
+        Map<String, String> values = extractor.extract(in);
+        for (int i = 0; i < paths.length; i++) {
+            String value = values.get(paths[i]);
+            if (value != null) {
+                properties[i].set(profile, value);
+            }
+        }
+        return values;
+    }
+
+    private enum Property {
+        VALIDATED_ID("validatedId") {
+            @Override
+            void set(final Profile profile, final String value) {
+                profile.setValidatedId(value);
+            }
+        },
+        FIRST_NAME("firstName") {
+            @Override
+            void set(final Profile profile, final String value) {
+                profile.setFirstName(value);
+            }
+        },
+        LAST_NAME("lastName") {
+            @Override
+            void set(final Profile profile, final String value) {
+                profile.setLastName(value);
+            }
+        },
+        FULL_NAME("fullName") {
+            @Override
+            void set(final Profile profile, final String value) {
+                profile.setFullName(value);
+            }
+        },
+        DISPLAY_NAME("displayName") {
+            @Override
+            void set(final Profile profile, final String value) {
+                profile.setDisplayName(value);
+            }
+        },
+        EMAIL("email") {
+            @Override
+            void set(final Profile profile, final String value) {
+                profile.setEmail(value);
+            }
+        },
+        GENDER("gender") {
+            @Override
+            void set(final Profile profile, final String value) {
+                profile.setGender(value);
+            }
+        },
+        LOCATION("location") {
+            @Override
+            void set(final Profile profile, final String value) {
+                profile.setLocation(value);
+            }
+        },
+        COUNTRY("country") {
+            @Override
+            void set(final Profile profile, final String value) {
+                profile.setCountry(value);
+            }
+        },
+        LANGUAGE("language") {
+            @Override
+            void set(final Profile profile, final String value) {
+                profile.setLanguage(value);
+            }
+        },
+        PROFILE_IMAGE_URL("profileImageURL") {
+            @Override
+            void set(final Profile profile, final String value) {
+                profile.setProfileImageURL(value);
+            }
+        };
+
+        private final String name;
+
+        Property(final String name) {
+            this.name = name;
+        }
+
+        abstract void set(Profile profile, String value);
+
+        static Property forName(final String name) {
+            for (Property property : values()) {
+                if (property.name.equals(name)) {
+                    return property;
+                }
+            }
+            throw new IllegalArgumentException("Unknown profile property : "
+                    + name);
+        }
+    }
+}
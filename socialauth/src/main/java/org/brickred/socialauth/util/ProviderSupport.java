@@ -37,12 +37,24 @@ import java.util.Map;
  */
 public class ProviderSupport {
     private OAuthStrategyBase authenticationStrategy;
+    private AlbumPhotoLoader photoLoader;
 
     /**
      * @param strategy OAuth strategy object
      */
     public ProviderSupport(final OAuthStrategyBase strategy) {
+        this(strategy, null);
+    }
+
+    /**
+     * @param strategy    OAuth strategy object
+     * @param photoLoader the album photo loader of the provider, if null a
+     *                    loader with default settings is used
+     */
+    public ProviderSupport(final OAuthStrategyBase strategy,
+                           final AlbumPhotoLoader photoLoader) {
         this.authenticationStrategy = strategy;
+        this.photoLoader = photoLoader;
     }
 
     /**
@@ -100,4 +112,16 @@ public class ProviderSupport {
         return authenticationStrategy.getAccessGrant();
     }
 
+    /**
+     * Retrieves the loader of album photos of the provider.
+     *
+     * @return the album photo loader
+     */
+    public synchronized AlbumPhotoLoader getPhotoLoader() {
+        if (photoLoader == null) {
+            photoLoader = new AlbumPhotoLoader();
+        }
+        return photoLoader;
+    }
+
 }
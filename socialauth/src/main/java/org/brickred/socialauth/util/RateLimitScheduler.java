@@ -0,0 +1,334 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.brickred.socialauth.exception.RateLimitExceededException;
+import org.brickred.socialauth.exception.SocialAuthException;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks the rate limit budgets announced by providers in response headers
+ * and delays calls once a budget is exhausted, instead of sending requests
+ * which would be rejected with status 429.
+ * <p>
+ * Budgets are kept per application (provider id), per access token and per
+ * access token and resource, depending on the headers the provider sends:
+ * <ul>
+ * <li><code>x-rate-limit-remaining/reset</code> (Twitter), per token and
+ * resource</li>
+ * <li><code>x-ratelimit-remaining/reset</code> (GitHub), per token</li>
+ * <li><code>x-app-usage</code> (Facebook), per application</li>
+ * <li><code>Retry-After</code> on status 429 or 503, per token</li>
+ * </ul>
+ *
+ * @author tarunn@brickred.com
+ */
+public class RateLimitScheduler {
+
+    /**
+     * Default maximum time in milliseconds a call waits for its budget
+     */
+    public static final long DEFAULT_MAX_WAIT = 60000;
+
+    /**
+     * Default time in milliseconds an application stays throttled when its
+     * usage reaches 100 percent and no reset time is given
+     */
+    public static final long DEFAULT_COOLDOWN = 60000;
+
+    private static final Log LOG = LogFactory.getLog(RateLimitScheduler.class);
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final int EVICT_THRESHOLD = 10000;
+
+    private final long maxWait;
+    private final long cooldown;
+    private final ConcurrentMap<String, Budget> budgets;
+
+    /**
+     * @param maxWait  maximum time in milliseconds a call waits for its budget
+     * @param cooldown time in milliseconds an application stays throttled
+     *                 when no reset time is given
+     */
+    public RateLimitScheduler(final long maxWait, final long cooldown) {
+        this.maxWait = maxWait;
+        this.cooldown = cooldown > 0 ? cooldown : DEFAULT_COOLDOWN;
+        budgets = new ConcurrentHashMap<String, Budget>();
+    }
+
+    public RateLimitScheduler() {
+        this(DEFAULT_MAX_WAIT, DEFAULT_COOLDOWN);
+    }
+
+    /**
+     * Waits until the budgets of the application, token and resource allow
+     * one more call and takes the call from them.
+     *
+     * @param app      provider id or host
+     * @param token    access token key, may be null
+     * @param resource resource path
+     * @throws SocialAuthException if the budget does not reset within the
+     *                             maximum wait or the current {@link Deadline}
+     */
+    public void acquire(final String app, final String token,
+                        final String resource) throws SocialAuthException {
+        Budget[] scopes = getScopes(budgets.get(appKey(app)),
+                budgets.get(tokenKey(app, token)),
+                budgets.get(resourceKey(app, token, resource)));
+        long waited = 0;
+        while (true) {
+            long wait = tryConsume(scopes, 0, System.currentTimeMillis());
+            if (wait <= 0) {
+                return;
+            }
+            Deadline deadline = Deadline.current();
+            if (waited + wait > maxWait
+                    || (deadline != null && deadline.remaining() <= wait)) {
+                throw new RateLimitExceededException("Rate limit of " + app
+                        + " exhausted for " + resource + ", resets in " + wait
+                        + " ms");
+            }
+            LOG.info("Rate limit of " + app + " exhausted for " + resource
+                    + ", waiting " + wait + " ms");
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SocialAuthException(
+                        "Interrupted while waiting for rate limit", e);
+            }
+            waited += wait;
+        }
+    }
+
+    /**
+     * Updates the budgets from the rate limit headers of the given response.
+     *
+     * @param app      provider id or host
+     * @param token    access token key, may be null
+     * @param resource resource path
+     * @param response the provider response
+     */
+    public void update(final String app, final String token,
+                       final String resource, final Response response) {
+        long now = System.currentTimeMillis();
+        String remaining = response.getHeader("x-rate-limit-remaining");
+        if (remaining != null) {
+            set(resourceKey(app, token, resource), remaining,
+                    response.getHeader("x-rate-limit-reset"), now);
+        }
+        remaining = response.getHeader("x-ratelimit-remaining");
+        if (remaining != null) {
+            set(tokenKey(app, token), remaining,
+                    response.getHeader("x-ratelimit-reset"), now);
+        }
+        String usage = response.getHeader("x-app-usage");
+        if (usage != null && getMaxUsage(usage) >= 100) {
+            getBudget(appKey(app)).set(0, now + cooldown);
+        }
+        int status = response.getStatus();
+        String retryAfter = response.getHeader("Retry-After");
+        if ((status == 429 || status == 503) && retryAfter != null) {
+            long seconds = parseLong(retryAfter.trim());
+            if (seconds >= 0) {
+                getBudget(tokenKey(app, token)).set(0, now + seconds * 1000);
+            }
+        }
+        if (budgets.size() > EVICT_THRESHOLD) {
+            evictExpired();
+        }
+    }
+
+    /**
+     * Removes the budgets whose window has reset.
+     */
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Budget> it = budgets.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().getReset() <= now) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the known budgets keyed by scope, i.e. application, application
+     * and token, or application, token and resource.
+     *
+     * @return map of budgets
+     */
+    public Map<String, Budget> getBudgets() {
+        return new HashMap<String, Budget>(budgets);
+    }
+
+    private void set(final String key, final String remaining,
+                     final String reset, final long now) {
+        long value = parseLong(remaining.trim());
+        if (value < 0) {
+            return;
+        }
+        long resetAt = reset == null ? -1 : parseLong(reset.trim());
+        // reset is an epoch time in seconds
+        getBudget(key).set((int) value, resetAt > 0 ? resetAt * 1000
+                : now + cooldown);
+    }
+
+    private Budget getBudget(final String key) {
+        Budget budget = budgets.get(key);
+        if (budget == null) {
+            Budget newBudget = new Budget();
+            budget = budgets.putIfAbsent(key, newBudget);
+            if (budget == null) {
+                budget = newBudget;
+            }
+        }
+        return budget;
+    }
+
+    private int getMaxUsage(final String usage) {
+        int max = 0;
+        Matcher matcher = NUMBER.matcher(usage);
+        while (matcher.find()) {
+            max = Math.max(max, (int) parseLong(matcher.group()));
+        }
+        return max;
+    }
+
+    private long parseLong(final String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            LOG.debug("Invalid rate limit header value : " + value);
+            return -1;
+        }
+    }
+
+    // without a token the token scope is the application scope
+    private Budget[] getScopes(final Budget app, final Budget token,
+                               final Budget resource) {
+        return new Budget[]{app, token == app ? null : token, resource};
+    }
+
+    /*
+     * Takes one call from every budget, or from none if any of them is
+     * exhausted. The budgets are locked from the application to the resource
+     * scope, the same order for every caller, so the check and the decrement
+     * are atomic across concurrent calls.
+     */
+    private long tryConsume(final Budget[] scopes, final int index,
+                            final long now) {
+        if (index == scopes.length) {
+            return 0;
+        }
+        Budget budget = scopes[index];
+        if (budget == null) {
+            return tryConsume(scopes, index + 1, now);
+        }
+        synchronized (budget) {
+            long wait = budget.getWait(now);
+            if (wait > 0) {
+                return wait;
+            }
+            wait = tryConsume(scopes, index + 1, now);
+            if (wait <= 0) {
+                budget.consume();
+            }
+            return wait;
+        }
+    }
+
+    private String appKey(final String app) {
+        return app;
+    }
+
+    private String tokenKey(final String app, final String token) {
+        return token == null ? app : app + "/" + token;
+    }
+
+    private String resourceKey(final String app, final String token,
+                               final String resource) {
+        return tokenKey(app, token) + " " + resource;
+    }
+
+    /**
+     * Rate limit budget of one scope
+     */
+    public static class Budget {
+
+        private int remaining = -1;
+        private long reset;
+
+        synchronized void set(final int remaining, final long reset) {
+            this.remaining = remaining;
+            this.reset = reset;
+        }
+
+        synchronized long getWait(final long now) {
+            if (reset <= now) {
+                remaining = -1;
+                return 0;
+            }
+            return remaining == 0 ? reset - now : 0;
+        }
+
+        synchronized void consume() {
+            if (remaining > 0) {
+                remaining--;
+            }
+        }
+
+        /**
+         * Retrieves the calls left in the current window, -1 if unknown
+         *
+         * @return the remaining calls
+         */
+        public synchronized int getRemaining() {
+            return remaining;
+        }
+
+        /**
+         * Retrieves the time in milliseconds at which the window resets
+         *
+         * @return the reset time
+         */
+        public synchronized long getReset() {
+            return reset;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "remaining=" + remaining + ", reset=" + reset;
+        }
+    }
+}
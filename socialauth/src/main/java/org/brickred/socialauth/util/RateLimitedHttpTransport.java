@@ -0,0 +1,138 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.brickred.socialauth.exception.SocialAuthException;
+
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * {@link HttpTransport} decorator which schedules requests through a
+ * {@link RateLimitScheduler}. Calls are keyed by the id of the provider making
+ * them (or the host if it is not known), by the access token found in the
+ * Authorization header or the query string, and by the resource path.
+ *
+ * @author tarunn@brickred.com
+ */
+public class RateLimitedHttpTransport implements HttpTransport {
+
+    private final HttpTransport transport;
+    private final RateLimitScheduler scheduler;
+
+    /**
+     * @param transport the transport which makes the requests
+     * @param scheduler the scheduler tracking the rate limits
+     */
+    public RateLimitedHttpTransport(final HttpTransport transport,
+                                    final RateLimitScheduler scheduler) {
+        this.transport = transport;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final String body,
+                                  final Map<String, String> header) throws SocialAuthException {
+        URL url = getURL(urlStr);
+        String app = getApp(url);
+        String token = getToken(urlStr, header);
+        scheduler.acquire(app, token, url.getPath());
+        Response response = transport.doHttpRequest(urlStr, requestMethod,
+                body, header);
+        scheduler.update(app, token, url.getPath(), response);
+        return response;
+    }
+
+    @Override
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final Map<String, String> params,
+                                  final Map<String, String> header, final InputStream inputStream,
+                                  final String fileName, final String fileParamName)
+            throws SocialAuthException {
+        URL url = getURL(urlStr);
+        String app = getApp(url);
+        String token = getToken(urlStr, header);
+        scheduler.acquire(app, token, url.getPath());
+        Response response = transport.doHttpRequest(urlStr, requestMethod,
+                params, header, inputStream, fileName, fileParamName);
+        scheduler.update(app, token, url.getPath(), response);
+        return response;
+    }
+
+    /**
+     * Retrieves the scheduler tracking the rate limits
+     *
+     * @return the rate limit scheduler
+     */
+    public RateLimitScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Retrieves the transport which makes the requests
+     *
+     * @return the underlying transport
+     */
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    private URL getURL(final String urlStr) throws SocialAuthException {
+        try {
+            return new URL(urlStr);
+        } catch (MalformedURLException e) {
+            throw new SocialAuthException(e);
+        }
+    }
+
+    private String getApp(final URL url) {
+        OAuthConfig config = HttpUtil.getRequestConfig();
+        if (config != null && config.getId() != null) {
+            return config.getId();
+        }
+        return url.getHost().toLowerCase();
+    }
+
+    // tokens are only kept as a SHA-256 fingerprint
+    private String getToken(final String urlStr,
+                            final Map<String, String> header) throws SocialAuthException {
+        String token = HttpUtil.getAccessToken(urlStr, header);
+        if (token == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                    token.getBytes(Constants.ENCODING));
+            return Base64.encodeBytes(digest, Base64.URL_SAFE
+                    | Base64.DONT_BREAK_LINES);
+        } catch (Exception e) {
+            throw new SocialAuthException("Unable to fingerprint token", e);
+        }
+    }
+}
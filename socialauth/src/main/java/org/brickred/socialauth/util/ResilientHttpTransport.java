@@ -0,0 +1,360 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.brickred.socialauth.exception.CircuitOpenException;
+import org.brickred.socialauth.exception.DeadlineExceededException;
+import org.brickred.socialauth.exception.SocialAuthException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link HttpTransport} decorator which retries failed idempotent requests
+ * with jittered exponential backoff and guards every provider with a
+ * {@link CircuitBreaker}. Requests are keyed by the id of the provider making
+ * them (see {@link OAuthConfig#getId()}), or by the host if the provider is
+ * not known.
+ * <p>
+ * A request fails if the connection can not be made or the provider returns
+ * a 5xx status. Only GET, HEAD, OPTIONS, PUT and DELETE requests are retried;
+ * the last 5xx response is returned to the caller as it is. Requests signed
+ * with OAuth 1.0 are never retried, as a replay would carry the same
+ * <code>oauth_nonce</code> and <code>oauth_timestamp</code> and be rejected by
+ * the provider. While the circuit of a provider is open, requests fail
+ * immediately with {@link CircuitOpenException}.
+ *
+ * @author tarunn@brickred.com
+ */
+public class ResilientHttpTransport implements HttpTransport {
+
+    /**
+     * Default number of retries of a failed request
+     */
+    public static final int DEFAULT_MAX_RETRIES = 2;
+
+    /**
+     * Default initial backoff in milliseconds
+     */
+    public static final long DEFAULT_BACKOFF = 200;
+
+    /**
+     * Default maximum backoff in milliseconds
+     */
+    public static final long DEFAULT_MAX_BACKOFF = 5000;
+
+    /**
+     * Default failure percentage at which a circuit opens
+     */
+    public static final int DEFAULT_FAILURE_RATE = 50;
+
+    /**
+     * Default number of calls considered by a circuit breaker
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+
+    /**
+     * Default time in milliseconds a circuit stays open
+     */
+    public static final long DEFAULT_OPEN_DURATION = 30000;
+
+    private static final Log LOG = LogFactory.getLog(ResilientHttpTransport.class);
+
+    private final HttpTransport transport;
+    private final int maxRetries;
+    private final long backoff;
+    private final long maxBackoff;
+    private final int failureRate;
+    private final int windowSize;
+    private final long openDuration;
+    private final ConcurrentMap<String, CircuitBreaker> breakers;
+    private final ConcurrentMap<String, AtomicLong> retries;
+    private final Random random;
+
+    /**
+     * @param transport    the transport which makes the requests
+     * @param maxRetries   number of retries of a failed request
+     * @param backoff      initial backoff in milliseconds, doubled on every retry
+     * @param maxBackoff   maximum backoff in milliseconds
+     * @param failureRate  failure percentage at which a circuit opens
+     * @param windowSize   number of calls considered by a circuit breaker
+     * @param openDuration time in milliseconds a circuit stays open
+     */
+    public ResilientHttpTransport(final HttpTransport transport,
+                                  final int maxRetries, final long backoff, final long maxBackoff,
+                                  final int failureRate, final int windowSize,
+                                  final long openDuration) {
+        this.transport = transport;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.backoff = Math.max(1, backoff);
+        this.maxBackoff = Math.max(this.backoff, maxBackoff);
+        this.failureRate = failureRate > 0 ? failureRate
+                : DEFAULT_FAILURE_RATE;
+        this.windowSize = windowSize > 0 ? windowSize : DEFAULT_WINDOW_SIZE;
+        this.openDuration = openDuration > 0 ? openDuration
+                : DEFAULT_OPEN_DURATION;
+        breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+        retries = new ConcurrentHashMap<String, AtomicLong>();
+        random = new Random();
+    }
+
+    /**
+     * @param transport the transport which makes the requests
+     */
+    public ResilientHttpTransport(final HttpTransport transport) {
+        this(transport, DEFAULT_MAX_RETRIES, DEFAULT_BACKOFF,
+                DEFAULT_MAX_BACKOFF, DEFAULT_FAILURE_RATE,
+                DEFAULT_WINDOW_SIZE, DEFAULT_OPEN_DURATION);
+    }
+
+    @Override
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final String body,
+                                  final Map<String, String> header) throws SocialAuthException {
+        String key = getKey(urlStr);
+        CircuitBreaker breaker = getCircuitBreaker(key);
+        boolean idempotent = isIdempotent(requestMethod)
+                && !isSigned(urlStr, body, header);
+        int attempt = 0;
+        while (true) {
+            allow(breaker);
+            Response response = null;
+            SocialAuthException error;
+            try {
+                response = transport.doHttpRequest(urlStr, requestMethod,
+                        body, header);
+                int status = response.readStatus();
+                if (status < 500) {
+                    breaker.onSuccess();
+                    return response;
+                }
+                error = new SocialAuthException("Status " + status + " from "
+                        + key);
+            } catch (DeadlineExceededException e) {
+                breaker.onIgnored();
+                throw e;
+            } catch (SocialAuthException e) {
+                error = e;
+                response = null;
+            } catch (IOException e) {
+                error = new SocialAuthException(e);
+                response = null;
+            }
+            breaker.onFailure();
+            long delay = getBackoff(attempt + 1);
+            if (!idempotent || attempt >= maxRetries || !canWait(delay)) {
+                if (response != null) {
+                    return response;
+                }
+                throw error;
+            }
+            if (response != null) {
+                closeQuietly(response);
+            }
+            attempt++;
+            getRetryCounter(key).incrementAndGet();
+            LOG.info("Retrying request to " + key + " in " + delay
+                    + " ms, attempt " + attempt + " : " + error.getMessage());
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SocialAuthException("Interrupted while retrying "
+                        + key, e);
+            }
+        }
+    }
+
+    @Override
+    public Response doHttpRequest(final String urlStr,
+                                  final String requestMethod, final Map<String, String> params,
+                                  final Map<String, String> header, final InputStream inputStream,
+                                  final String fileName, final String fileParamName)
+            throws SocialAuthException {
+        // the stream can not be replayed, so uploads are never retried
+        CircuitBreaker breaker = getCircuitBreaker(getKey(urlStr));
+        allow(breaker);
+        try {
+            Response response = transport.doHttpRequest(urlStr,
+                    requestMethod, params, header, inputStream, fileName,
+                    fileParamName);
+            if (response.readStatus() < 500) {
+                breaker.onSuccess();
+            } else {
+                breaker.onFailure();
+            }
+            return response;
+        } catch (DeadlineExceededException e) {
+            breaker.onIgnored();
+            throw e;
+        } catch (SocialAuthException e) {
+            breaker.onFailure();
+            throw e;
+        } catch (IOException e) {
+            breaker.onFailure();
+            throw new SocialAuthException(e);
+        }
+    }
+
+    /**
+     * Returns the circuit breaker of the given provider, creating it if
+     * required.
+     *
+     * @param key the provider id or host
+     * @return the circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker(final String key) {
+        CircuitBreaker breaker = breakers.get(key);
+        if (breaker == null) {
+            CircuitBreaker newBreaker = new CircuitBreaker(key, failureRate,
+                    windowSize, openDuration);
+            breaker = breakers.putIfAbsent(key, newBreaker);
+            if (breaker == null) {
+                breaker = newBreaker;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * Returns the circuit breakers of all providers called so far, keyed by
+     * provider id or host.
+     *
+     * @return map of circuit breakers
+     */
+    public Map<String, CircuitBreaker> getCircuitBreakers() {
+        return new HashMap<String, CircuitBreaker>(breakers);
+    }
+
+    /**
+     * Returns the number of retries made for the given provider
+     *
+     * @param key the provider id or host
+     * @return number of retries
+     */
+    public long getRetryCount(final String key) {
+        AtomicLong counter = retries.get(key);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Retrieves the transport which makes the requests
+     *
+     * @return the underlying transport
+     */
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    private void allow(final CircuitBreaker breaker)
+            throws CircuitOpenException {
+        if (!breaker.allowRequest()) {
+            throw new CircuitOpenException("Circuit of " + breaker.getName()
+                    + " is open, request is not sent");
+        }
+    }
+
+    private AtomicLong getRetryCounter(final String key) {
+        AtomicLong counter = retries.get(key);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = retries.putIfAbsent(key, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+    private long getBackoff(final int attempt) {
+        long exp = backoff << Math.min(attempt - 1, 20);
+        if (exp <= 0 || exp > maxBackoff) {
+            exp = maxBackoff;
+        }
+        // equal jitter, half fixed and half random
+        long half = exp / 2;
+        return half + (long) (random.nextDouble() * (exp - half + 1));
+    }
+
+    private boolean canWait(final long delay) {
+        Deadline deadline = Deadline.current();
+        return deadline == null || deadline.remaining() > delay;
+    }
+
+    private String getKey(final String urlStr) throws SocialAuthException {
+        OAuthConfig config = HttpUtil.getRequestConfig();
+        if (config != null && config.getId() != null) {
+            return config.getId();
+        }
+        try {
+            return new URL(urlStr).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            throw new SocialAuthException(e);
+        }
+    }
+
+    private boolean isIdempotent(final String method) {
+        return method == null || MethodType.GET.toString().equals(method)
+                || MethodType.PUT.toString().equals(method)
+                || MethodType.DELETE.toString().equals(method)
+                || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+
+    private boolean isSigned(final String urlStr, final String body,
+                             final Map<String, String> header) {
+        if (header != null) {
+            for (Map.Entry<String, String> entry : header.entrySet()) {
+                if ("Authorization".equalsIgnoreCase(entry.getKey())
+                        && entry.getValue() != null
+                        && entry.getValue().startsWith("OAuth ")) {
+                    return true;
+                }
+            }
+        }
+        return hasSignature(urlStr) || hasSignature(body);
+    }
+
+    private boolean hasSignature(final String s) {
+        return s != null && s.indexOf(Constants.OAUTH_SIGNATURE + "=") >= 0;
+    }
+
+    private void closeQuietly(final Response response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            LOG.debug("Error while closing response", e);
+        }
+    }
+}
@@ -24,12 +24,13 @@
  */
 package org.brickred.socialauth.util;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.HttpURLConnection;
-import java.util.zip.GZIPInputStream;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Encapsulates the HTTP status, headers and the content.
@@ -44,7 +45,7 @@ public class Response {
     }
 
     /**
-     * Closes the connection
+     * Closes the connection.
      *
      * @throws IOException
      */
@@ -56,6 +57,10 @@ public class Response {
         return _connection.getHeaderField(name);
     }
 
+    Map<String, List<String>> getHeaderFields() {
+        return _connection.getHeaderFields();
+    }
+
     /**
      * Gets the response content via InputStream.
      *
@@ -80,7 +85,20 @@ public class Response {
     }
 
     /**
-     * Gets the response content as String using given encoding
+     * Gets the response HTTP status, sending the request if it has not been
+     * sent yet. Unlike {@link #getStatus()}, I/O errors are not hidden.
+     *
+     * @return the HTTP status
+     * @throws IOException
+     */
+    int readStatus() throws IOException {
+        return _connection.getResponseCode();
+    }
+
+    /**
+     * Gets the response content as String using given encoding. Line breaks
+     * are removed from the content. Use {@link #getBodyAsString(String)} to
+     * get the content as it is.
      *
      * @param encoding the encoding type
      * @return Response body
@@ -88,23 +106,71 @@ public class Response {
      */
     public String getResponseBodyAsString(final String encoding)
             throws Exception {
-        String line = null;
-        BufferedReader reader = null;
-        StringBuffer sb = new StringBuffer();
-
-        if (Constants.GZIP_CONTENT_ENCODING.equals(_connection
-                .getHeaderField(Constants.CONTENT_ENCODING_HEADER))) {
-            reader = new BufferedReader(
-                    new InputStreamReader(new GZIPInputStream(
-                            _connection.getInputStream()), encoding));
-        } else {
-            reader = new BufferedReader(new InputStreamReader(
-                    _connection.getInputStream(), encoding));
-        }
-        while ((line = reader.readLine()) != null) {
-            sb.append(line);
-        }
-        return sb.toString();
+        return readBodyAsString(encoding, -1, true);
+    }
+
+    /**
+     * Gets the response content as String using given encoding, without
+     * removing line breaks.
+     *
+     * @param encoding the encoding type
+     * @return Response body
+     * @throws Exception
+     */
+    public String getBodyAsString(final String encoding) throws Exception {
+        return readBodyAsString(encoding, -1, false);
+    }
+
+    /**
+     * Gets the response content as String using given encoding, without
+     * removing line breaks. Fails if the content is longer than the given
+     * size.
+     *
+     * @param encoding the encoding type
+     * @param maxSize  maximum content length in bytes
+     * @return Response body
+     * @throws Exception if content exceeds the maximum size or can not be read
+     */
+    public String getBodyAsString(final String encoding, final int maxSize)
+            throws Exception {
+        return readBodyAsString(encoding, maxSize, false);
+    }
+
+    /**
+     * Gets the decompressed response content as bytes.
+     *
+     * @return Response body
+     * @throws Exception
+     */
+    public byte[] getBodyAsBytes() throws Exception {
+        return getBodyAsBytes(-1);
+    }
+
+    /**
+     * Gets the decompressed response content as bytes. Fails if the content is
+     * longer than the given size.
+     *
+     * @param maxSize maximum content length in bytes
+     * @return Response body
+     * @throws Exception if content exceeds the maximum size or can not be read
+     */
+    public byte[] getBodyAsBytes(final int maxSize) throws Exception {
+        return ResponseBodyReader.readBytes(getContentStream(),
+                getContentLengthHint(), maxSize);
+    }
+
+    /**
+     * Gets a reader over the decompressed response content. The content is
+     * decoded while it is read, so large responses can be processed without
+     * holding them in memory.
+     *
+     * @param encoding the encoding type
+     * @return reader of Response body
+     * @throws IOException
+     */
+    public Reader getBodyAsReader(final String encoding) throws IOException {
+        return new InputStreamReader(getContentStream(),
+                ResponseBodyReader.newDecoder(encoding));
     }
 
     /**
@@ -116,22 +182,32 @@ public class Response {
      */
     public String getErrorStreamAsString(final String encoding)
             throws Exception {
-        String line = null;
-        BufferedReader reader = null;
-        StringBuffer sb = new StringBuffer();
-
-        if (Constants.GZIP_CONTENT_ENCODING.equals(_connection
-                .getHeaderField(Constants.CONTENT_ENCODING_HEADER))) {
-            reader = new BufferedReader(
-                    new InputStreamReader(new GZIPInputStream(
-                            _connection.getErrorStream()), encoding));
-        } else {
-            reader = new BufferedReader(new InputStreamReader(
-                    _connection.getErrorStream(), encoding));
-        }
-        while ((line = reader.readLine()) != null) {
-            sb.append(line);
+        InputStream in = ResponseBodyReader.decodeContent(
+                _connection.getErrorStream(), getContentEncoding());
+        return ResponseBodyReader.readString(in, getContentLengthHint(), -1,
+                encoding, true);
+    }
+
+    private String readBodyAsString(final String encoding, final int maxSize,
+                                    final boolean stripLineBreaks) throws Exception {
+        return ResponseBodyReader.readString(getContentStream(),
+                getContentLengthHint(), maxSize, encoding, stripLineBreaks);
+    }
+
+    private InputStream getContentStream() throws IOException {
+        return ResponseBodyReader.decodeContent(getInputStream(),
+                getContentEncoding());
+    }
+
+    private String getContentEncoding() {
+        return _connection.getHeaderField(Constants.CONTENT_ENCODING_HEADER);
+    }
+
+    // Content-Length is the compressed size for encoded content
+    private int getContentLengthHint() {
+        if (getContentEncoding() != null) {
+            return -1;
         }
-        return sb.toString();
+        return _connection.getContentLength();
     }
 }
@@ -0,0 +1,284 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.brickred.socialauth.exception.SocialAuthException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads the response content with as few copies as possible. The content is
+ * read into a pooled buffer, presized from the Content-Length header if
+ * available, and decoded in one pass with a pooled CharsetDecoder.
+ *
+ * @author tarunn@brickred.com
+ */
+final class ResponseBodyReader {
+
+    private static final String DEFLATE_CONTENT_ENCODING = "deflate";
+    private static final int INITIAL_SIZE = 8192;
+
+    // buffers bigger than this are not kept for reuse
+    private static final int MAX_POOLED_SIZE = 256 * 1024;
+
+    private static final ObjectPool<byte[]> BYTE_BUFFERS = new ObjectPool<byte[]>();
+    private static final ObjectPool<char[]> CHAR_BUFFERS = new ObjectPool<char[]>();
+    private static final ConcurrentMap<String, ObjectPool<CharsetDecoder>> DECODERS = new ConcurrentHashMap<String, ObjectPool<CharsetDecoder>>();
+
+    private ResponseBodyReader() {
+    }
+
+    /**
+     * Wraps the given stream to decode the content according to the
+     * Content-Encoding header. Supports gzip and deflate.
+     *
+     * @param in              the raw content stream
+     * @param contentEncoding value of Content-Encoding header, can be null
+     * @return stream of decoded content
+     * @throws IOException
+     */
+    static InputStream decodeContent(final InputStream in,
+                                     final String contentEncoding) throws IOException {
+        if (in == null || contentEncoding == null) {
+            return in;
+        }
+        String enc = contentEncoding.trim();
+        if (Constants.GZIP_CONTENT_ENCODING.equalsIgnoreCase(enc)
+                || "x-gzip".equalsIgnoreCase(enc)) {
+            return new GZIPInputStream(in);
+        }
+        if (DEFLATE_CONTENT_ENCODING.equalsIgnoreCase(enc)) {
+            // servers send either zlib wrapped or raw deflate data
+            PushbackInputStream pin = new PushbackInputStream(in, 2);
+            byte[] head = new byte[2];
+            int n = pin.read(head);
+            if (n > 0) {
+                pin.unread(head, 0, n);
+            }
+            boolean zlib = n == 2 && (head[0] & 0x0F) == 8
+                    && (((head[0] & 0xFF) << 8) | (head[1] & 0xFF)) % 31 == 0;
+            return new InflaterInputStream(pin, new Inflater(!zlib));
+        }
+        return in;
+    }
+
+    /**
+     * Reads the whole stream and returns the content in a new array.
+     *
+     * @param in         the content stream
+     * @param lengthHint expected length or -1 if unknown
+     * @param maxSize    maximum allowed length or -1 for no limit
+     * @return the content
+     * @throws Exception
+     */
+    static byte[] readBytes(final InputStream in, final int lengthHint,
+                            final int maxSize) throws Exception {
+        if (in == null) {
+            return new byte[0];
+        }
+        Content content = read(in, lengthHint, maxSize);
+        if (content.buf.length == content.len) {
+            return content.buf;
+        }
+        try {
+            return Arrays.copyOf(content.buf, content.len);
+        } finally {
+            recycle(content.buf);
+        }
+    }
+
+    /**
+     * Reads the whole stream and decodes it using the given encoding.
+     *
+     * @param in               the content stream
+     * @param lengthHint       expected length or -1 if unknown
+     * @param maxSize          maximum allowed length or -1 for no limit
+     * @param encoding         the encoding type
+     * @param stripLineBreaks  true to drop all CR and LF characters
+     * @return the decoded content
+     * @throws Exception
+     */
+    static String readString(final InputStream in, final int lengthHint,
+                             final int maxSize, final String encoding,
+                             final boolean stripLineBreaks) throws Exception {
+        if (in == null) {
+            return "";
+        }
+        Content content = read(in, lengthHint, maxSize);
+        try {
+            return decode(content.buf, content.len, encoding, stripLineBreaks);
+        } finally {
+            recycle(content.buf);
+        }
+    }
+
+    /**
+     * Returns a new decoder for the given encoding which is safe to hand over
+     * to a Reader.
+     *
+     * @param encoding the encoding type
+     * @return the decoder
+     */
+    static CharsetDecoder newDecoder(final String encoding) {
+        return Charset.forName(encoding).newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static Content read(final InputStream in, final int lengthHint,
+                               final int maxSize) throws Exception {
+        if (maxSize >= 0 && lengthHint > maxSize) {
+            throw exceeded(maxSize);
+        }
+        byte[] buf = BYTE_BUFFERS.poll();
+        if (buf == null || lengthHint > buf.length) {
+            recycle(buf);
+            buf = new byte[Math.max(INITIAL_SIZE, lengthHint)];
+        }
+        int len = 0;
+        int n;
+        while (true) {
+            if (len == buf.length) {
+                // checking for the end before growing a presized buffer
+                int b = in.read();
+                if (b == -1) {
+                    break;
+                }
+                buf = Arrays.copyOf(buf, buf.length * 2);
+                buf[len++] = (byte) b;
+            }
+            n = in.read(buf, len, buf.length - len);
+            if (n == -1) {
+                break;
+            }
+            len += n;
+            if (maxSize >= 0 && len > maxSize) {
+                throw exceeded(maxSize);
+            }
+        }
+        if (maxSize >= 0 && len > maxSize) {
+            throw exceeded(maxSize);
+        }
+        return new Content(buf, len);
+    }
+
+    private static String decode(final byte[] buf, final int len,
+                                 final String encoding, final boolean stripLineBreaks) {
+        ObjectPool<CharsetDecoder> decoders = getDecoders(encoding);
+        CharsetDecoder decoder = decoders.poll();
+        if (decoder == null) {
+            decoder = newDecoder(encoding);
+        }
+        int size = (int) Math.ceil(len * (double) decoder.maxCharsPerByte()) + 1;
+        char[] chars = CHAR_BUFFERS.poll();
+        if (chars == null || chars.length < size) {
+            if (chars != null && chars.length <= MAX_POOLED_SIZE) {
+                CHAR_BUFFERS.release(chars);
+            }
+            chars = new char[Math.max(INITIAL_SIZE, size)];
+        }
+        try {
+            return decode(decoder.reset(), buf, len, chars, stripLineBreaks);
+        } finally {
+            decoders.release(decoder);
+            if (chars.length <= MAX_POOLED_SIZE) {
+                CHAR_BUFFERS.release(chars);
+            }
+        }
+    }
+
+    private static String decode(final CharsetDecoder decoder,
+                                 final byte[] buf, final int len, final char[] chars,
+                                 final boolean stripLineBreaks) {
+        CharBuffer out = CharBuffer.wrap(chars);
+        ByteBuffer input = ByteBuffer.wrap(buf, 0, len);
+        CoderResult result = decoder.decode(input, out, true);
+        if (!result.isOverflow()) {
+            decoder.flush(out);
+        }
+        int n = out.position();
+        if (stripLineBreaks) {
+            int j = 0;
+            for (int i = 0; i < n; i++) {
+                char c = chars[i];
+                if (c != '\n' && c != '\r') {
+                    chars[j++] = c;
+                }
+            }
+            n = j;
+        }
+        return new String(chars, 0, n);
+    }
+
+    private static ObjectPool<CharsetDecoder> getDecoders(final String encoding) {
+        ObjectPool<CharsetDecoder> pool = DECODERS.get(encoding);
+        if (pool == null) {
+            // validates the encoding before creating a pool for it
+            Charset.forName(encoding);
+            ObjectPool<CharsetDecoder> newPool = new ObjectPool<CharsetDecoder>();
+            pool = DECODERS.putIfAbsent(encoding, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+        }
+        return pool;
+    }
+
+    private static void recycle(final byte[] buf) {
+        if (buf != null && buf.length <= MAX_POOLED_SIZE) {
+            BYTE_BUFFERS.release(buf);
+        }
+    }
+
+    private static final class Content {
+        private final byte[] buf;
+        private final int len;
+
+        Content(final byte[] buf, final int len) {
+            this.buf = buf;
+            this.len = len;
+        }
+    }
+
+    private static SocialAuthException exceeded(final int maxSize) {
+        return new SocialAuthException(
+                "Response body exceeds the maximum size of " + maxSize
+                        + " bytes");
+    }
+}
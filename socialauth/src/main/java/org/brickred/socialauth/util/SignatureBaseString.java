@@ -0,0 +1,97 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Writes the OAuth 1.0 signature base string of a request as bytes, without
+ * building it as a String first.
+ *
+ * @author tarunn@brickred.com
+ */
+final class SignatureBaseString {
+
+    /**
+     * Receives the bytes of the signature base string
+     */
+    interface Sink {
+        void update(byte[] b, int off, int len) throws GeneralSecurityException;
+    }
+
+    private SignatureBaseString() {
+    }
+
+    /**
+     * Writes the signature base string of the given request to the sink
+     *
+     * @param method the request method
+     * @param url    the request URL without query string
+     * @param params the normalized request parameters
+     * @param buf    buffer to use, at least 3 bytes long
+     * @param sink   the sink receiving the bytes
+     * @throws GeneralSecurityException
+     */
+    static void write(final String method, final String url,
+                      final NormalizedParameters params, final byte[] buf, final Sink sink)
+            throws GeneralSecurityException {
+        int n = append(PercentCodec.encode(method), false, buf, 0, sink);
+        n = append("&", false, buf, n, sink);
+        n = append(PercentCodec.encode(url), false, buf, n, sink);
+        n = append("&", false, buf, n, sink);
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                n = append("%26", false, buf, n, sink);
+            }
+            n = append(params.getName(i), true, buf, n, sink);
+            n = append("%3D", false, buf, n, sink);
+            n = append(params.getValue(i), true, buf, n, sink);
+        }
+        sink.update(buf, 0, n);
+    }
+
+    // percent encoded values are ASCII, so chars are copied as bytes. When
+    // encoding again, only '%' needs to be escaped.
+    private static int append(final String value, final boolean encode,
+                              final byte[] buf, final int offset, final Sink sink)
+            throws GeneralSecurityException {
+        int n = offset;
+        for (int i = 0; i < value.length(); i++) {
+            if (n > buf.length - 3) {
+                sink.update(buf, 0, n);
+                n = 0;
+            }
+            char c = value.charAt(i);
+            if (encode && c == '%') {
+                buf[n++] = '%';
+                buf[n++] = '2';
+                buf[n++] = '5';
+            } else {
+                buf[n++] = (byte) c;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import org.brickred.socialauth.Permission;
+import org.brickred.socialauth.exception.SocialAuthException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Encodes the details of a login into a compact, signed value for the OAuth
+ * <code>state</code> parameter, so the callback can be completed by any node
+ * sharing the secret without keeping the login in the HTTP session. The
+ * token holds the provider id, permission, success URL, issue time and a
+ * random nonce, and is signed with HMAC-SHA256. Tokens older than the
+ * maximum age are rejected.
+ * <p>
+ * A token can be bound to the browser which started the login, to guard
+ * against login CSRF: the application gives a value only that browser holds,
+ * e.g. a random cookie, to {@link #encode(String, Permission, String, String)}
+ * and the same value to {@link #decode(String, String)} on the callback. The
+ * nonce of a bound token is then a keyed hash of the value, which is not
+ * revealed by the token. Without a binding the nonce is random.
+ *
+ * @author tarunn@brickred.com
+ */
+public class StateCodec {
+
+    /**
+     * Default maximum age of a state token, in milliseconds
+     */
+    public static final long DEFAULT_MAX_AGE = 10 * 60 * 1000L;
+
+    private static final String VERSION = "1";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_LENGTH = 16;
+    private static final int NONCE_LENGTH = 9;
+    private static final int OPTIONS = Base64.URL_SAFE | Base64.DONT_BREAK_LINES;
+
+    private final SecretKeySpec key;
+    private final long maxAge;
+    private final SecureRandom random = new SecureRandom();
+    private final ObjectPool<Mac> macs = new ObjectPool<Mac>();
+
+    /**
+     * @param secret secret shared by all nodes completing logins
+     * @param maxAge maximum age of a token, in milliseconds
+     */
+    public StateCodec(final byte[] secret, final long maxAge) {
+        if (secret == null || secret.length == 0) {
+            throw new IllegalArgumentException("Secret is required");
+        }
+        key = new SecretKeySpec(secret, ALGORITHM);
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Encodes a state token which is not bound to a browser.
+     *
+     * @param providerId the provider id
+     * @param permission the permission requested, can be null
+     * @param successUrl URL on which the provider redirects after
+     *                   authentication
+     * @return the signed token, which is safe to use in a URL without
+     * encoding
+     * @throws SocialAuthException
+     */
+    public String encode(final String providerId, final Permission permission,
+                         final String successUrl) throws SocialAuthException {
+        return encode(providerId, permission, successUrl, null);
+    }
+
+    /**
+     * Encodes a state token bound to the given browser value.
+     *
+     * @param providerId the provider id
+     * @param permission the permission requested, can be null
+     * @param successUrl URL on which the provider redirects after
+     *                   authentication
+     * @param binding    value only the browser starting the login holds, null
+     *                   for an unbound token
+     * @return the signed token, which is safe to use in a URL without
+     * encoding
+     * @throws SocialAuthException
+     */
+    public String encode(final String providerId, final Permission permission,
+                         final String successUrl, final String binding)
+            throws SocialAuthException {
+        byte[] nonce;
+        if (binding == null) {
+            nonce = new byte[NONCE_LENGTH];
+            random.nextBytes(nonce);
+        } else {
+            nonce = bind(binding);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(VERSION).append('|');
+        PercentCodec.encode(providerId, sb);
+        sb.append('|');
+        if (permission != null && permission.getScope() != null) {
+            PercentCodec.encode(permission.getScope(), sb);
+        }
+        sb.append('|');
+        sb.append(Long.toString(System.currentTimeMillis(),
+                Character.MAX_RADIX));
+        sb.append('|');
+        sb.append(Base64.encodeBytes(nonce, OPTIONS));
+        // last field, so it is not escaped
+        sb.append('|').append(successUrl);
+        String payload = toBase64(getBytes(sb.toString()));
+        return payload + '.' + toBase64(sign(payload));
+    }
+
+    /**
+     * Verifies and decodes a state token.
+     *
+     * @param token the token received in the callback
+     * @return the decoded state
+     * @throws SocialAuthException if the token is malformed, its signature
+     *                             does not match or it has expired
+     */
+    public State decode(final String token) throws SocialAuthException {
+        if (token == null) {
+            throw new SocialAuthException("State parameter is missing");
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            throw new SocialAuthException("State parameter is malformed");
+        }
+        String payload = token.substring(0, dot);
+        byte[] signature = fromBase64(token.substring(dot + 1));
+        if (signature == null
+                || !MessageDigest.isEqual(signature, sign(payload))) {
+            throw new SocialAuthException(
+                    "State parameter signature does not match");
+        }
+        byte[] bytes = fromBase64(payload);
+        if (bytes == null) {
+            throw new SocialAuthException("State parameter is malformed");
+        }
+        String[] fields;
+        try {
+            fields = new String(bytes, Constants.ENCODING).split("\\|", 6);
+        } catch (Exception e) {
+            throw new SocialAuthException("State parameter is malformed", e);
+        }
+        if (fields.length != 6 || !VERSION.equals(fields[0])) {
+            throw new SocialAuthException("State parameter is malformed");
+        }
+        long issuedAt;
+        try {
+            issuedAt = Long.parseLong(fields[3], Character.MAX_RADIX);
+        } catch (NumberFormatException e) {
+            throw new SocialAuthException("State parameter is malformed", e);
+        }
+        if (maxAge > 0 && System.currentTimeMillis() - issuedAt > maxAge) {
+            throw new SocialAuthException("State parameter has expired");
+        }
+        Permission permission = null;
+        if (fields[2].length() > 0) {
+            permission = getPermission(PercentCodec.decode(fields[2]));
+        }
+        return new State(PercentCodec.decode(fields[1]), permission,
+                fields[5], issuedAt, fields[4]);
+    }
+
+    /**
+     * Verifies and decodes a state token which must be bound to the given
+     * browser value.
+     *
+     * @param token   the token received in the callback
+     * @param binding the value given when the token was encoded
+     * @return the decoded state
+     * @throws SocialAuthException if the token is malformed, its signature
+     *                             does not match, it has expired or it is
+     *                             not bound to the given value
+     */
+    public State decode(final String token, final String binding)
+            throws SocialAuthException {
+        State state = decode(token);
+        if (binding == null
+                || !MessageDigest.isEqual(getBytes(state.getNonce()),
+                getBytes(Base64.encodeBytes(bind(binding), OPTIONS)))) {
+            throw new SocialAuthException(
+                    "State parameter was not issued to this browser");
+        }
+        return state;
+    }
+
+    // the payload is Base64, so the prefix keeps both uses of the key apart
+    private byte[] bind(final String binding) throws SocialAuthException {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        System.arraycopy(sign("b|" + binding), 0, nonce, 0, NONCE_LENGTH);
+        return nonce;
+    }
+
+    private byte[] sign(final String payload) throws SocialAuthException {
+        try {
+            Mac mac = macs.poll();
+            if (mac == null) {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+            }
+            byte[] full = mac.doFinal(getBytes(payload));
+            macs.release(mac);
+            byte[] signature = new byte[SIGNATURE_LENGTH];
+            System.arraycopy(full, 0, signature, 0, SIGNATURE_LENGTH);
+            return signature;
+        } catch (SocialAuthException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SocialAuthException("Unable to sign state parameter", e);
+        }
+    }
+
+    private static Permission getPermission(final String scope) {
+        Permission[] known = {Permission.AUTHENTICATE_ONLY, Permission.ALL,
+                Permission.DEFAULT, Permission.CUSTOM};
+        for (Permission p : known) {
+            if (p.getScope().equals(scope)) {
+                return p;
+            }
+        }
+        return new Permission(scope);
+    }
+
+    private static byte[] getBytes(final String s) throws SocialAuthException {
+        try {
+            return s.getBytes(Constants.ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new SocialAuthException(e);
+        }
+    }
+
+    private static String toBase64(final byte[] b) {
+        String s = Base64.encodeBytes(b, OPTIONS);
+        int end = s.length();
+        while (end > 0 && s.charAt(end - 1) == '=') {
+            end--;
+        }
+        return s.substring(0, end);
+    }
+
+    private static byte[] fromBase64(final String s) {
+        StringBuilder sb = new StringBuilder(s);
+        while (sb.length() % 4 != 0) {
+            sb.append('=');
+        }
+        try {
+            return Base64.decode(sb.toString(), Base64.URL_SAFE);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Details of a login decoded from a state token.
+     */
+    public static class State {
+        private final String providerId;
+        private final Permission permission;
+        private final String successUrl;
+        private final long issuedAt;
+        private final String nonce;
+
+        State(final String providerId, final Permission permission,
+              final String successUrl, final long issuedAt, final String nonce) {
+            this.providerId = providerId;
+            this.permission = permission;
+            this.successUrl = successUrl;
+            this.issuedAt = issuedAt;
+            this.nonce = nonce;
+        }
+
+        /**
+         * @return the provider id
+         */
+        public String getProviderId() {
+            return providerId;
+        }
+
+        /**
+         * @return the permission requested, or null
+         */
+        public Permission getPermission() {
+            return permission;
+        }
+
+        /**
+         * @return the success URL given when the login started
+         */
+        public String getSuccessUrl() {
+            return successUrl;
+        }
+
+        /**
+         * @return time at which the token was issued, in milliseconds since
+         * the epoch
+         */
+        public long getIssuedAt() {
+            return issuedAt;
+        }
+
+        /**
+         * @return the random nonce of the token
+         */
+        public String getNonce() {
+            return nonce;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Extracts a few fields from an XML document with StAX, without building a
+ * DOM. Fields are addressed by paths of element local names relative to the
+ * root element, e.g. <code>location/name</code>; the last step can name an
+ * attribute, e.g. <code>user/@nsid</code>. As with
+ * {@link XMLParseUtil#getElementData(org.w3c.dom.Element, String)}, the
+ * value of a field is the text of its first matching element. Reading stops
+ * as soon as every field has been found.
+ * <p>
+ * An extractor is immutable and can be shared between threads.
+ *
+ * @author tarunn@brickred.com
+ */
+public final class XMLFieldExtractor {
+
+    private final String[] paths;
+    private final Map<String, Integer> slots;
+    private final boolean attributes;
+
+    /**
+     * Creates an extractor for the given paths
+     *
+     * @param paths paths of the fields to extract
+     */
+    public XMLFieldExtractor(final String... paths) {
+        this.paths = Arrays.copyOf(paths, paths.length);
+        slots = new HashMap<String, Integer>();
+        boolean attrs = false;
+        for (int i = 0; i < paths.length; i++) {
+            slots.put(paths[i], Integer.valueOf(i));
+            if (paths[i].startsWith("@") || paths[i].contains("/@")) {
+                attrs = true;
+            }
+        }
+        attributes = attrs;
+    }
+
+    /**
+     * Extracts the fields from the given stream
+     *
+     * @param in XML input stream, it is not closed
+     * @return map of path and value of the fields found
+     * @throws XMLStreamException
+     */
+    public Map<String, String> extract(final InputStream in)
+            throws XMLStreamException {
+        return extract(XMLParseUtil.getXMLInputFactory().createXMLStreamReader(
+                in));
+    }
+
+    /**
+     * Extracts the fields from the given reader
+     *
+     * @param in XML reader, it is not closed
+     * @return map of path and value of the fields found
+     * @throws XMLStreamException
+     */
+    public Map<String, String> extract(final Reader in)
+            throws XMLStreamException {
+        return extract(XMLParseUtil.getXMLInputFactory().createXMLStreamReader(
+                in));
+    }
+
+    private Map<String, String> extract(final XMLStreamReader reader)
+            throws XMLStreamException {
+        String[] values = new String[paths.length];
+        int found = 0;
+        StringBuilder path = new StringBuilder();
+        int[] pathLengths = new int[16];
+        int[] captures = new int[16];
+        StringBuilder[] texts = new StringBuilder[16];
+        int depth = 0;
+        try {
+            while (found < paths.length && reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == pathLengths.length) {
+                        pathLengths = Arrays.copyOf(pathLengths, depth * 2);
+                        captures = Arrays.copyOf(captures, depth * 2);
+                        texts = Arrays.copyOf(texts, depth * 2);
+                    }
+                    pathLengths[depth] = path.length();
+                    captures[depth] = -1;
+                    if (depth > 1) {
+                        if (path.length() > 0) {
+                            path.append('/');
+                        }
+                        path.append(reader.getLocalName());
+                        Integer slot = slots.get(path.toString());
+                        if (slot != null && values[slot.intValue()] == null) {
+                            captures[depth] = slot.intValue();
+                            if (texts[depth] == null) {
+                                texts[depth] = new StringBuilder();
+                            } else {
+                                texts[depth].setLength(0);
+                            }
+                        }
+                    }
+                    if (attributes) {
+                        found += readAttributes(reader, path, values);
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS
+                        || event == XMLStreamConstants.CDATA
+                        || event == XMLStreamConstants.SPACE) {
+                    if (depth > 0 && captures[depth] >= 0) {
+                        texts[depth].append(reader.getTextCharacters(),
+                                reader.getTextStart(), reader.getTextLength());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (captures[depth] >= 0) {
+                        values[captures[depth]] = texts[depth].toString();
+                        found++;
+                    }
+                    path.setLength(pathLengths[depth]);
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (int i = 0; i < paths.length; i++) {
+            if (values[i] != null) {
+                result.put(paths[i], values[i]);
+            }
+        }
+        return result;
+    }
+
+    private int readAttributes(final XMLStreamReader reader,
+                               final StringBuilder path, final String[] values) {
+        int found = 0;
+        int length = path.length();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (length > 0) {
+                path.append('/');
+            }
+            path.append('@').append(reader.getAttributeLocalName(i));
+            Integer slot = slots.get(path.toString());
+            if (slot != null && values[slot.intValue()] == null) {
+                values[slot.intValue()] = reader.getAttributeValue(i);
+                found++;
+            }
+            path.setLength(length);
+        }
+        return found;
+    }
+}
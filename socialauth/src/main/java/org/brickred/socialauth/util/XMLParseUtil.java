@@ -25,15 +25,20 @@
 
 package org.brickred.socialauth.util;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
@@ -43,12 +48,23 @@ import java.io.InputStream;
 import java.io.StringWriter;
 
 /**
- * This is a utility class, which is used to read the xml files.
+ * This is a utility class, which is used to read the xml files. The parser
+ * factories are created once and do not resolve external entities; parsers
+ * and transformers are pooled and reused.
  *
  * @author Tarun Nagpal
  */
 public class XMLParseUtil {
 
+    private static final Log LOG = LogFactory.getLog(XMLParseUtil.class);
+
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = createDocumentBuilderFactory();
+    private static final TransformerFactory TRANSFORMER_FACTORY = createTransformerFactory();
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXMLInputFactory();
+
+    private static final ObjectPool<DocumentBuilder> DOCUMENT_BUILDERS = new ObjectPool<DocumentBuilder>();
+    private static final ObjectPool<Transformer> TRANSFORMERS = new ObjectPool<Transformer>();
+
     /**
      * Static helper function to get the element data of the specified node.
      *
@@ -111,9 +127,17 @@ public class XMLParseUtil {
     public static Element loadXmlResource(final String fileName)
             throws Exception {
         File file = new File(fileName);
-        DocumentBuilder db = getDocumentBuilder();
-        Document doc = db.parse(file);
-        return doc.getDocumentElement();
+        DocumentBuilder db = DOCUMENT_BUILDERS.poll();
+        if (db == null) {
+            db = getDocumentBuilder();
+        }
+        try {
+            Document doc = db.parse(file);
+            return doc.getDocumentElement();
+        } finally {
+            db.reset();
+            DOCUMENT_BUILDERS.release(db);
+        }
     }
 
     /**
@@ -125,43 +149,118 @@ public class XMLParseUtil {
      */
     public static Element loadXmlResource(final InputStream in)
             throws Exception {
-        DocumentBuilder db = getDocumentBuilder();
-        Document doc = db.parse(in);
-        return doc.getDocumentElement();
+        DocumentBuilder db = DOCUMENT_BUILDERS.poll();
+        if (db == null) {
+            db = getDocumentBuilder();
+        }
+        try {
+            Document doc = db.parse(in);
+            return doc.getDocumentElement();
+        } finally {
+            db.reset();
+            DOCUMENT_BUILDERS.release(db);
+        }
     }
 
     /**
-     * Returns a <code>DocumentBuilder</code>, which is used for parsing XML
-     * documents.
+     * Returns a new <code>DocumentBuilder</code>, which is used for parsing
+     * XML documents.
      *
      * @return a <code>DocumentBuilder</code> which is used for parsing XML
      * documents. Never <code>null</code>.
      */
     public static DocumentBuilder getDocumentBuilder() {
         try {
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true);
-            dbf.setValidating(false);
-
-            return dbf.newDocumentBuilder();
+            synchronized (DOCUMENT_BUILDER_FACTORY) {
+                return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+            }
         } catch (ParserConfigurationException e) {
             e.printStackTrace();
             throw new RuntimeException(e.getMessage());
         }
     }
 
+    /**
+     * Returns the shared StAX input factory. It is namespace aware and does
+     * not support DTDs or external entities.
+     *
+     * @return the XML input factory
+     */
+    public static XMLInputFactory getXMLInputFactory() {
+        return XML_INPUT_FACTORY;
+    }
+
     public static String getStringFromElement(Element doc)
             throws TransformerException {
 
         DOMSource domSource = new DOMSource(doc);
         StringWriter writer = new StringWriter();
         StreamResult result = new StreamResult(writer);
-        TransformerFactory tf = TransformerFactory.newInstance();
-        Transformer transformer = tf.newTransformer();
-        // transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-        // transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.transform(domSource, result);
+        Transformer transformer = TRANSFORMERS.poll();
+        if (transformer == null) {
+            synchronized (TRANSFORMER_FACTORY) {
+                transformer = TRANSFORMER_FACTORY.newTransformer();
+            }
+        }
+        try {
+            transformer.transform(domSource, result);
+        } finally {
+            transformer.reset();
+            TRANSFORMERS.release(transformer);
+        }
         writer.flush();
         return writer.toString();
     }
+
+    private static DocumentBuilderFactory createDocumentBuilderFactory() {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        dbf.setValidating(false);
+        dbf.setExpandEntityReferences(false);
+        setFeature(dbf, XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        setFeature(dbf, "http://xml.org/sax/features/external-general-entities",
+                false);
+        setFeature(dbf,
+                "http://xml.org/sax/features/external-parameter-entities",
+                false);
+        setFeature(dbf,
+                "http://apache.org/xml/features/nonvalidating/load-external-dtd",
+                false);
+        try {
+            dbf.setXIncludeAware(false);
+        } catch (UnsupportedOperationException e) {
+            LOG.debug("XInclude can not be disabled : " + e.getMessage());
+        }
+        return dbf;
+    }
+
+    private static void setFeature(final DocumentBuilderFactory dbf,
+                                   final String feature, final boolean value) {
+        try {
+            dbf.setFeature(feature, value);
+        } catch (ParserConfigurationException e) {
+            LOG.debug("XML parser feature is not supported : " + feature);
+        }
+    }
+
+    private static TransformerFactory createTransformerFactory() {
+        TransformerFactory tf = TransformerFactory.newInstance();
+        try {
+            tf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (TransformerConfigurationException e) {
+            LOG.debug("Secure processing is not supported by "
+                    + tf.getClass().getName());
+        }
+        return tf;
+    }
+
+    private static XMLInputFactory createXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.oauthstrategy;
+
+import junit.framework.TestCase;
+import org.brickred.socialauth.util.AccessGrant;
+import org.brickred.socialauth.util.HttpClient;
+import org.brickred.socialauth.util.HttpTransport;
+import org.brickred.socialauth.util.HttpUtil;
+import org.brickred.socialauth.util.MethodType;
+import org.brickred.socialauth.util.OAuthConfig;
+import org.brickred.socialauth.util.Response;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests that the requests of {@link OAuth2} go through the client of the
+ * provider configuration.
+ *
+ * @author tarunn@brickred.com
+ */
+public class OAuth2Test extends TestCase {
+
+    private StubTransport transport;
+    private OAuth2 strategy;
+
+    @Override
+    protected void setUp() throws Exception {
+        transport = new StubTransport();
+        HttpClient client = new HttpClient();
+        client.setTransport(transport);
+        OAuthConfig config = new OAuthConfig("key", "secret");
+        config.setId("stub");
+        config.setHttpClient(client);
+        strategy = new OAuth2(config, new HashMap<String, String>());
+        strategy.setAccessGrant(new AccessGrant("tok", null));
+    }
+
+    public void testExecuteFeedUsesConfiguredTransport() throws Exception {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("fields", "id");
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", "application/json");
+        strategy.executeFeed("https://api.example.com/me",
+                MethodType.GET.toString(), params, headers, null);
+        assertEquals(1, transport.requests.size());
+        assertEquals("GET https://api.example.com/me?access_token=tok&fields=id"
+                + " null", transport.requests.get(0));
+        assertSame(headers, transport.headers);
+    }
+
+    public void testExecuteFeedPostsThroughConfiguredTransport()
+            throws Exception {
+        strategy.executeFeed("https://api.example.com/me/feed",
+                MethodType.POST.toString(), null, null, "message=hi");
+        assertEquals(1, transport.requests.size());
+        assertEquals("POST https://api.example.com/me/feed "
+                + "message=hi&access_token=tok", transport.requests.get(0));
+    }
+
+    public void testExecuteFeedByUrlUsesConfiguredTransport() throws Exception {
+        strategy.executeFeed("https://api.example.com/me?fields=id");
+        assertEquals(1, transport.requests.size());
+        assertEquals("GET https://api.example.com/me?fields=id&access_token=tok"
+                + " null", transport.requests.get(0));
+    }
+
+    public void testRequestWithoutConfigUsesDefaultClient() throws Exception {
+        HttpClient client = new HttpClient();
+        client.setTransport(transport);
+        HttpClient previous = HttpUtil.getDefaultHttpClient();
+        HttpUtil.setDefaultHttpClient(client);
+        try {
+            HttpUtil.doHttpRequest("https://api.example.com/ping",
+                    MethodType.GET.toString(), null, null);
+            HttpUtil.doHttpRequest("https://api.example.com/pong",
+                    MethodType.GET.toString(), null, null, new OAuthConfig(
+                            "key", "secret"));
+        } finally {
+            HttpUtil.setDefaultHttpClient(previous);
+        }
+        assertEquals(2, transport.requests.size());
+        assertEquals("GET https://api.example.com/ping null",
+                transport.requests.get(0));
+        assertEquals("GET https://api.example.com/pong null",
+                transport.requests.get(1));
+    }
+
+    private static class StubTransport implements HttpTransport {
+        private final List<String> requests = new ArrayList<String>();
+        private Map<String, String> headers;
+
+        @Override
+        public Response doHttpRequest(final String urlStr,
+                                      final String requestMethod, final String body,
+                                      final Map<String, String> header) {
+            requests.add(requestMethod + " " + urlStr + " " + body);
+            headers = header;
+            return null;
+        }
+
+        @Override
+        public Response doHttpRequest(final String urlStr,
+                                      final String requestMethod, final Map<String, String> params,
+                                      final Map<String, String> header, final InputStream inputStream,
+                                      final String fileName, final String fileParamName) {
+            requests.add(requestMethod + " " + urlStr + " " + params);
+            headers = header;
+            return null;
+        }
+    }
+}
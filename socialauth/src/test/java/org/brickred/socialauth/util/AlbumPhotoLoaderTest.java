@@ -0,0 +1,159 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import junit.framework.TestCase;
+import org.brickred.socialauth.Album;
+import org.brickred.socialauth.Photo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests {@link AlbumPhotoLoader}
+ *
+ * @author tarunn@brickred.com
+ */
+public class AlbumPhotoLoaderTest extends TestCase {
+
+    private ExecutorService executor;
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testLoadsAllAlbums() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        AlbumPhotoLoader loader = new AlbumPhotoLoader();
+        loader.setExecutor(executor);
+        List<Album> albums = getAlbums(20);
+        loader.load(albums, new Source(null));
+        for (Album album : albums) {
+            assertEquals(album.getId(), album.getPhotos().get(0).getId());
+        }
+    }
+
+    public void testCallOnTheExecutorItselfDoesNotDeadlock() throws Exception {
+        // every thread of the pool is busy with a call, so the workers the
+        // calls submit never start before the calls complete
+        executor = Executors.newFixedThreadPool(2);
+        final AlbumPhotoLoader loader = new AlbumPhotoLoader();
+        loader.setExecutor(executor);
+        List<Future<List<Album>>> calls = new ArrayList<Future<List<Album>>>();
+        for (int i = 0; i < 2; i++) {
+            calls.add(executor.submit(new Callable<List<Album>>() {
+                @Override
+                public List<Album> call() throws Exception {
+                    List<Album> albums = getAlbums(10);
+                    loader.load(albums, new Source(null));
+                    return albums;
+                }
+            }));
+        }
+        for (Future<List<Album>> call : calls) {
+            for (Album album : call.get(10, TimeUnit.SECONDS)) {
+                assertEquals(1, album.getPhotos().size());
+            }
+        }
+    }
+
+    public void testFailureSkipsRemainingAlbums() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        AlbumPhotoLoader loader = new AlbumPhotoLoader();
+        loader.setExecutor(executor);
+        Source source = new Source("3");
+        try {
+            loader.load(getAlbums(200), source);
+            fail("Failure not reported");
+        } catch (IllegalStateException e) {
+            assertEquals("3", e.getMessage());
+        }
+        assertTrue(source.calls.get() < 200);
+    }
+
+    public void testWithoutExecutorRunsOnCallingThread() throws Exception {
+        final Thread caller = Thread.currentThread();
+        AlbumPhotoLoader loader = new AlbumPhotoLoader();
+        loader.load(getAlbums(5), new AlbumPhotoLoader.PhotoSource() {
+            @Override
+            public List<Photo> getPhotos(final String albumId) {
+                assertSame(caller, Thread.currentThread());
+                return Collections.emptyList();
+            }
+        });
+    }
+
+    public void testLazyLoadsOnFirstAccess() throws Exception {
+        AlbumPhotoLoader loader = new AlbumPhotoLoader();
+        loader.setLazy(true);
+        Source source = new Source(null);
+        List<Album> albums = getAlbums(3);
+        loader.load(albums, source);
+        assertEquals(0, source.calls.get());
+        assertEquals("1", albums.get(1).getPhotos().get(0).getId());
+        assertEquals(1, source.calls.get());
+    }
+
+    private static List<Album> getAlbums(final int count) {
+        List<Album> albums = new ArrayList<Album>();
+        for (int i = 0; i < count; i++) {
+            Album album = new Album();
+            album.setId(String.valueOf(i));
+            albums.add(album);
+        }
+        return albums;
+    }
+
+    private static class Source implements AlbumPhotoLoader.PhotoSource {
+        private final String failingId;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        Source(final String failingId) {
+            this.failingId = failingId;
+        }
+
+        @Override
+        public List<Photo> getPhotos(final String albumId) throws Exception {
+            calls.incrementAndGet();
+            if (albumId.equals(failingId)) {
+                throw new IllegalStateException(albumId);
+            }
+            Thread.sleep(2);
+            Photo photo = new Photo();
+            photo.setId(albumId);
+            return Collections.singletonList(photo);
+        }
+    }
+}
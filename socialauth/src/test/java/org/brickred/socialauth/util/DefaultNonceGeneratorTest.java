@@ -0,0 +1,93 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests {@link DefaultNonceGenerator}
+ *
+ * @author tarunn@brickred.com
+ */
+public class DefaultNonceGeneratorTest extends TestCase {
+
+    private static final int THREADS = 16;
+    private static final int NONCES_PER_THREAD = 20000;
+
+    public void testNoncesAreUniqueAcrossThreads() throws Exception {
+        final NonceGenerator generator = DefaultNonceGenerator.getInstance();
+        final Set<String> nonces = Collections
+                .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final AtomicInteger duplicates = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < NONCES_PER_THREAD; j++) {
+                        if (!nonces.add(generator.generateNonce())) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(THREADS * NONCES_PER_THREAD, nonces.size());
+    }
+
+    public void testGeneratorsShareTheSequence() {
+        Set<String> nonces = new HashSet<String>();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(nonces.add(new DefaultNonceGenerator().generateNonce()));
+        }
+    }
+
+    public void testNonceIsUrlSafe() {
+        String nonce = DefaultNonceGenerator.getInstance().generateNonce();
+        assertTrue(nonce, nonce.matches("[0-9a-f]{17,32}"));
+    }
+}
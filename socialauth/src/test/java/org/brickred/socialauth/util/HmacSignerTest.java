@@ -0,0 +1,126 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import junit.framework.TestCase;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tests {@link HmacSigner} against a plain implementation which gets a Mac
+ * and derives the key for every signature.
+ *
+ * @author tarunn@brickred.com
+ */
+public class HmacSignerTest extends TestCase {
+
+    private static final String METHOD = "POST";
+    private static final String URL = "https://api.twitter.com/1.1/statuses/update.json";
+
+    public void testSameSignatureAsPlainMac() throws Exception {
+        Map<String, String> params = getParams();
+        NormalizedParameters normalized = NormalizedParameters.of(params);
+        String consumerSecret = "kAcSOqF21Fu85e7zjz7ZN2U4ZRhfV3WpwPAoE3Z7kBw";
+        String tokenSecret = "LswwdoUaIvS8ltyTt5jkRh4J50vUPVVHtR2YPi5kE";
+        // example of the Twitter API documentation
+        assertEquals("hCtSmYh+iHYCEqBWrE7C7hYmtUk=", sign("HmacSHA1", params,
+                consumerSecret, tokenSecret));
+        assertEquals(sign("HmacSHA1", params, consumerSecret, tokenSecret),
+                HmacSigner.HMAC_SHA1.sign(METHOD, URL, normalized,
+                        consumerSecret, tokenSecret));
+        assertEquals(sign("HmacSHA256", params, "consumer", null),
+                HmacSigner.HMAC_SHA256.sign(METHOD, URL, normalized,
+                        "consumer", null));
+    }
+
+    public void testSecretsContainingSeparatorDoNotShareKey() throws Exception {
+        NormalizedParameters normalized = NormalizedParameters
+                .of(getParams());
+        String first = HmacSigner.HMAC_SHA1.sign(METHOD, URL, normalized,
+                "a&", "b");
+        String second = HmacSigner.HMAC_SHA1.sign(METHOD, URL, normalized,
+                "a", "&b");
+        assertEquals(sign("HmacSHA1", getParams(), "a&", "b"), first);
+        assertEquals(sign("HmacSHA1", getParams(), "a", "&b"), second);
+        assertFalse(first.equals(second));
+    }
+
+    public void testKeysBeyondCacheSize() throws Exception {
+        Map<String, String> params = getParams();
+        NormalizedParameters normalized = NormalizedParameters.of(params);
+        for (int i = 0; i < 5000; i += 7) {
+            String tokenSecret = "token" + i;
+            assertEquals(sign("HmacSHA1", params, "consumer", tokenSecret),
+                    HmacSigner.HMAC_SHA1.sign(METHOD, URL, normalized,
+                            "consumer", tokenSecret));
+        }
+    }
+
+    private static Map<String, String> getParams() {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("status", "Hello Ladies + Gentlemen, a signed OAuth request!");
+        params.put("include_entities", "true");
+        params.put("oauth_consumer_key", "xvz1evFS4wEEPTGEFPHBog");
+        params.put("oauth_nonce", "kYjzVBB8Y0ZFabxSWbWovY3uYSQ2pTgmZeNu2VS4cg");
+        params.put("oauth_signature_method", "HMAC-SHA1");
+        params.put("oauth_timestamp", "1318622958");
+        params.put("oauth_token", "370773112-GmHxMAgYyLbNEtIKZeRNFsMKPR9EyMZeS9weJAEb");
+        params.put("oauth_version", "1.0");
+        return params;
+    }
+
+    // the signature as computed before signing keys and Macs were reused
+    private static String sign(final String algorithm,
+                               final Map<String, String> params, final String consumerSecret,
+                               final String tokenSecret) throws Exception {
+        Map<String, String> sorted = new TreeMap<String, String>();
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            sorted.put(encode(entry.getKey()), encode(entry.getValue()));
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        String base = METHOD + "&" + encode(URL) + "&" + encode(sb.toString());
+        String key = encode(consumerSecret) + "&"
+                + (tokenSecret == null ? "" : encode(tokenSecret));
+        Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(key.getBytes("UTF-8"), algorithm));
+        return Base64.encodeBytes(mac.doFinal(base.getBytes("UTF-8")));
+    }
+
+    private static String encode(final String value) throws Exception {
+        return URLEncoder.encode(value, "UTF-8").replace("+", "%20")
+                .replace("*", "%2A").replace("%7E", "~");
+    }
+}
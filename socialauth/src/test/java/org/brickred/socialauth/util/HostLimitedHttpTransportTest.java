@@ -0,0 +1,133 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.brickred.socialauth.exception.SocialAuthException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests that {@link HostLimitedHttpTransport} bounds the requests in flight
+ * per host.
+ *
+ * @author tarunn@brickred.com
+ */
+public class HostLimitedHttpTransportTest extends TestCase {
+
+    private HttpServer server;
+    private CountDownLatch received;
+    private CountDownLatch answer;
+    private String url;
+
+    @Override
+    protected void setUp() throws Exception {
+        received = new CountDownLatch(1);
+        answer = new CountDownLatch(1);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                received.countDown();
+                try {
+                    answer.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = "ok".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/me";
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        answer.countDown();
+        server.stop(0);
+    }
+
+    public void testRequestOverTheLimitFails() throws Exception {
+        final HostLimitedHttpTransport transport = new HostLimitedHttpTransport(
+                Collections.<String>emptySet(), 1, 60000, 100);
+        final Response[] first = new Response[1];
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    first[0] = transport.doHttpRequest(url, "GET", null, null);
+                } catch (SocialAuthException e) {
+                    // asserted below
+                }
+            }
+        };
+        t.start();
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        try {
+            transport.doHttpRequest(url, "GET", null, null);
+            fail("Second request was sent while the first was in flight");
+        } catch (SocialAuthException e) {
+            // expected
+        }
+        HostLimitedHttpTransport.HostStats stats = transport.getHostStats()
+                .get("127.0.0.1");
+        assertEquals(1, stats.getInFlight());
+        assertEquals(1, stats.getRejections());
+
+        answer.countDown();
+        t.join(10000);
+        assertNotNull(first[0]);
+        assertEquals("ok", first[0].getResponseBodyAsString("UTF-8"));
+        assertEquals(0, transport.getHostStats().get("127.0.0.1")
+                .getInFlight());
+        Response again = transport.doHttpRequest(url, "GET", null, null);
+        assertEquals(200, again.getStatus());
+        again.close();
+    }
+
+    public void testProviderHostsShareTheirDomainLimit() throws Exception {
+        HostLimitedHttpTransport transport = new HostLimitedHttpTransport(
+                Collections.singleton("0.1"));
+        answer.countDown();
+        Response response = transport.doHttpRequest(url, "GET", null, null);
+        response.close();
+        assertEquals(1, transport.getHostStats().get("0.1").getRequests());
+        assertNull(transport.getHostStats().get("127.0.0.1"));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import junit.framework.TestCase;
+import org.brickred.socialauth.Profile;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Tests {@link JSONFieldExtractor} and {@link ProfileMapping} against the
+ * org.json lookups they replaced, on recorded profile responses.
+ *
+ * @author tarunn@brickred.com
+ */
+public class JSONFieldExtractorTest extends TestCase {
+
+    private static final String[] FACEBOOK_PATHS = {"id", "name",
+            "first_name", "last_name", "email", "gender", "birthday",
+            "locale", "location.name", "hometown.id", "languages.1.name",
+            "work.0.employer.name", "work.0.start_date", "verified",
+            "timezone"};
+    private static final String[] STACKEXCHANGE_PATHS = {
+            "items.0.display_name", "items.0.profile_image",
+            "items.0.user_id", "items.0.location", "items.0.is_employee",
+            "items.0.badge_counts.gold", "quota_remaining", "has_more"};
+    private static final String[] INSTAGRAM_PATHS = {"data.id",
+            "data.full_name", "data.profile_picture", "data.bio",
+            "data.counts.followed_by", "meta.code"};
+    private static final ProfileMapping FACEBOOK_MAPPING = new ProfileMapping(
+            "id -> validatedId", "name -> fullName",
+            "first_name -> firstName", "last_name -> lastName",
+            "email -> email", "location.name -> location",
+            "gender -> gender", "birthday", "locale");
+
+    public void testMatchesOrgJsonOnProfiles() throws Exception {
+        assertMatchesOrgJson(read("facebook-profile.json"), FACEBOOK_PATHS);
+        assertMatchesOrgJson(read("stackexchange-profile.json"),
+                STACKEXCHANGE_PATHS);
+        assertMatchesOrgJson(read("instagram-profile.json"), INSTAGRAM_PATHS);
+    }
+
+    public void testProfileMappingMatchesOrgJson() throws Exception {
+        String json = read("facebook-profile.json");
+        Profile p = new Profile();
+        Map<String, String> values = FACEBOOK_MAPPING.map(json, p);
+
+        // the lookups FacebookImpl made before it used the mapping
+        JSONObject resp = new JSONObject(json);
+        assertEquals(resp.optString("id", null), p.getValidatedId());
+        assertEquals(resp.optString("name", null), p.getFullName());
+        assertEquals(resp.optString("first_name", null), p.getFirstName());
+        assertEquals(resp.optString("last_name", null), p.getLastName());
+        assertEquals(resp.optString("email", null), p.getEmail());
+        assertEquals(resp.getJSONObject("location").optString("name", null),
+                p.getLocation());
+        assertEquals(resp.optString("gender", null), p.getGender());
+        assertEquals(resp.optString("birthday"), values.get("birthday"));
+        assertEquals(resp.optString("locale", null), values.get("locale"));
+    }
+
+    public void testStringsAreUnescaped() throws Exception {
+        String json = "{\"a\":\"x\\\"y\\\\z\\/\\u00e9\\n\",\"b\":{\"c\":[1,"
+                + "{\"d\":\"\\ud83d\\ude00\"}]}}";
+        assertMatchesOrgJson(json, new String[]{"a", "b.c.0", "b.c.1.d"});
+    }
+
+    public void testNullsAndContainersAreNotReturned() throws Exception {
+        Map<String, String> values = new JSONFieldExtractor("a", "b", "c",
+                "d.e", "f").extract("{\"a\":null,\"b\":{\"x\":1},\"c\":[1],"
+                + "\"d\":{\"e\":null}}");
+        assertTrue(values.toString(), values.isEmpty());
+    }
+
+    public void testMissingInstagramIdIsNotMapped() throws Exception {
+        Profile p = new Profile();
+        new ProfileMapping("data.id -> validatedId",
+                "data.full_name -> displayName").map(
+                "{\"meta\":{\"code\":400,\"error_type\":"
+                        + "\"OAuthAccessTokenException\"}}", p);
+        assertNull(p.getValidatedId());
+        assertNull(p.getDisplayName());
+    }
+
+    public void testInvalidJsonIsRejected() throws Exception {
+        String[] invalid = {"", "{", "{\"a\" 1}", "{\"a\":\"b}", "[1,",
+                "{\"a\":1 \"b\":2}"};
+        for (String json : invalid) {
+            try {
+                new JSONFieldExtractor("z").extract(json);
+                fail("Accepted " + json);
+            } catch (JSONException e) {
+                // expected
+            }
+        }
+    }
+
+    private static void assertMatchesOrgJson(final String json,
+                                             final String[] paths) throws Exception {
+        Map<String, String> values = new JSONFieldExtractor(paths)
+                .extract(json);
+        Object root = json.trim().startsWith("[") ? new JSONArray(json)
+                : new JSONObject(json);
+        for (String path : paths) {
+            assertEquals(path, optString(root, path), values.get(path));
+        }
+    }
+
+    // walks the org.json tree like the providers did, null if a step is
+    // missing or does not lead to a scalar
+    private static String optString(final Object root, final String path) {
+        Object node = root;
+        for (String step : path.split("\\.")) {
+            if (node instanceof JSONObject) {
+                node = ((JSONObject) node).opt(step);
+            } else if (node instanceof JSONArray) {
+                node = ((JSONArray) node).opt(Integer.parseInt(step));
+            } else {
+                return null;
+            }
+        }
+        if (node == null || node == JSONObject.NULL
+                || node instanceof JSONObject || node instanceof JSONArray) {
+            return null;
+        }
+        return node.toString();
+    }
+
+    private static void readWithOrgJson(final String json) throws Exception {
+        JSONObject resp = new JSONObject(json);
+        resp.optString("id", null);
+        resp.optString("name", null);
+        resp.optString("first_name", null);
+        resp.optString("last_name", null);
+        resp.optString("email", null);
+        resp.getJSONObject("location").optString("name", null);
+        resp.optString("gender", null);
+        resp.optString("birthday");
+        resp.optString("locale", null);
+    }
+
+    private String read(final String name) throws Exception {
+        InputStream in = getClass().getResourceAsStream(name);
+        assertNotNull(name, in);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
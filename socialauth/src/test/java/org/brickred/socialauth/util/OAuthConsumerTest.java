@@ -0,0 +1,153 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import junit.framework.TestCase;
+import org.brickred.socialauth.exception.SocialAuthException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the URLs sent by {@link OAuthConsumer}: parameters keep the format
+ * of {@link HttpUtil#buildParams(Map)} and the signature matches them.
+ *
+ * @author tarunn@brickred.com
+ */
+public class OAuthConsumerTest extends TestCase {
+
+    private StubTransport transport;
+    private OAuthConsumer consumer;
+
+    @Override
+    protected void setUp() throws Exception {
+        transport = new StubTransport();
+        HttpClient client = new HttpClient();
+        client.setTransport(transport);
+        OAuthConfig config = new OAuthConfig("key", "secret");
+        config.setHttpClient(client);
+        consumer = new OAuthConsumer(config);
+    }
+
+    public void testBracketedParameterNameIsSentAsItIs() throws Exception {
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("fields[]", "id,first name");
+        consumer.httpPut("https://api.example.com/v1/people?ids[]=1", params,
+                null, null, new AccessGrant("token", "tokensecret"), false);
+        String url = transport.urls.get(0);
+        assertTrue(url, url.startsWith("https://api.example.com/v1/people?"));
+        assertTrue(url, url.contains("fields[]=id%2Cfirst%20name"));
+        assertTrue(url, url.contains("&ids[]=1&"));
+        assertFalse(url, url.contains("%5B"));
+        assertSignature("PUT", url, "tokensecret");
+    }
+
+    public void testRequestTokenQueryIsNotEncodedTwice() throws Exception {
+        consumer.getRequestToken(
+                "https://api.example.com/oauth/requestToken?scope=r_basicprofile%20r_emailaddress",
+                "https://app.example.com/callback");
+        String url = transport.urls.get(0);
+        assertTrue(url, url.contains("scope=r_basicprofile%20r_emailaddress"));
+        assertTrue(url, url.contains(
+                "oauth_callback=https%3A%2F%2Fapp.example.com%2Fcallback"));
+        assertSignature("GET", url, null);
+    }
+
+    // the provider decodes what it receives and signs it in normalized form
+    private static void assertSignature(final String method, final String url,
+                                        final String tokenSecret) throws Exception {
+        int idx = url.indexOf('?');
+        NormalizedParameters received = new NormalizedParameters();
+        String signature = null;
+        for (String pair : url.substring(idx + 1).split("&")) {
+            int eq = pair.indexOf('=');
+            String name = HttpUtil.decodeURIComponent(pair.substring(0, eq));
+            String value = HttpUtil.decodeURIComponent(pair.substring(eq + 1));
+            if ("oauth_signature".equals(name)) {
+                signature = value;
+            } else {
+                received.add(name, value);
+            }
+        }
+        assertEquals(HmacSigner.HMAC_SHA1.sign(method,
+                url.substring(0, idx), received, "secret", tokenSecret),
+                signature);
+    }
+
+    private static class StubTransport implements HttpTransport {
+        private final List<String> urls = new ArrayList<String>();
+
+        @Override
+        public Response doHttpRequest(final String urlStr,
+                                      final String requestMethod, final String body,
+                                      final Map<String, String> header)
+                throws SocialAuthException {
+            urls.add(urlStr);
+            try {
+                return new Response(new HttpURLConnection(new URL(urlStr)) {
+                    @Override
+                    public int getResponseCode() {
+                        return 200;
+                    }
+
+                    @Override
+                    public InputStream getInputStream() {
+                        return new ByteArrayInputStream(
+                                "oauth_token=t&oauth_token_secret=s".getBytes());
+                    }
+
+                    @Override
+                    public void connect() {
+                    }
+
+                    @Override
+                    public void disconnect() {
+                    }
+
+                    @Override
+                    public boolean usingProxy() {
+                        return false;
+                    }
+                });
+            } catch (Exception e) {
+                throw new SocialAuthException(e);
+            }
+        }
+
+        @Override
+        public Response doHttpRequest(final String urlStr,
+                                      final String requestMethod, final Map<String, String> params,
+                                      final Map<String, String> header, final InputStream inputStream,
+                                      final String fileName, final String fileParamName) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import junit.framework.TestCase;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Random;
+
+/**
+ * Tests {@link PercentCodec} against the URLEncoder based encoding it
+ * replaced.
+ *
+ * @author tarunn@brickred.com
+ */
+public class PercentCodecTest extends TestCase {
+
+    private static final int SAMPLES = 20000;
+
+    public void testEncodeMatchesUrlEncoder() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            String value = randomString(random, true);
+            assertEquals(value, encode(value), PercentCodec.encode(value));
+        }
+    }
+
+    public void testEncodeReservedCharacters() throws Exception {
+        assertEquals("", PercentCodec.encode(null));
+        assertEquals("abcXYZ019-._~", PercentCodec.encode("abcXYZ019-._~"));
+        assertEquals("%20%2A%2B%26%3D%25%2F%3F", PercentCodec.encode(" *+&=%/?"));
+        assertEquals("%C3%A9%E2%82%AC%F0%9F%98%80",
+                PercentCodec.encode("\u00e9\u20ac\ud83d\ude00"));
+    }
+
+    public void testDecodeMatchesUrlDecoder() throws Exception {
+        Random random = new Random(7);
+        for (int i = 0; i < SAMPLES; i++) {
+            String value = randomString(random, false);
+            String encoded = encode(value);
+            assertEquals(value, URLDecoder.decode(encoded, "UTF-8"),
+                    PercentCodec.decode(encoded));
+            assertEquals(value, PercentCodec.decode(PercentCodec
+                    .encode(value)));
+        }
+        assertEquals("a b", PercentCodec.decode("a+b"));
+    }
+
+    // the encoding used before PercentCodec
+    private static String encode(final String value) throws Exception {
+        return URLEncoder.encode(value, "UTF-8").replace("+", "%20")
+                .replace("*", "%2A").replace("%7E", "~");
+    }
+
+    // ASCII, Latin-1, BMP and supplementary characters, and unpaired
+    // surrogates if requested
+    private static String randomString(final Random random,
+                                       final boolean unpaired) {
+        int length = random.nextInt(24);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(unpaired ? 5 : 4)) {
+                case 0:
+                    sb.append((char) random.nextInt(0x80));
+                    break;
+                case 1:
+                    sb.append((char) (0x80 + random.nextInt(0x80)));
+                    break;
+                case 2:
+                    sb.append((char) (0x100 + random.nextInt(0xd700)));
+                    break;
+                case 3:
+                    sb.appendCodePoint(0x10000 + random.nextInt(0x10000));
+                    break;
+                default:
+                    sb.append((char) (0xd800 + random.nextInt(0x800)));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import junit.framework.TestCase;
+import org.brickred.socialauth.Permission;
+import org.brickred.socialauth.exception.SocialAuthException;
+
+/**
+ * Tests {@link StateCodec}
+ *
+ * @author tarunn@brickred.com
+ */
+public class StateCodecTest extends TestCase {
+
+    private static final String SUCCESS_URL = "https://example.com/callback?x=1|2";
+
+    private final StateCodec codec = new StateCodec("secret".getBytes(),
+            StateCodec.DEFAULT_MAX_AGE);
+
+    public void testRoundTrip() throws Exception {
+        String token = codec.encode("facebook", Permission.ALL, SUCCESS_URL);
+        StateCodec.State state = codec.decode(token);
+        assertEquals("facebook", state.getProviderId());
+        assertSame(Permission.ALL, state.getPermission());
+        assertEquals(SUCCESS_URL, state.getSuccessUrl());
+    }
+
+    public void testTamperedTokenIsRejected() throws Exception {
+        String token = codec.encode("facebook", null, SUCCESS_URL);
+        String other = codec.encode("google", null, SUCCESS_URL);
+        String forged = other.substring(0, other.indexOf('.'))
+                + token.substring(token.indexOf('.'));
+        try {
+            codec.decode(forged);
+            fail("Forged token accepted");
+        } catch (SocialAuthException e) {
+            // expected
+        }
+    }
+
+    public void testBoundTokenRequiresSameBinding() throws Exception {
+        String token = codec.encode("facebook", null, SUCCESS_URL, "cookie-1");
+        assertEquals("facebook", codec.decode(token, "cookie-1")
+                .getProviderId());
+        assertFalse(token.contains("cookie-1"));
+        assertRejected(token, "cookie-2");
+        assertRejected(token, null);
+    }
+
+    public void testUnboundTokenIsRejectedWithBinding() throws Exception {
+        String token = codec.encode("facebook", null, SUCCESS_URL);
+        assertRejected(token, "cookie-1");
+    }
+
+    private void assertRejected(final String token, final String binding) {
+        try {
+            codec.decode(token, binding);
+            fail("Token accepted with binding " + binding);
+        } catch (SocialAuthException e) {
+            // expected
+        }
+    }
+}
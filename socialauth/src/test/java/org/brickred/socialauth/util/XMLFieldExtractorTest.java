@@ -0,0 +1,166 @@
+/*
+ ===========================================================================
+ Copyright (c) 2010 BrickRed Technologies Limited
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sub-license, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ ===========================================================================
+
+ */
+package org.brickred.socialauth.util;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests {@link XMLFieldExtractor} against the DOM lookups of the LinkedIn
+ * profile it replaced, on a recorded profile response.
+ *
+ * @author tarunn@brickred.com
+ */
+public class XMLFieldExtractorTest extends TestCase {
+
+    private static final String[] PROFILE_PATHS = {"id", "first-name",
+            "last-name", "date-of-birth", "date-of-birth/year",
+            "date-of-birth/month", "date-of-birth/day", "picture-url",
+            "email-address", "location/name",
+            "phone-numbers/phone-number/phone-type",
+            "phone-numbers/phone-number/phone-number", "main-address"};
+
+    private byte[] profile;
+
+    @Override
+    protected void setUp() throws Exception {
+        profile = read("linkedin-profile.xml");
+    }
+
+    public void testMatchesDomOnLinkedInProfile() throws Exception {
+        Map<String, String> expected = readWithDom(profile);
+        Map<String, String> fields = new XMLFieldExtractor(PROFILE_PATHS)
+                .extract(new ByteArrayInputStream(profile));
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), entry.getValue(),
+                    fields.get(entry.getKey()));
+        }
+        assertTrue(fields.containsKey("date-of-birth"));
+        assertEquals("Xk3_9qLm2Z", fields.get("id"));
+        assertEquals("Doe & Sons", fields.get("last-name"));
+        assertEquals("mobile",
+                fields.get("phone-numbers/phone-number/phone-type"));
+        assertEquals("+1 415 555 0100",
+                fields.get("phone-numbers/phone-number/phone-number"));
+        assertEquals("1 Market St\nSan Francisco, CA 94105",
+                fields.get("main-address"));
+    }
+
+    public void testMissingFieldsAreNotReturned() throws Exception {
+        String xml = "<person><id>a1</id><location><country><code>us</code>"
+                + "</country></location></person>";
+        Map<String, String> fields = new XMLFieldExtractor(PROFILE_PATHS)
+                .extract(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        assertEquals(1, fields.size());
+        assertEquals("a1", fields.get("id"));
+    }
+
+    // the DOM lookups took the first element of the name anywhere in the
+    // document, the extractor only the one at the given path
+    public void testPathsAreRelativeToRoot() throws Exception {
+        String xml = "<person><languages><language><id>1</id></language>"
+                + "</languages><id>a1</id><location><name>Pune</name>"
+                + "</location></person>";
+        Map<String, String> fields = new XMLFieldExtractor("id",
+                "location/name", "name").extract(new ByteArrayInputStream(
+                xml.getBytes("UTF-8")));
+        assertEquals("a1", fields.get("id"));
+        assertEquals("Pune", fields.get("location/name"));
+        assertNull(fields.get("name"));
+    }
+
+    public void testAttributes() throws Exception {
+        Map<String, String> fields = new XMLFieldExtractor("languages/@total",
+                "phone-numbers/@total").extract(new ByteArrayInputStream(
+                profile));
+        assertEquals("2", fields.get("languages/@total"));
+        assertEquals("2", fields.get("phone-numbers/@total"));
+    }
+
+    // the lookups LinkedInImpl made on the DOM before it used the extractor
+    private static Map<String, String> readWithDom(final byte[] xml)
+            throws Exception {
+        Element root = XMLParseUtil.loadXmlResource(new ByteArrayInputStream(
+                xml));
+        Map<String, String> fields = new HashMap<String, String>();
+        fields.put("id", XMLParseUtil.getElementData(root, "id"));
+        fields.put("first-name", XMLParseUtil.getElementData(root,
+                "first-name"));
+        fields.put("last-name", XMLParseUtil.getElementData(root, "last-name"));
+        NodeList dob = root.getElementsByTagName("date-of-birth");
+        if (dob.getLength() > 0) {
+            Element dobel = (Element) dob.item(0);
+            fields.put("date-of-birth/year", XMLParseUtil.getElementData(
+                    dobel, "year"));
+            fields.put("date-of-birth/month", XMLParseUtil.getElementData(
+                    dobel, "month"));
+            fields.put("date-of-birth/day", XMLParseUtil.getElementData(
+                    dobel, "day"));
+        }
+        fields.put("picture-url", XMLParseUtil.getElementData(root,
+                "picture-url"));
+        fields.put("email-address", XMLParseUtil.getElementData(root,
+                "email-address"));
+        NodeList location = root.getElementsByTagName("location");
+        if (location.getLength() > 0) {
+            fields.put("location/name", XMLParseUtil.getElementData(
+                    (Element) location.item(0), "name"));
+        }
+        NodeList phones = root.getElementsByTagName("phone-number");
+        if (phones.getLength() > 0) {
+            Element phoneEl = (Element) phones.item(0);
+            fields.put("phone-numbers/phone-number/phone-type", XMLParseUtil
+                    .getElementData(phoneEl, "phone-type"));
+            fields.put("phone-numbers/phone-number/phone-number",
+                    XMLParseUtil.getElementData(phoneEl, "phone-number"));
+        }
+        fields.put("main-address", XMLParseUtil.getElementData(root,
+                "main-address"));
+        return fields;
+    }
+
+    private byte[] read(final String name) throws Exception {
+        InputStream in = getClass().getResourceAsStream(name);
+        assertNotNull(name, in);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}